@@ -0,0 +1,59 @@
+package com.edrpub.xml.reader.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.edrpub.xml.reader.XMLParserException;
+import com.edrpub.xml.reader.XMLUtil;
+import com.edrpub.xml.reader.benchmarks.SyntheticDocuments.Shape;
+
+/**
+ * Cost of building an XMLUtil from a file across document shapes and sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+	@Param({ "FLAT", "DEEP", "SOAP" })
+	public Shape shape;
+
+	@Param({ "10", "1000", "100000" })
+	public int records;
+
+	private Path file;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		file = SyntheticDocuments.write(shape, records);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public XMLUtil construct() throws XMLParserException {
+		return new XMLUtil(file.toString());
+	}
+}
@@ -0,0 +1,100 @@
+package com.edrpub.xml.reader.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.NamespaceContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.edrpub.xml.reader.XMLParserException;
+import com.edrpub.xml.reader.XMLUtil;
+import com.edrpub.xml.reader.benchmarks.SyntheticDocuments.Shape;
+
+/**
+ * Queries against an already parsed document: plain xpath on a flat document
+ * compared with namespace aware xpath on the equivalent SOAP document.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+	@Param({ "100", "10000" })
+	public int records;
+
+	private Path flatFile;
+	private Path soapFile;
+	private XMLUtil flat;
+	private XMLUtil soap;
+	private NamespaceContext context;
+	private String lastId;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, XMLParserException {
+		flatFile = SyntheticDocuments.write(Shape.FLAT, records);
+		soapFile = SyntheticDocuments.write(Shape.SOAP, records);
+		flat = new XMLUtil(flatFile.toString());
+		soap = new XMLUtil(soapFile.toString());
+		context = SyntheticDocuments.namespaces();
+		lastId = "id" + (records - 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(flatFile);
+		Files.deleteIfExists(soapFile);
+	}
+
+	@Benchmark
+	public String absolutePath() throws XMLParserException {
+		return flat.getParameterByXpath(SyntheticDocuments.versionXpath(Shape.FLAT));
+	}
+
+	@Benchmark
+	public String absolutePathNS() throws XMLParserException {
+		return soap.getParameterByXpathNS(SyntheticDocuments.versionXpath(Shape.SOAP), context);
+	}
+
+	@Benchmark
+	public String predicate() throws XMLParserException {
+		return flat.getParameterByXpath("/records/record[@id='" + lastId + "']/value");
+	}
+
+	@Benchmark
+	public String predicateNS() throws XMLParserException {
+		return soap.getParameterByXpathNS("//ns1:record[@id='" + lastId + "']/ns1:value", context);
+	}
+
+	@Benchmark
+	public int listDescendants() throws XMLParserException {
+		return flat.getListParametersByXpath("//record/status").size();
+	}
+
+	@Benchmark
+	public int listDescendantsNS() throws XMLParserException {
+		return soap.getListParametersByXpathNS("//ns1:record/ns1:status", context).size();
+	}
+
+	@Benchmark
+	public String tagNS() {
+		return soap.getParameterByTagNS("version", SyntheticDocuments.SERVER);
+	}
+}
@@ -0,0 +1,103 @@
+package com.edrpub.xml.reader.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.NodeList;
+
+import com.edrpub.xml.reader.DocumentCache;
+import com.edrpub.xml.reader.XMLParserException;
+import com.edrpub.xml.reader.XMLUtil;
+import com.edrpub.xml.reader.benchmarks.SyntheticDocuments.Shape;
+
+/**
+ * The static file based methods of XMLUtil, each of which opens the file, with
+ * and without the parsed document cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StaticFileBenchmark {
+
+	@Param({ "FLAT", "DEEP" })
+	public Shape shape;
+
+	@Param({ "100", "10000" })
+	public int records;
+
+	@Param({ "false", "true" })
+	public boolean documentCache;
+
+	private Path file;
+	private String fName;
+	private String editions;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		file = SyntheticDocuments.write(shape, records);
+		fName = file.toString();
+		editions = SyntheticDocuments.versionXpath(shape).replace("/version", "/editions/edition");
+		XMLUtil.setDocumentCache(documentCache ? new DocumentCache() : null);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		XMLUtil.setDocumentCache(null);
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public String getParameterByXpath() throws XMLParserException {
+		return XMLUtil.getParameterByXpath(SyntheticDocuments.versionXpath(shape), fName);
+	}
+
+	@Benchmark
+	public List<String> getListParametersByXpath() throws XMLParserException {
+		return XMLUtil.getListParametersByXpath("//record/@id", fName);
+	}
+
+	@Benchmark
+	public NodeList getNodeListByXpath() throws XMLParserException {
+		return XMLUtil.getNodeListByXpath("//record[@id='id0']/*", fName);
+	}
+
+	@Benchmark
+	public String getParameterByTag() throws XMLParserException {
+		return XMLUtil.getParameterByTag("version", fName);
+	}
+
+	@Benchmark
+	public List<String> getListParametersByTag() throws XMLParserException {
+		return XMLUtil.getListParametersByTag("record", fName);
+	}
+
+	@Benchmark
+	public Map<String, List<String>> getMapByTag() throws XMLParserException {
+		return XMLUtil.getMapByTag("editions", fName);
+	}
+
+	@Benchmark
+	public Map<String, List<String>> getMapByXpath() throws XMLParserException {
+		return XMLUtil.getMapByXpath(editions, fName);
+	}
+}
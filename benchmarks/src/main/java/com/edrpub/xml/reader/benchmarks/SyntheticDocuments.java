@@ -0,0 +1,150 @@
+package com.edrpub.xml.reader.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+
+/**
+ * Generates synthetic documents of a given shape and record count for the
+ * benchmarks.
+ * <ul>
+ * <li>FLAT - a wrapper around repeating records with a few child values</li>
+ * <li>DEEP - records nested {@value #DEPTH} levels below the root</li>
+ * <li>SOAP - a namespace heavy SOAP envelope of multiRef style records</li>
+ * </ul>
+ * Every shape holds a "config" section with a version, and every record has
+ * an id attribute and name/value children so the same queries apply.
+ */
+public final class SyntheticDocuments {
+	public static final int DEPTH = 12;
+	public static final String SOAPENV = "http://schemas.xmlsoap.org/soap/envelope/";
+	public static final String XSI = "http://www.w3.org/2001/XMLSchema-instance";
+	public static final String SERVER = "http://server.opsware.com";
+
+	public enum Shape {
+		FLAT, DEEP, SOAP
+	}
+
+	private SyntheticDocuments() {
+	}
+
+	/**
+	 * Write a document to a new temp file
+	 *
+	 * @param shape   the document shape
+	 * @param records the number of records
+	 * @return the path of the temp file
+	 * @throws IOException when the file cannot be written
+	 */
+	public static Path write(final Shape shape, final int records) throws IOException {
+		final Path p = Files.createTempFile("xml-util-" + shape.name().toLowerCase() + "-" + records + "-", ".xml");
+		try (Writer w = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+			switch (shape) {
+				case FLAT:
+					flat(w, records);
+					break;
+				case DEEP:
+					deep(w, records);
+					break;
+				default:
+					soap(w, records);
+					break;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Absolute xpath of the config version element for a shape
+	 *
+	 * @param shape the document shape
+	 * @return an xpath, prefixed with ns1/soapenv for SOAP
+	 */
+	public static String versionXpath(final Shape shape) {
+		switch (shape) {
+			case FLAT:
+				return "/records/config/version";
+			case DEEP:
+				return "/root/config/version";
+			default:
+				return "/soapenv:Envelope/soapenv:Header/ns1:config/ns1:version";
+		}
+	}
+
+	/**
+	 * @return a NamespaceContext binding the prefixes used by the SOAP shape
+	 */
+	public static NamespaceContext namespaces() {
+		final Map<String, String> m = new HashMap<>();
+		m.put("soapenv", SOAPENV);
+		m.put("xsi", XSI);
+		m.put("ns1", SERVER);
+		return new NamespaceContext() {
+			@Override
+			public String getNamespaceURI(final String prefix) {
+				return m.get(prefix);
+			}
+
+			@Override
+			public String getPrefix(final String uri) {
+				return null;
+			}
+
+			@Override
+			public Iterator<String> getPrefixes(final String uri) {
+				return null;
+			}
+		};
+	}
+
+	private static void flat(final Writer w, final int records) throws IOException {
+		w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<records>\n");
+		w.write("  <config><version>1</version><editions><edition><version>1</version></edition>"
+				+ "<edition><version>2</version></edition></editions></config>\n");
+		for (int i = 0; i < records; i++)
+			record(w, "", i);
+		w.write("</records>\n");
+	}
+
+	private static void deep(final Writer w, final int records) throws IOException {
+		w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>\n");
+		w.write("  <config><version>1</version><editions><edition><version>1</version></edition>"
+				+ "<edition><version>2</version></edition></editions></config>\n");
+		for (int i = 0; i < records; i++) {
+			for (int d = 0; d < DEPTH; d++)
+				w.write("<level" + d + ">");
+			record(w, "", i);
+			for (int d = DEPTH - 1; d >= 0; d--)
+				w.write("</level" + d + ">");
+			w.write('\n');
+		}
+		w.write("</root>\n");
+	}
+
+	private static void soap(final Writer w, final int records) throws IOException {
+		w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		w.write("<soapenv:Envelope xmlns:soapenv=\"" + SOAPENV + "\" xmlns:xsi=\"" + XSI + "\">\n");
+		w.write("  <soapenv:Header><ns1:config xmlns:ns1=\"" + SERVER + "\"><ns1:version>1</ns1:version>"
+				+ "</ns1:config></soapenv:Header>\n");
+		w.write("  <soapenv:Body><ns1:findServerRefsResponse xmlns:ns1=\"" + SERVER + "\">\n");
+		for (int i = 0; i < records; i++)
+			record(w, "ns1:", i);
+		w.write("  </ns1:findServerRefsResponse></soapenv:Body>\n</soapenv:Envelope>\n");
+	}
+
+	private static void record(final Writer w, final String prefix, final int i) throws IOException {
+		w.write("    <" + prefix + "record id=\"id" + i + "\"");
+		if (!prefix.isEmpty())
+			w.write(" xsi:type=\"" + prefix + "Ref\"");
+		w.write("><" + prefix + "name>Record number " + i + "</" + prefix + "name><" + prefix + "value>" + i
+				+ "</" + prefix + "value><" + prefix + "status>" + (i % 3 == 0 ? "active" : "inactive")
+				+ "</" + prefix + "status></" + prefix + "record>\n");
+	}
+}
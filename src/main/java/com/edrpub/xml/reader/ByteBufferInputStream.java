@@ -0,0 +1,45 @@
+package com.edrpub.xml.reader;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream reading the remaining bytes of a ByteBuffer without copying
+ * them. The stream reads a duplicate, so the position of the caller's buffer
+ * is left alone. Works for heap, direct and memory mapped buffers.
+ */
+final class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer buf;
+
+	ByteBufferInputStream(final ByteBuffer buffer) {
+		this.buf = buffer.duplicate();
+	}
+
+	@Override
+	public int read() {
+		return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) {
+		if (len == 0)
+			return 0;
+		if (!buf.hasRemaining())
+			return -1;
+		final int n = Math.min(len, buf.remaining());
+		buf.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public long skip(final long n) {
+		final int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+		buf.position(buf.position() + k);
+		return k;
+	}
+
+	@Override
+	public int available() {
+		return buf.remaining();
+	}
+}
@@ -0,0 +1,495 @@
+package com.edrpub.xml.reader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An immutable, compact in-memory form of a document for read-only configs
+ * and reference data that stay resident.
+ * <p>
+ * Nodes are stored in document order in parallel int arrays instead of one
+ * object per node, element and attribute names are interned into a shared
+ * name table and all character data lives in a single char buffer. Comments
+ * are dropped and adjacent text is merged the same way as the DOM parser used
+ * by XMLUtil, so query results match those of a parsed Document.
+ * <p>
+ * Wrap it in an XMLUtil with {@link XMLUtil#XMLUtil(CompactDocument)} to query
+ * it. Simple location paths are answered directly from the arrays; other
+ * queries are run against a DOM built for the call. A CompactDocument can be
+ * shared by any number of threads.
+ */
+public final class CompactDocument {
+	static final byte DOCUMENT = 0;
+	static final byte ELEMENT = 1;
+	static final byte TEXT = 2;
+	static final byte CDATA = 3;
+	static final byte PI = 4;
+
+	// per node, index 0 is the document node
+	private final byte[] kind;
+	// element or pi target name, -1 for others
+	private final int[] name;
+	private final int[] parent;
+	// next node after this one's subtree, which is its next sibling when it has one
+	private final int[] end;
+	// elements: first attribute and attribute count; character nodes: text offset and length
+	private final int[] off;
+	private final int[] len;
+	// per attribute, namespace declarations included
+	private final int[] attName;
+	private final int[] attOff;
+	private final int[] attLen;
+	// shared name table
+	private final String[] uris;
+	private final String[] prefixes;
+	private final String[] locals;
+	private final char[] text;
+
+	private CompactDocument(final Builder b) {
+		kind = Arrays.copyOf(b.kind, b.nodes);
+		name = Arrays.copyOf(b.name, b.nodes);
+		parent = Arrays.copyOf(b.parent, b.nodes);
+		end = Arrays.copyOf(b.end, b.nodes);
+		off = Arrays.copyOf(b.off, b.nodes);
+		len = Arrays.copyOf(b.len, b.nodes);
+		attName = Arrays.copyOf(b.attName, b.atts);
+		attOff = Arrays.copyOf(b.attOff, b.atts);
+		attLen = Arrays.copyOf(b.attLen, b.atts);
+		final int names = b.names.size();
+		uris = new String[names];
+		prefixes = new String[names];
+		locals = new String[names];
+		for (int i = 0; i < names; i++) {
+			final String[] n = b.names.get(i);
+			uris[i] = n[0];
+			prefixes[i] = n[1];
+			locals[i] = n[2];
+		}
+		text = Arrays.copyOf(b.text, b.textLen);
+	}
+
+	/**
+	 * Read a file or URL into a CompactDocument
+	 *
+	 * @param fName a file path or URL
+	 * @return the compact document
+	 * @throws XMLParserException when the input cannot be read or parsed
+	 */
+	public static CompactDocument parse(final String fName) throws XMLParserException {
+		final XMLMetricsListener m = XMLMetrics.listener();
+		final long start = m == null ? 0L : System.nanoTime();
+		try (StaxInput in = StaxInput.open(fName)) {
+			final CompactDocument d = read(in.reader);
+			return m == null ? d : d.parsed(m, fName, XMLMetrics.sizeOf(fName), start);
+		}
+	}
+
+	/**
+	 * Read a stream into a CompactDocument. The stream is not closed.
+	 *
+	 * @param in a stream of an xml document
+	 * @return the compact document
+	 * @throws XMLParserException when the input cannot be read or parsed
+	 */
+	public static CompactDocument parse(final InputStream in) throws XMLParserException {
+		final XMLMetricsListener m = XMLMetrics.listener();
+		final long start = m == null ? 0L : System.nanoTime();
+		try (StaxInput input = StaxInput.open(in)) {
+			final CompactDocument d = read(input.reader);
+			return m == null ? d : d.parsed(m, "input stream", -1L, start);
+		}
+	}
+
+	private CompactDocument parsed(final XMLMetricsListener m, final String source, final long bytes,
+			final long start) {
+		m.documentParsed(source, bytes, kind.length + attName.length, System.nanoTime() - start);
+		return this;
+	}
+
+	private static CompactDocument read(final XMLStreamReader r) throws XMLParserException {
+		final Builder b = new Builder();
+		try {
+			b.read(r);
+		} catch (final XMLStreamException e) {
+			throw new XMLParserException("Stax parse error", e);
+		}
+		return new CompactDocument(b);
+	}
+
+	/**
+	 * @return the number of nodes, counting the document, elements, text and
+	 *         processing instructions but not attributes
+	 */
+	public int getNodeCount() {
+		return kind.length;
+	}
+
+	/**
+	 * @return an estimate of the heap used by this document in bytes
+	 */
+	public long getEstimatedBytes() {
+		return kind.length * 21L + attName.length * 12L + text.length * 2L + locals.length * 64L;
+	}
+
+	/**
+	 * Build a new DOM holding the content of this document. The DOM belongs
+	 * to the caller.
+	 *
+	 * @return a new Document
+	 * @throws XMLParserException when no document can be created
+	 */
+	public Document toDocument() throws XMLParserException {
+		final Document d = StaxDomBuilder.newDocument();
+		final Node[] built = new Node[kind.length];
+		built[0] = d;
+		for (int n = 1; n < kind.length; n++) {
+			final Node p = built[parent[n]];
+			switch (kind[n]) {
+				case ELEMENT:
+					final Element e = d.createElementNS(StaxDomBuilder.emptyToNull(uris[name[n]]),
+							qualified(name[n]));
+					for (int a = off[n]; a < off[n] + len[n]; a++) {
+						e.setAttributeNS(StaxDomBuilder.emptyToNull(uris[attName[a]]), qualified(attName[a]),
+								attValue(a));
+					}
+					built[n] = p.appendChild(e);
+					break;
+				case TEXT:
+					p.appendChild(d.createTextNode(text(n)));
+					break;
+				case CDATA:
+					p.appendChild(d.createCDATASection(text(n)));
+					break;
+				default:
+					p.appendChild(d.createProcessingInstruction(locals[name[n]], text(n)));
+					break;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * The text content of each node selected by a simple path, in document
+	 * order, as Node.getTextContent would return it.
+	 *
+	 * @param path    a parsed simple path
+	 * @param context a NamespaceContext for prefixed names or null
+	 * @param first   stop after the first result
+	 * @return the values or null when the path uses a prefix the context does
+	 *         not bind
+	 */
+	List<String> select(final SimplePath path, final NamespaceContext context, final boolean first) {
+		BitSet current = new BitSet();
+		current.set(0);
+		for (final SimplePath.Step step : path.steps) {
+			final String uri = step.name.isWildcard() ? "*" : step.name.resolve(context);
+			if (uri == null)
+				return null;
+			if (step.descendant)
+				current = descendantsOrSelf(current);
+			if (step.attribute)
+				return attributes(current, uri, step.name.local, first);
+			final BitSet nextSet = new BitSet();
+			for (int c = current.nextSetBit(0); c >= 0; c = current.nextSetBit(c + 1)) {
+				if (!children(c, step, uri, context, nextSet))
+					return null;
+			}
+			current = nextSet;
+		}
+		final List<String> values = new ArrayList<String>();
+		for (int n = current.nextSetBit(0); n >= 0; n = current.nextSetBit(n + 1)) {
+			values.add(stringValue(n));
+			if (first)
+				break;
+		}
+		return values;
+	}
+
+	/**
+	 * The first child node value of each element with the namespace and local
+	 * name, matched the same way as Document.getElementsByTagNameNS
+	 *
+	 * @param tag       a local name or *
+	 * @param namespace a namespace uri, * or null for no namespace
+	 * @param first     stop after the first matching element
+	 * @return the values found, skipping elements without one
+	 */
+	List<String> firstChildValues(final String tag, final String namespace, final boolean first) {
+		if (tag == null)
+			return new ArrayList<String>();
+		final String ns = namespace == null ? "" : namespace;
+		final List<String> values = new ArrayList<String>();
+		for (int n = 1; n < kind.length; n++) {
+			if (kind[n] != ELEMENT || !matches(name[n], ns, tag))
+				continue;
+			final String v = n + 1 < end[n] ? nodeValue(n + 1) : null;
+			if (first)
+				return Arrays.asList(v);
+			if (v != null)
+				values.add(v);
+		}
+		return values;
+	}
+
+	// add the children of c passing the step to the result set
+	private boolean children(final int c, final SimplePath.Step step, final String uri,
+			final NamespaceContext context, final BitSet result) {
+		final List<Integer> matched = new ArrayList<Integer>();
+		for (int n = c + 1; n < end[c]; n = end[n]) {
+			if (kind[n] == ELEMENT && (step.name.isWildcard() || matches(name[n], uri, step.name.local)))
+				matched.add(n);
+		}
+		List<Integer> kept = matched;
+		for (final SimplePath.Predicate p : step.predicates) {
+			if (p.type == SimplePath.POSITION) {
+				kept = p.position >= 1 && p.position <= kept.size() ? kept.subList(p.position - 1, p.position)
+						: new ArrayList<Integer>();
+				continue;
+			}
+			final String pUri = p.name.resolve(context);
+			if (pUri == null)
+				return false;
+			final List<Integer> filtered = new ArrayList<Integer>();
+			for (final Integer n : kept) {
+				if (test(n, p, pUri))
+					filtered.add(n);
+			}
+			kept = filtered;
+		}
+		for (final Integer n : kept)
+			result.set(n);
+		return true;
+	}
+
+	private boolean test(final int n, final SimplePath.Predicate p, final String uri) {
+		if (p.type == SimplePath.CHILD_EQUALS) {
+			for (int c = n + 1; c < end[n]; c = end[c]) {
+				if (kind[c] == ELEMENT && matches(name[c], uri, p.name.local) && p.value.equals(stringValue(c)))
+					return true;
+			}
+			return false;
+		}
+		final int a = attribute(n, uri, p.name.local);
+		return a >= 0 && (p.type == SimplePath.HAS_ATTRIBUTE || p.value.equals(attValue(a)));
+	}
+
+	private BitSet descendantsOrSelf(final BitSet nodes) {
+		final BitSet result = new BitSet();
+		for (int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(end[n]))
+			result.set(n, end[n]);
+		return result;
+	}
+
+	private List<String> attributes(final BitSet owners, final String uri, final String local, final boolean first) {
+		final List<String> values = new ArrayList<String>();
+		for (int n = owners.nextSetBit(0); n >= 0; n = owners.nextSetBit(n + 1)) {
+			final int a = kind[n] == ELEMENT ? attribute(n, uri, local) : -1;
+			if (a >= 0) {
+				values.add(attValue(a));
+				if (first)
+					break;
+			}
+		}
+		return values;
+	}
+
+	// an attribute of element n, never a namespace declaration
+	private int attribute(final int n, final String uri, final String local) {
+		for (int a = off[n]; a < off[n] + len[n]; a++) {
+			if (matches(attName[a], uri, local))
+				return a;
+		}
+		return -1;
+	}
+
+	private boolean matches(final int nameId, final String uri, final String local) {
+		return ("*".equals(local) || local.equals(locals[nameId])) && ("*".equals(uri) || uri.equals(uris[nameId]));
+	}
+
+	// Node.getTextContent of an element
+	private String stringValue(final int n) {
+		if (kind[n] != ELEMENT)
+			return kind[n] == DOCUMENT ? null : text(n);
+		final StringBuilder sb = new StringBuilder();
+		for (int c = n + 1; c < end[n]; c++) {
+			if (kind[c] == TEXT || kind[c] == CDATA)
+				sb.append(text, off[c], len[c]);
+		}
+		return sb.toString();
+	}
+
+	// Node.getNodeValue
+	private String nodeValue(final int n) {
+		return kind[n] == ELEMENT ? null : text(n);
+	}
+
+	private String text(final int n) {
+		return new String(text, off[n], len[n]);
+	}
+
+	private String attValue(final int a) {
+		return new String(text, attOff[a], attLen[a]);
+	}
+
+	private String qualified(final int nameId) {
+		return prefixes[nameId].isEmpty() ? locals[nameId] : prefixes[nameId] + ":" + locals[nameId];
+	}
+
+	// collects the arrays while streaming the document
+	private static final class Builder {
+		private static final String XMLNS_URI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+		private byte[] kind = new byte[256];
+		private int[] name = new int[256];
+		private int[] parent = new int[256];
+		private int[] end = new int[256];
+		private int[] off = new int[256];
+		private int[] len = new int[256];
+		private int nodes;
+		private int[] attName = new int[64];
+		private int[] attOff = new int[64];
+		private int[] attLen = new int[64];
+		private int atts;
+		private char[] text = new char[4096];
+		private int textLen;
+		private final List<String[]> names = new ArrayList<String[]>();
+		private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+
+		void read(final XMLStreamReader r) throws XMLStreamException {
+			int current = add(DOCUMENT, -1, -1);
+			while (r.hasNext()) {
+				switch (r.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						current = element(r, current);
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						end[current] = nodes;
+						current = parent[current];
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.SPACE:
+						if (current > 0)
+							text(current, r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+						break;
+					case XMLStreamConstants.ENTITY_REFERENCE:
+						if (current > 0)
+							text(current, r.getText().toCharArray(), 0, r.getText().length());
+						break;
+					case XMLStreamConstants.CDATA:
+						if (current > 0) {
+							final int n = add(CDATA, current, -1);
+							off[n] = append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+							len[n] = r.getTextLength();
+						}
+						break;
+					case XMLStreamConstants.PROCESSING_INSTRUCTION:
+						final int n = add(PI, current, nameId("", "", r.getPITarget()));
+						final String data = r.getPIData() == null ? "" : r.getPIData();
+						off[n] = append(data.toCharArray(), 0, data.length());
+						len[n] = data.length();
+						break;
+					default:
+						// comments are ignored like the DOM parser does
+						break;
+				}
+			}
+			end[0] = nodes;
+		}
+
+		private int element(final XMLStreamReader r, final int current) {
+			final int n = add(ELEMENT, current, nameId(r.getNamespaceURI(), r.getPrefix(), r.getLocalName()));
+			off[n] = atts;
+			for (int i = 0; i < r.getNamespaceCount(); i++) {
+				final String prefix = r.getNamespacePrefix(i);
+				final String uri = r.getNamespaceURI(i) == null ? "" : r.getNamespaceURI(i);
+				attribute(prefix == null || prefix.isEmpty() ? nameId(XMLNS_URI, "", XMLConstants.XMLNS_ATTRIBUTE)
+						: nameId(XMLNS_URI, XMLConstants.XMLNS_ATTRIBUTE, prefix), uri);
+			}
+			for (int i = 0; i < r.getAttributeCount(); i++) {
+				attribute(nameId(r.getAttributeNamespace(i), r.getAttributePrefix(i), r.getAttributeLocalName(i)),
+						r.getAttributeValue(i));
+			}
+			len[n] = atts - off[n];
+			return n;
+		}
+
+		private void attribute(final int nameId, final String value) {
+			if (atts == attName.length) {
+				attName = Arrays.copyOf(attName, atts * 2);
+				attOff = Arrays.copyOf(attOff, atts * 2);
+				attLen = Arrays.copyOf(attLen, atts * 2);
+			}
+			attName[atts] = nameId;
+			attOff[atts] = append(value.toCharArray(), 0, value.length());
+			attLen[atts++] = value.length();
+		}
+
+		// append to the preceding text node the way the DOM parser merges text
+		private void text(final int current, final char[] chars, final int start, final int length) {
+			final int last = nodes - 1;
+			if (kind[last] == TEXT && parent[last] == current) {
+				append(chars, start, length);
+				len[last] += length;
+				return;
+			}
+			final int n = add(TEXT, current, -1);
+			off[n] = append(chars, start, length);
+			len[n] = length;
+		}
+
+		private int add(final byte type, final int parentNode, final int nameId) {
+			if (nodes == kind.length) {
+				final int size = nodes * 2;
+				kind = Arrays.copyOf(kind, size);
+				name = Arrays.copyOf(name, size);
+				parent = Arrays.copyOf(parent, size);
+				end = Arrays.copyOf(end, size);
+				off = Arrays.copyOf(off, size);
+				len = Arrays.copyOf(len, size);
+			}
+			final int n = nodes++;
+			kind[n] = type;
+			name[n] = nameId;
+			parent[n] = parentNode;
+			// leaf nodes end right after themselves, elements are closed later
+			end[n] = n + 1;
+			return n;
+		}
+
+		private int append(final char[] chars, final int start, final int length) {
+			if (textLen + length > text.length)
+				text = Arrays.copyOf(text, Math.max(text.length * 2, textLen + length));
+			System.arraycopy(chars, start, text, textLen, length);
+			final int at = textLen;
+			textLen += length;
+			return at;
+		}
+
+		private int nameId(final String uri, final String prefix, final String local) {
+			final String u = uri == null ? "" : uri;
+			final String p = prefix == null ? "" : prefix;
+			final String key = u + '\u0000' + p + '\u0000' + local;
+			Integer id = nameIds.get(key);
+			if (id == null) {
+				id = names.size();
+				names.add(new String[] { u.intern(), p.intern(), local.intern() });
+				nameIds.put(key, id);
+			}
+			return id;
+		}
+	}
+}
@@ -0,0 +1,521 @@
+package com.edrpub.xml.reader;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable set of typed configuration values resolved once from a
+ * document.
+ * <p>
+ * The parameters are declared up front in a {@link Spec}, which hands out a
+ * key per parameter. Creating the snapshot runs every query, converts every
+ * value and reports all missing or invalid parameters together in a single
+ * XMLParserException. After that, reading a value with its key is an array
+ * access with no xpath, parsing or boxing.
+ *
+ * <pre>
+ * ConfigSnapshot.Spec spec = new ConfigSnapshot.Spec();
+ * ConfigSnapshot.IntKey retries = spec.requiredInt("maxRetries", "/main/maxRetries");
+ * ConfigSnapshot.Key&lt;Duration&gt; interval = spec.requiredDuration("retryInterval", "/main/retryInterval",
+ * 		ChronoUnit.SECONDS);
+ * ConfigSnapshot config = new XMLReadUtil(path).snapshot(spec);
+ * int r = config.get(retries);
+ * </pre>
+ *
+ * Numbers, booleans and durations are trimmed before they are converted.
+ * Booleans must be true or false in any case. Durations are ISO-8601
+ * (PT30S), a number with a unit suffix of ms, s, m, h or d, or a plain
+ * number in the unit given for the parameter. Lists hold the text of every
+ * node found and are never null.
+ */
+public final class ConfigSnapshot {
+	private static final int INT = 0;
+	private static final int LONG = 1;
+	private static final int BOOLEAN = 2;
+	private static final int STRING = 3;
+	private static final int DURATION = 4;
+	private static final int LIST = 5;
+	// the slot counter of the object array
+	private static final int OBJECTS = STRING;
+
+	private final Spec spec;
+	// copies taken when the spec was frozen
+	private final List<Entry> entries;
+	private final Map<String, Entry> byName;
+	private final int[] ints;
+	private final long[] longs;
+	private final boolean[] booleans;
+	private final Object[] objects;
+
+	private ConfigSnapshot(final Spec spec) {
+		this.spec = spec;
+		this.entries = new ArrayList<Entry>(spec.entries);
+		this.byName = new HashMap<String, Entry>(spec.byName);
+		this.ints = new int[spec.counts[INT]];
+		this.longs = new long[spec.counts[LONG]];
+		this.booleans = new boolean[spec.counts[BOOLEAN]];
+		this.objects = new Object[spec.counts[OBJECTS]];
+	}
+
+	/**
+	 * Resolve every parameter of a spec against a document
+	 *
+	 * @param spec   the parameters to resolve
+	 * @param reader the document to read
+	 * @return the snapshot
+	 * @throws XMLParserException listing every missing or invalid parameter, or
+	 *                            when a query fails
+	 */
+	static ConfigSnapshot create(final Spec spec, final XMLUtil reader) throws XMLParserException {
+		if (spec == null)
+			throw new XMLParserException("A snapshot spec is required!");
+		// freeze under the lock of add() so the entries and counts read here are complete
+		final ConfigSnapshot s;
+		synchronized (spec) {
+			spec.frozen = true;
+			s = new ConfigSnapshot(spec);
+		}
+		final Map<String, String> scalars = new LinkedHashMap<String, String>();
+		for (final Entry e : s.entries) {
+			if (e.type != LIST)
+				scalars.put(e.name, e.xpath);
+		}
+		final Map<String, String> values = scalars.isEmpty() ? Collections.<String, String>emptyMap()
+				: reader.getParametersByXpath(scalars);
+		final List<String> missing = new ArrayList<String>();
+		final StringBuilder invalid = new StringBuilder();
+		for (final Entry e : s.entries) {
+			if (e.type == LIST) {
+				s.objects[e.slot] = Collections.unmodifiableList(reader.getListParametersByXpath(e.xpath));
+				continue;
+			}
+			final String v = values.get(e.name);
+			if (v == null || v.isEmpty()) {
+				if (e.required)
+					missing.add(e.name);
+				else
+					s.setDefault(e);
+				continue;
+			}
+			try {
+				s.set(e, v);
+			} catch (final IllegalArgumentException | DateTimeException | ArithmeticException ex) {
+				invalid.append(invalid.length() > 0 ? " " : "").append("Parameter [").append(e.name)
+						.append("] is invalid. Must be ").append(TYPE_NAMES[e.type]);
+			}
+		}
+		final StringBuilder msg = new StringBuilder();
+		if (!missing.isEmpty())
+			msg.append("Parameters ").append(missing).append(" are required but not found!");
+		if (invalid.length() > 0)
+			msg.append(msg.length() > 0 ? " " : "").append(invalid);
+		if (msg.length() > 0)
+			throw new XMLParserException(msg.toString());
+		return s;
+	}
+
+	private static final String[] TYPE_NAMES = { "an integer", "a long", "true or false", "a string",
+			"a duration", "a list" };
+
+	private void set(final Entry e, final String v) {
+		switch (e.type) {
+			case INT:
+				ints[e.slot] = Integer.parseInt(v.trim());
+				break;
+			case LONG:
+				longs[e.slot] = Long.parseLong(v.trim());
+				break;
+			case BOOLEAN:
+				booleans[e.slot] = parseBoolean(v.trim());
+				break;
+			case DURATION:
+				objects[e.slot] = parseDuration(v.trim(), e.unit);
+				break;
+			default:
+				objects[e.slot] = v;
+				break;
+		}
+	}
+
+	private void setDefault(final Entry e) {
+		switch (e.type) {
+			case INT:
+				ints[e.slot] = ((Number) e.defaultValue).intValue();
+				break;
+			case LONG:
+				longs[e.slot] = ((Number) e.defaultValue).longValue();
+				break;
+			case BOOLEAN:
+				booleans[e.slot] = (Boolean) e.defaultValue;
+				break;
+			default:
+				objects[e.slot] = e.defaultValue;
+				break;
+		}
+	}
+
+	private static boolean parseBoolean(final String v) {
+		if ("true".equalsIgnoreCase(v))
+			return true;
+		if ("false".equalsIgnoreCase(v))
+			return false;
+		throw new IllegalArgumentException(v);
+	}
+
+	static Duration parseDuration(final String v, final ChronoUnit unit) {
+		if (v.startsWith("P") || v.startsWith("p") || v.startsWith("-P"))
+			return Duration.parse(v);
+		final String lower = v.toLowerCase(Locale.ROOT);
+		int i = lower.length();
+		while (i > 0 && Character.isLetter(lower.charAt(i - 1)))
+			i--;
+		final long amount = Long.parseLong(lower.substring(0, i).trim());
+		switch (lower.substring(i)) {
+			case "":
+				return Duration.of(amount, unit);
+			case "ms":
+				return Duration.ofMillis(amount);
+			case "s":
+				return Duration.ofSeconds(amount);
+			case "m":
+				return Duration.ofMinutes(amount);
+			case "h":
+				return Duration.ofHours(amount);
+			case "d":
+				return Duration.ofDays(amount);
+			default:
+				throw new IllegalArgumentException(v);
+		}
+	}
+
+	/**
+	 * @param key an int parameter of this snapshot's spec
+	 * @return the value
+	 */
+	public int get(final IntKey key) {
+		return ints[check(key).slot];
+	}
+
+	/**
+	 * @param key a long parameter of this snapshot's spec
+	 * @return the value
+	 */
+	public long get(final LongKey key) {
+		return longs[check(key).slot];
+	}
+
+	/**
+	 * @param key a boolean parameter of this snapshot's spec
+	 * @return the value
+	 */
+	public boolean get(final BooleanKey key) {
+		return booleans[check(key).slot];
+	}
+
+	/**
+	 * @param <T> the type of the value
+	 * @param key a string, duration or list parameter of this snapshot's spec
+	 * @return the value, null for an optional parameter without a default
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Key<T> key) {
+		return (T) objects[check(key).slot];
+	}
+
+	/**
+	 * Get a value by its parameter name. Slower than reading with a key.
+	 *
+	 * @param name the parameter name
+	 * @return the value, boxed for ints, longs and booleans
+	 * @throws XMLParserException if the spec has no parameter with the name
+	 */
+	public Object get(final String name) throws XMLParserException {
+		final Entry e = byName.get(name);
+		if (e == null)
+			throw new XMLParserException("Parameter [" + name + "] is not part of the snapshot");
+		return value(e);
+	}
+
+	/**
+	 * @return every parameter name and value in the order they were declared
+	 */
+	public Map<String, Object> asMap() {
+		final Map<String, Object> m = new LinkedHashMap<String, Object>();
+		for (final Entry e : entries)
+			m.put(e.name, value(e));
+		return Collections.unmodifiableMap(m);
+	}
+
+	/**
+	 * @return the spec this snapshot was resolved from
+	 */
+	public Spec getSpec() {
+		return spec;
+	}
+
+	private Object value(final Entry e) {
+		switch (e.type) {
+			case INT:
+				return ints[e.slot];
+			case LONG:
+				return longs[e.slot];
+			case BOOLEAN:
+				return booleans[e.slot];
+			default:
+				return objects[e.slot];
+		}
+	}
+
+	private Entry check(final Entry key) {
+		if (key.spec != spec)
+			throw new IllegalArgumentException("Parameter [" + key.name + "] belongs to a different spec");
+		return key;
+	}
+
+	/**
+	 * The parameters of a snapshot. A spec can no longer be changed once a
+	 * snapshot has been created from it and may then be reused for any number
+	 * of snapshots.
+	 */
+	public static final class Spec {
+		private final List<Entry> entries = new ArrayList<Entry>();
+		private final Map<String, Entry> byName = new HashMap<String, Entry>();
+		private final int[] counts = new int[OBJECTS + 1];
+		private boolean frozen;
+
+		/**
+		 * @param name  a friendly name for the parameter
+		 * @param xpath an xpath query for its value
+		 * @return the key of a required int parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public IntKey requiredInt(final String name, final String xpath) throws XMLParserException {
+			return add(new IntKey(this, name, xpath, true, null));
+		}
+
+		/**
+		 * @param name         a friendly name for the parameter
+		 * @param xpath        an xpath query for its value
+		 * @param defaultValue the value when not found
+		 * @return the key of an optional int parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public IntKey optionalInt(final String name, final String xpath, final int defaultValue)
+				throws XMLParserException {
+			return add(new IntKey(this, name, xpath, false, defaultValue));
+		}
+
+		/**
+		 * @param name  a friendly name for the parameter
+		 * @param xpath an xpath query for its value
+		 * @return the key of a required long parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public LongKey requiredLong(final String name, final String xpath) throws XMLParserException {
+			return add(new LongKey(this, name, xpath, true, null));
+		}
+
+		/**
+		 * @param name         a friendly name for the parameter
+		 * @param xpath        an xpath query for its value
+		 * @param defaultValue the value when not found
+		 * @return the key of an optional long parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public LongKey optionalLong(final String name, final String xpath, final long defaultValue)
+				throws XMLParserException {
+			return add(new LongKey(this, name, xpath, false, defaultValue));
+		}
+
+		/**
+		 * @param name  a friendly name for the parameter
+		 * @param xpath an xpath query for its value
+		 * @return the key of a required boolean parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public BooleanKey requiredBoolean(final String name, final String xpath) throws XMLParserException {
+			return add(new BooleanKey(this, name, xpath, true, null));
+		}
+
+		/**
+		 * @param name         a friendly name for the parameter
+		 * @param xpath        an xpath query for its value
+		 * @param defaultValue the value when not found
+		 * @return the key of an optional boolean parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public BooleanKey optionalBoolean(final String name, final String xpath, final boolean defaultValue)
+				throws XMLParserException {
+			return add(new BooleanKey(this, name, xpath, false, defaultValue));
+		}
+
+		/**
+		 * @param name  a friendly name for the parameter
+		 * @param xpath an xpath query for its value
+		 * @return the key of a required string parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public Key<String> requiredString(final String name, final String xpath) throws XMLParserException {
+			return add(new Key<String>(this, STRING, name, xpath, true, null, null));
+		}
+
+		/**
+		 * @param name         a friendly name for the parameter
+		 * @param xpath        an xpath query for its value
+		 * @param defaultValue the value when not found, may be null
+		 * @return the key of an optional string parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public Key<String> optionalString(final String name, final String xpath, final String defaultValue)
+				throws XMLParserException {
+			return add(new Key<String>(this, STRING, name, xpath, false, defaultValue, null));
+		}
+
+		/**
+		 * @param name  a friendly name for the parameter
+		 * @param xpath an xpath query for its value
+		 * @param unit  the unit of a value given as a plain number
+		 * @return the key of a required duration parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public Key<Duration> requiredDuration(final String name, final String xpath, final ChronoUnit unit)
+				throws XMLParserException {
+			return add(new Key<Duration>(this, DURATION, name, xpath, true, null, requireUnit(unit)));
+		}
+
+		/**
+		 * @param name         a friendly name for the parameter
+		 * @param xpath        an xpath query for its value
+		 * @param unit         the unit of a value given as a plain number
+		 * @param defaultValue the value when not found, may be null
+		 * @return the key of an optional duration parameter
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public Key<Duration> optionalDuration(final String name, final String xpath, final ChronoUnit unit,
+				final Duration defaultValue) throws XMLParserException {
+			return add(new Key<Duration>(this, DURATION, name, xpath, false, defaultValue, requireUnit(unit)));
+		}
+
+		/**
+		 * @param name  a friendly name for the parameter
+		 * @param xpath an xpath query for its values
+		 * @return the key of a list parameter, empty when nothing is found
+		 * @throws XMLParserException when inputs are invalid
+		 */
+		public Key<List<String>> list(final String name, final String xpath) throws XMLParserException {
+			return add(new Key<List<String>>(this, LIST, name, xpath, false, null, null));
+		}
+
+		/**
+		 * @return the parameter names in the order they were declared
+		 */
+		public synchronized List<String> getNames() {
+			final List<String> names = new ArrayList<String>(entries.size());
+			for (final Entry e : entries)
+				names.add(e.name);
+			return names;
+		}
+
+		private static ChronoUnit requireUnit(final ChronoUnit unit) throws XMLParserException {
+			if (unit == null)
+				throw new XMLParserException("A unit is required!");
+			return unit;
+		}
+
+		private synchronized <K extends Entry> K add(final K key) throws XMLParserException {
+			XMLUtil.validateRequired(key.name, "A parameter name is required!");
+			XMLUtil.validateRequired(key.xpath, "An xpath qual is required!");
+			if (frozen)
+				throw new XMLParserException("The spec is already in use by a snapshot");
+			if (byName.containsKey(key.name))
+				throw new XMLParserException("Parameter [" + key.name + "] is already defined");
+			// strings, durations and lists share the object array
+			key.slot = counts[Math.min(key.type, OBJECTS)]++;
+			entries.add(key);
+			byName.put(key.name, key);
+			return key;
+		}
+	}
+
+	/**
+	 * A parameter declared in a spec, the base of the typed keys
+	 */
+	public abstract static class Entry {
+		final Spec spec;
+		final int type;
+		final String name;
+		final String xpath;
+		final boolean required;
+		final Object defaultValue;
+		final ChronoUnit unit;
+		int slot;
+
+		Entry(final Spec spec, final int type, final String name, final String xpath, final boolean required,
+				final Object defaultValue, final ChronoUnit unit) {
+			this.spec = spec;
+			this.type = type;
+			this.name = name;
+			this.xpath = xpath;
+			this.required = required;
+			this.defaultValue = defaultValue;
+			this.unit = unit;
+		}
+
+		/**
+		 * @return the parameter name
+		 */
+		public String getName() {
+			return name;
+		}
+	}
+
+	/**
+	 * The key of a string, duration or list parameter
+	 *
+	 * @param <T> the type of the value
+	 */
+	public static final class Key<T> extends Entry {
+		Key(final Spec spec, final int type, final String name, final String xpath, final boolean required,
+				final Object defaultValue, final ChronoUnit unit) {
+			super(spec, type, name, xpath, required, defaultValue, unit);
+		}
+	}
+
+	/**
+	 * The key of an int parameter
+	 */
+	public static final class IntKey extends Entry {
+		IntKey(final Spec spec, final String name, final String xpath, final boolean required,
+				final Integer defaultValue) {
+			super(spec, INT, name, xpath, required, defaultValue, null);
+		}
+	}
+
+	/**
+	 * The key of a long parameter
+	 */
+	public static final class LongKey extends Entry {
+		LongKey(final Spec spec, final String name, final String xpath, final boolean required,
+				final Long defaultValue) {
+			super(spec, LONG, name, xpath, required, defaultValue, null);
+		}
+	}
+
+	/**
+	 * The key of a boolean parameter
+	 */
+	public static final class BooleanKey extends Entry {
+		BooleanKey(final Spec spec, final String name, final String xpath, final boolean required,
+				final Boolean defaultValue) {
+			super(spec, BOOLEAN, name, xpath, required, defaultValue, null);
+		}
+	}
+}
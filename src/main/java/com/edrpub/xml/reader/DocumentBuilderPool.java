@@ -0,0 +1,232 @@
+package com.edrpub.xml.reader;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A pool of preconfigured DocumentBuilders used by XMLUtil to parse documents.
+ * <p>
+ * The DocumentBuilderFactory is looked up once per pool and builders are
+ * reset() before they are reused. Builders are namespace aware and ignore
+ * comments and element content whitespace. How DTDs and external entities
+ * are handled is set by a {@link ParserProfile}. The pooling strategy and
+ * profile of the default pool can be chosen with the system properties
+ * {@value #STRATEGY_PROPERTY} and {@value #PROFILE_PROPERTY}, ignoring case,
+ * or by replacing it with {@link #setDefault(DocumentBuilderPool)}. An
+ * unknown value is logged and the default is used.
+ */
+public final class DocumentBuilderPool {
+	/** System property used to choose the strategy of the default pool */
+	public static final String STRATEGY_PROPERTY = "com.edrpub.xml.parserPool";
+	/** System property used to choose the profile of the default pool */
+	public static final String PROFILE_PROPERTY = "com.edrpub.xml.parserProfile";
+	/** Default number of idle builders kept by a bounded pool */
+	public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+	/**
+	 * How builders are shared between parses
+	 */
+	public enum Strategy {
+		/** a new builder for every parse, only the factory is reused */
+		NONE,
+		/** one builder per thread */
+		THREAD_LOCAL,
+		/** a shared pool holding a bounded number of idle builders */
+		BOUNDED
+	}
+
+	private static final Logger log = LoggerFactory.getLogger(DocumentBuilderPool.class);
+	private static volatile DocumentBuilderPool defaultPool = new DocumentBuilderPool(
+			property(STRATEGY_PROPERTY, Strategy.class, Strategy.THREAD_LOCAL), DEFAULT_MAX_IDLE,
+			property(PROFILE_PROPERTY, ParserProfile.class, ParserProfile.DEFAULT));
+
+	private final Strategy strategy;
+	private final int maxIdle;
+	private final ParserProfile profile;
+	private final DocumentBuilderFactory factory;
+	private final ThreadLocal<DocumentBuilder> perThread = new ThreadLocal<>();
+	private final Queue<DocumentBuilder> idle = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * Create a pool using the given strategy
+	 *
+	 * @param strategy the pooling strategy
+	 */
+	public DocumentBuilderPool(final Strategy strategy) {
+		this(strategy, DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * Create a pool using the given strategy
+	 *
+	 * @param strategy the pooling strategy
+	 * @param maxIdle  the number of idle builders kept by a BOUNDED pool
+	 */
+	public DocumentBuilderPool(final Strategy strategy, final int maxIdle) {
+		this(strategy, maxIdle, ParserProfile.DEFAULT);
+	}
+
+	/**
+	 * Create a pool using the given strategy and parser profile
+	 *
+	 * @param strategy the pooling strategy
+	 * @param maxIdle  the number of idle builders kept by a BOUNDED pool
+	 * @param profile  how DTDs and external entities are handled
+	 * @throws IllegalStateException when the parser does not support the
+	 *                               profile
+	 */
+	public DocumentBuilderPool(final Strategy strategy, final int maxIdle, final ParserProfile profile) {
+		if (strategy == null)
+			throw new IllegalArgumentException("A pooling strategy is required");
+		if (maxIdle < 1)
+			throw new IllegalArgumentException("maxIdle must be at least 1");
+		if (profile == null)
+			throw new IllegalArgumentException("A parser profile is required");
+		this.strategy = strategy;
+		this.maxIdle = maxIdle;
+		this.profile = profile;
+		this.factory = DocumentBuilderFactory.newInstance();
+		factory.setIgnoringComments(true);
+		factory.setNamespaceAware(true);
+		factory.setIgnoringElementContentWhitespace(true);
+		try {
+			profile.configure(factory);
+		} catch (final ParserConfigurationException e) {
+			throw new IllegalStateException("Parser profile " + profile + " is not supported", e);
+		}
+	}
+
+	/**
+	 * Get the pool used by XMLUtil
+	 *
+	 * @return the default DocumentBuilderPool
+	 */
+	public static DocumentBuilderPool getDefault() {
+		return defaultPool;
+	}
+
+	/**
+	 * Replace the pool used by XMLUtil
+	 *
+	 * @param pool the new default pool
+	 */
+	public static void setDefault(final DocumentBuilderPool pool) {
+		if (pool == null)
+			throw new IllegalArgumentException("A pool is required");
+		defaultPool = pool;
+	}
+
+	/**
+	 * @return the pooling strategy
+	 */
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * @return the parser profile
+	 */
+	public ParserProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Take a builder from the pool. Builders must be handed back with
+	 * {@link #release(DocumentBuilder)} once the parse is complete.
+	 *
+	 * @return a DocumentBuilder for the exclusive use of the caller
+	 * @throws ParserConfigurationException if a builder cannot be created
+	 */
+	public DocumentBuilder acquire() throws ParserConfigurationException {
+		DocumentBuilder db = null;
+		switch (strategy) {
+			case THREAD_LOCAL:
+				db = perThread.get();
+				// clear the slot so a nested acquire gets its own builder
+				perThread.set(null);
+				break;
+			case BOUNDED:
+				db = idle.poll();
+				if (db != null)
+					idleCount.decrementAndGet();
+				break;
+			default:
+				break;
+		}
+		return db != null ? db : newBuilder();
+	}
+
+	/**
+	 * Return a builder to the pool
+	 *
+	 * @param db a builder obtained from {@link #acquire()}
+	 */
+	public void release(final DocumentBuilder db) {
+		if (db == null || strategy == Strategy.NONE)
+			return;
+		db.reset();
+		profile.configure(db);
+		if (strategy == Strategy.THREAD_LOCAL) {
+			perThread.set(db);
+		} else if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(db);
+		} else {
+			idleCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Parse a document with a pooled builder
+	 *
+	 * @param source the input to parse
+	 * @return the parsed Document
+	 * @throws ParserConfigurationException if a builder cannot be created
+	 * @throws SAXException                 if the input is not well formed
+	 * @throws IOException                  if the input cannot be read
+	 */
+	public Document parse(final InputSource source) throws ParserConfigurationException, SAXException, IOException {
+		final DocumentBuilder db = acquire();
+		try {
+			return db.parse(source);
+		} finally {
+			release(db);
+		}
+	}
+
+	// the constant named by a system property, ignoring case; a bad value is
+	// logged and the default used so the class still initializes
+	static <E extends Enum<E>> E property(final String name, final Class<E> type, final E defaultValue) {
+		final String value = System.getProperty(name);
+		if (value == null || value.trim().isEmpty())
+			return defaultValue;
+		for (final E e : type.getEnumConstants()) {
+			if (e.name().equalsIgnoreCase(value.trim()))
+				return e;
+		}
+		log.warn("Invalid value [" + value + "] for " + name + ", using " + defaultValue);
+		return defaultValue;
+	}
+
+	// DocumentBuilderFactory is not guaranteed to be thread-safe
+	private DocumentBuilder newBuilder() throws ParserConfigurationException {
+		final DocumentBuilder db;
+		synchronized (factory) {
+			db = factory.newDocumentBuilder();
+		}
+		profile.configure(db);
+		return db;
+	}
+}
@@ -0,0 +1,197 @@
+package com.edrpub.xml.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.w3c.dom.Document;
+
+/**
+ * An LRU cache of parsed documents used by the static file based query
+ * methods of XMLUtil once it is enabled with
+ * {@link XMLUtil#setDocumentCache(DocumentCache)}.
+ * <p>
+ * Entries are keyed by the absolute path of the file and are reparsed when
+ * the modification time or size of the file changes. The cache is bounded by
+ * a number of entries and by a budget of estimated heap, where a document is
+ * assumed to take {@value #SIZE_FACTOR} times its file size. Documents larger
+ * than the whole budget are parsed but never cached. Inputs that are not
+ * local files, such as URLs, bypass the cache.
+ * <p>
+ * Cached documents are shared between callers. They are fully built before
+ * they are cached and XMLUtil only reads them while holding the lock of the
+ * Document. Node lists returned from a cached document are copies; the nodes
+ * in them must not be modified, and their getChildNodes() lists must not be
+ * read by several threads at once.
+ */
+public final class DocumentCache {
+	/** Estimated ratio of DOM heap to file size */
+	public static final int SIZE_FACTOR = 10;
+	/** Default maximum number of cached documents */
+	public static final int DEFAULT_MAX_ENTRIES = 64;
+	/** Default budget of estimated heap in bytes */
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private long totalBytes;
+
+	/**
+	 * Create a cache with the default limits
+	 */
+	public DocumentCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Create a cache with the given limits
+	 *
+	 * @param maxEntries the maximum number of cached documents
+	 * @param maxBytes   the budget of estimated heap in bytes
+	 */
+	public DocumentCache(final int maxEntries, final long maxBytes) {
+		if (maxEntries < 1 || maxBytes < 1)
+			throw new IllegalArgumentException("Cache limits must be positive");
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Get the parsed document for a file, parsing it if it is not cached or
+	 * has changed since it was cached.
+	 *
+	 * @param fileName the path of the file
+	 * @return a Document that may be shared with other callers
+	 * @throws XMLParserException when there is a problem parsing the file
+	 */
+	Document get(final String fileName) throws XMLParserException {
+		final Path path = toPath(fileName);
+		final BasicFileAttributes attrs = path != null ? readAttributes(path) : null;
+		if (attrs == null || !attrs.isRegularFile())
+			return XMLUtil.getDocument(fileName);
+		final long modified = attrs.lastModifiedTime().toMillis();
+		final long size = attrs.size();
+		synchronized (this) {
+			final Entry e = entries.get(path);
+			if (e != null && e.modified == modified && e.size == size) {
+				hits.increment();
+				return e.doc;
+			}
+		}
+		misses.increment();
+		// parse outside the lock so other files are not held up, and build
+		// the deferred nodes before the document is shared
+		final Document doc = XMLUtil.expand(XMLUtil.getDocument(fileName));
+		put(path, new Entry(doc, modified, size));
+		return doc;
+	}
+
+	private synchronized void put(final Path path, final Entry entry) {
+		final Entry old = entries.remove(path);
+		if (old != null)
+			totalBytes -= old.estimate;
+		if (entry.estimate > maxBytes)
+			return;
+		entries.put(path, entry);
+		totalBytes += entry.estimate;
+		final Iterator<Entry> it = entries.values().iterator();
+		while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+			totalBytes -= it.next().estimate;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Remove a file from the cache
+	 *
+	 * @param fileName the path of the file
+	 */
+	public void invalidate(final String fileName) {
+		final Path path = toPath(fileName);
+		if (path == null)
+			return;
+		synchronized (this) {
+			final Entry e = entries.remove(path);
+			if (e != null)
+				totalBytes -= e.estimate;
+		}
+	}
+
+	/**
+	 * Remove every document from the cache
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		totalBytes = 0;
+	}
+
+	/**
+	 * @return the number of cached documents
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the estimated heap used by the cached documents in bytes
+	 */
+	public synchronized long getEstimatedBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return the number of lookups served from the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that required a parse
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	private static Path toPath(final String fileName) {
+		if (fileName == null || fileName.isEmpty())
+			return null;
+		try {
+			return Paths.get(fileName).toAbsolutePath().normalize();
+		} catch (final InvalidPathException e) {
+			return null;
+		}
+	}
+
+	private static BasicFileAttributes readAttributes(final Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	private static final class Entry {
+		private final Document doc;
+		private final long modified;
+		private final long size;
+		private final long estimate;
+
+		private Entry(final Document doc, final long modified, final long size) {
+			this.doc = doc;
+			this.modified = modified;
+			this.size = size;
+			this.estimate = size * SIZE_FACTOR;
+		}
+	}
+}
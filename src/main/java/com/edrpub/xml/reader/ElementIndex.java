@@ -0,0 +1,132 @@
+package com.edrpub.xml.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * The elements of a document by namespace and local name, each in document
+ * order, built in one pass. Lookups match the way
+ * Document.getElementsByTagNameNS does: * is a wildcard for the namespace or
+ * the local name and a null or empty namespace means no namespace.
+ * <p>
+ * The index is a snapshot; it must be rebuilt after the document changes.
+ */
+final class ElementIndex {
+	private static final List<Node> NONE = Collections.emptyList();
+
+	final Document document;
+	private final Node[] all;
+	// local name to the elements with that name in any namespace
+	private final Map<String, Node[]> byLocal;
+	// local name to namespace to elements
+	private final Map<String, Map<String, Node[]>> byName;
+	// true when some elements were created without namespace support
+	private final boolean level1;
+
+	private ElementIndex(final Document document, final Node[] all, final Map<String, Node[]> byLocal,
+			final Map<String, Map<String, Node[]>> byName, final boolean level1) {
+		this.document = document;
+		this.all = all;
+		this.byLocal = byLocal;
+		this.byName = byName;
+		this.level1 = level1;
+	}
+
+	/**
+	 * Index every element of the document
+	 *
+	 * @param d the document
+	 * @return the index
+	 */
+	static ElementIndex build(final Document d) {
+		final List<Node> all = new ArrayList<Node>();
+		final Map<String, List<Node>> byLocal = new HashMap<String, List<Node>>();
+		final Map<String, Map<String, List<Node>>> byName = new HashMap<String, Map<String, List<Node>>>();
+		boolean level1 = false;
+		Node n = d.getDocumentElement();
+		while (n != null) {
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				all.add(n);
+				final String local = n.getLocalName();
+				if (local == null) {
+					level1 = true;
+				} else {
+					byLocal.computeIfAbsent(local, k -> new ArrayList<Node>()).add(n);
+					byName.computeIfAbsent(local, k -> new HashMap<String, List<Node>>())
+							.computeIfAbsent(namespace(n.getNamespaceURI()), k -> new ArrayList<Node>()).add(n);
+				}
+			}
+			Node next = n.getFirstChild();
+			while (next == null && n != null) {
+				next = n.getNextSibling();
+				if (next == null)
+					n = n.getParentNode();
+			}
+			n = next;
+		}
+		final Map<String, Node[]> locals = new HashMap<String, Node[]>(byLocal.size() * 2);
+		for (final Map.Entry<String, List<Node>> e : byLocal.entrySet())
+			locals.put(e.getKey(), toArray(e.getValue()));
+		final Map<String, Map<String, Node[]>> names = new HashMap<String, Map<String, Node[]>>(byName.size() * 2);
+		for (final Map.Entry<String, Map<String, List<Node>>> e : byName.entrySet()) {
+			final Map<String, Node[]> uris = new HashMap<String, Node[]>(e.getValue().size() * 2);
+			for (final Map.Entry<String, List<Node>> u : e.getValue().entrySet())
+				uris.put(u.getKey(), toArray(u.getValue()));
+			names.put(e.getKey(), uris);
+		}
+		return new ElementIndex(d, toArray(all), locals, names, level1);
+	}
+
+	private static Node[] toArray(final List<Node> nodes) {
+		return nodes.toArray(new Node[nodes.size()]);
+	}
+
+	private static String namespace(final String uri) {
+		return uri == null ? "" : uri;
+	}
+
+	/**
+	 * @return true when some elements were created without namespace support,
+	 *         such as with Document.createElement. Those have no local name and
+	 *         are only found by a * local name.
+	 */
+	boolean hasLevel1Elements() {
+		return level1;
+	}
+
+	/**
+	 * The elements with the namespace and local name in document order
+	 *
+	 * @param namespace a namespace uri, * for any or null or "" for none
+	 * @param local     a local name or * for any
+	 * @return an unmodifiable list of elements
+	 */
+	List<Node> elements(final String namespace, final String local) {
+		final String uri = namespace(namespace);
+		if ("*".equals(local)) {
+			if ("*".equals(uri))
+				return Collections.unmodifiableList(Arrays.asList(all));
+			final List<Node> found = new ArrayList<Node>();
+			for (final Node n : all) {
+				if (uri.equals(namespace(n.getNamespaceURI())))
+					found.add(n);
+			}
+			return Collections.unmodifiableList(found);
+		}
+		final Node[] nodes;
+		if ("*".equals(uri)) {
+			nodes = byLocal.get(local);
+		} else {
+			final Map<String, Node[]> uris = byName.get(local);
+			nodes = uris == null ? null : uris.get(uri);
+		}
+		return nodes == null ? NONE : Collections.unmodifiableList(Arrays.asList(nodes));
+	}
+}
@@ -0,0 +1,185 @@
+package com.edrpub.xml.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * An immutable set of prefix to namespace uri bindings for namespace aware
+ * xpath queries.
+ * <p>
+ * Build the bindings once, from a map or from the declarations on the root
+ * element of a document, and share them between threads and requests.
+ * Bindings with the same prefixes and uris are equal, so queries compiled
+ * with equal bindings share the entries of the {@link XPathCache}. Use
+ * {@link #compile(String)} to prepare a query that is compiled once and
+ * evaluated many times.
+ * <p>
+ * The xml and xmlns prefixes are always bound. Unbound prefixes resolve to
+ * null so that an xpath using them fails to compile rather than matching
+ * elements without a namespace.
+ */
+public final class NamespaceBindings implements NamespaceContext {
+	/** Bindings without any prefixes */
+	public static final NamespaceBindings EMPTY = new NamespaceBindings(new LinkedHashMap<String, String>());
+	private static final String PREFIX_REQ = "A prefix is required!";
+	private static final String URI_REQ = "A namespace uri is required!";
+	private static final String XMLNS_PREFIX = XMLConstants.XMLNS_ATTRIBUTE + ":";
+
+	private final Map<String, String> uris;
+
+	private NamespaceBindings(final LinkedHashMap<String, String> uris) {
+		this.uris = Collections.unmodifiableMap(uris);
+	}
+
+	/**
+	 * Create bindings from a map of prefix to namespace uri
+	 *
+	 * @param prefixes the prefixes and their namespace uris
+	 * @return the bindings
+	 * @throws XMLParserException when the map is null or holds an empty prefix
+	 *                            or uri
+	 */
+	public static NamespaceBindings of(final Map<String, String> prefixes) throws XMLParserException {
+		if (prefixes == null)
+			throw new XMLParserException("A map of prefixes is required!");
+		final LinkedHashMap<String, String> uris = new LinkedHashMap<String, String>();
+		for (final Map.Entry<String, String> e : prefixes.entrySet())
+			bind(uris, e.getKey(), e.getValue());
+		return new NamespaceBindings(uris);
+	}
+
+	/**
+	 * Create bindings from the namespace declarations on the root element of
+	 * a document. A default namespace is bound to defaultPrefix, since xpath
+	 * has no default namespace, or skipped when defaultPrefix is null.
+	 *
+	 * @param document      the document
+	 * @param defaultPrefix the prefix for the default namespace or null
+	 * @return the bindings
+	 * @throws XMLParserException when the document is null or has no root
+	 *                            element
+	 */
+	public static NamespaceBindings fromDocument(final Document document, final String defaultPrefix)
+			throws XMLParserException {
+		if (document == null || document.getDocumentElement() == null)
+			throw new XMLParserException("A document with a root element is required!");
+		final Element root = document.getDocumentElement();
+		final NamedNodeMap atts = root.getAttributes();
+		final LinkedHashMap<String, String> uris = new LinkedHashMap<String, String>();
+		for (int i = 0; i < atts.getLength(); i++) {
+			final Node a = atts.item(i);
+			final String name = a.getNodeName();
+			if (name.startsWith(XMLNS_PREFIX))
+				bind(uris, name.substring(XMLNS_PREFIX.length()), a.getNodeValue());
+			else if (name.equals(XMLConstants.XMLNS_ATTRIBUTE) && defaultPrefix != null
+					&& !a.getNodeValue().isEmpty())
+				bind(uris, defaultPrefix, a.getNodeValue());
+		}
+		return new NamespaceBindings(uris);
+	}
+
+	/**
+	 * Returns new bindings with one more prefix, replacing any existing
+	 * binding of the prefix
+	 *
+	 * @param prefix the prefix
+	 * @param uri    the namespace uri
+	 * @return the new bindings
+	 * @throws XMLParserException when the prefix or uri is empty
+	 */
+	public NamespaceBindings with(final String prefix, final String uri) throws XMLParserException {
+		final LinkedHashMap<String, String> next = new LinkedHashMap<String, String>(uris);
+		bind(next, prefix, uri);
+		return new NamespaceBindings(next);
+	}
+
+	private static void bind(final Map<String, String> uris, final String prefix, final String uri)
+			throws XMLParserException {
+		if (prefix == null || prefix.isEmpty())
+			throw new XMLParserException(PREFIX_REQ);
+		if (uri == null || uri.isEmpty())
+			throw new XMLParserException(URI_REQ + " for prefix [" + prefix + "]");
+		if (prefix.equals(XMLConstants.XML_NS_PREFIX) || prefix.equals(XMLConstants.XMLNS_ATTRIBUTE))
+			throw new XMLParserException("The prefix [" + prefix + "] cannot be rebound");
+		uris.put(prefix, uri);
+	}
+
+	/**
+	 * Prepare an xpath query that uses these bindings
+	 *
+	 * @param qual an xpath query string
+	 * @return the prepared query
+	 * @throws XMLParserException when the xpath is invalid
+	 */
+	public XPathQuery compile(final String qual) throws XMLParserException {
+		return new XPathQuery(qual, this);
+	}
+
+	/**
+	 * @return the prefixes and their namespace uris in the order they were
+	 *         bound
+	 */
+	public Map<String, String> asMap() {
+		return uris;
+	}
+
+	@Override
+	public String getNamespaceURI(final String prefix) {
+		if (prefix == null)
+			throw new IllegalArgumentException(PREFIX_REQ);
+		if (prefix.equals(XMLConstants.XML_NS_PREFIX))
+			return XMLConstants.XML_NS_URI;
+		if (prefix.equals(XMLConstants.XMLNS_ATTRIBUTE))
+			return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+		return uris.get(prefix);
+	}
+
+	@Override
+	public String getPrefix(final String namespaceURI) {
+		final Iterator<String> it = getPrefixes(namespaceURI);
+		return it.hasNext() ? it.next() : null;
+	}
+
+	@Override
+	public Iterator<String> getPrefixes(final String namespaceURI) {
+		if (namespaceURI == null)
+			throw new IllegalArgumentException(URI_REQ);
+		if (namespaceURI.equals(XMLConstants.XML_NS_URI))
+			return Collections.singleton(XMLConstants.XML_NS_PREFIX).iterator();
+		if (namespaceURI.equals(XMLConstants.XMLNS_ATTRIBUTE_NS_URI))
+			return Collections.singleton(XMLConstants.XMLNS_ATTRIBUTE).iterator();
+		final List<String> prefixes = new ArrayList<String>();
+		for (final Map.Entry<String, String> e : uris.entrySet()) {
+			if (e.getValue().equals(namespaceURI))
+				prefixes.add(e.getKey());
+		}
+		return Collections.unmodifiableList(prefixes).iterator();
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		return this == o || o instanceof NamespaceBindings && uris.equals(((NamespaceBindings) o).uris);
+	}
+
+	@Override
+	public int hashCode() {
+		return uris.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return uris.toString();
+	}
+}
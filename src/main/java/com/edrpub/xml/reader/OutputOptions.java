@@ -0,0 +1,101 @@
+package com.edrpub.xml.reader;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * How {@link XMLSerializer} writes a document: the encoding, indentation and
+ * whether an xml declaration is written. Options are immutable; each with
+ * method returns a copy with one option changed.
+ * <p>
+ * {@link #DEFAULT} writes UTF-8 with an xml declaration and no added
+ * indentation, the same output XMLUtil has always written.
+ */
+public final class OutputOptions {
+	/** UTF-8, with an xml declaration and without indentation */
+	public static final OutputOptions DEFAULT = new OutputOptions(StandardCharsets.UTF_8.name(), true, -1);
+
+	private final String encoding;
+	private final boolean xmlDeclaration;
+	private final int indent;
+
+	private OutputOptions(final String encoding, final boolean xmlDeclaration, final int indent) {
+		this.encoding = encoding;
+		this.xmlDeclaration = xmlDeclaration;
+		this.indent = indent;
+	}
+
+	/**
+	 * @param encoding the name of a supported character encoding
+	 * @return options writing in that encoding
+	 * @throws IllegalArgumentException when the encoding is not supported
+	 */
+	public OutputOptions withEncoding(final String encoding) {
+		if (encoding == null || !Charset.isSupported(encoding))
+			throw new IllegalArgumentException("Unsupported encoding [" + encoding + "]");
+		return new OutputOptions(encoding, xmlDeclaration, indent);
+	}
+
+	/**
+	 * @param xmlDeclaration false to leave out the xml declaration
+	 * @return options with or without the declaration
+	 */
+	public OutputOptions withXmlDeclaration(final boolean xmlDeclaration) {
+		return new OutputOptions(encoding, xmlDeclaration, indent);
+	}
+
+	/**
+	 * @param spaces the number of spaces per level, or -1 to write the
+	 *               document as it is
+	 * @return options indenting the output
+	 */
+	public OutputOptions withIndent(final int spaces) {
+		if (spaces < -1)
+			throw new IllegalArgumentException("Indent must be -1 or more");
+		return new OutputOptions(encoding, xmlDeclaration, spaces);
+	}
+
+	/**
+	 * @return the name of the character encoding
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * @return true when an xml declaration is written
+	 */
+	public boolean isXmlDeclaration() {
+		return xmlDeclaration;
+	}
+
+	/**
+	 * @return the number of spaces per level, or -1 when not indenting
+	 */
+	public int getIndent() {
+		return indent;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof OutputOptions))
+			return false;
+		final OutputOptions other = (OutputOptions) o;
+		return encoding.equals(other.encoding) && xmlDeclaration == other.xmlDeclaration
+				&& indent == other.indent;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(encoding, xmlDeclaration, indent);
+	}
+
+	@Override
+	public String toString() {
+		return "OutputOptions[encoding=" + encoding + ", xmlDeclaration=" + xmlDeclaration + ", indent=" + indent
+				+ "]";
+	}
+}
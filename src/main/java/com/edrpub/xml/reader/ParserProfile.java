@@ -0,0 +1,173 @@
+package com.edrpub.xml.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * How the parsers used by XMLUtil and the streaming readers treat document
+ * type declarations, external DTDs and entities.
+ * <p>
+ * With the JDK defaults a DOCTYPE can make the parser fetch an external DTD
+ * or entity over the network or from the filesystem, which adds latency,
+ * hangs on hosts without network access and exposes XXE. The profile of the
+ * default {@link DocumentBuilderPool} is chosen with the system property
+ * {@value DocumentBuilderPool#PROFILE_PROPERTY} and is used by the StAX
+ * readers as well.
+ */
+public enum ParserProfile {
+	/** the JDK defaults, external DTDs and entities are loaded */
+	DEFAULT,
+	/**
+	 * documents with a DOCTYPE are rejected and no external DTD, schema or
+	 * entity is ever read
+	 */
+	STRICT_SECURE,
+	/**
+	 * the DOCTYPE is read but external DTDs and entities are skipped, so
+	 * nothing beyond the input itself is read; entities declared in the
+	 * document are still expanded, up to a limit
+	 */
+	FAST_NO_DTD,
+	/**
+	 * documents are validated against their DTD, which may be loaded from a
+	 * file or URL, and a validation error fails the parse
+	 */
+	VALIDATING;
+
+	private static final Logger log = LoggerFactory.getLogger(ParserProfile.class);
+	private static final String DISALLOW_DOCTYPE = "http://apache.org/xml/features/disallow-doctype-decl";
+	private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+	private static final String EXTERNAL_GENERAL = "http://xml.org/sax/features/external-general-entities";
+	private static final String EXTERNAL_PARAMETER = "http://xml.org/sax/features/external-parameter-entities";
+	private static final String ENTITY_EXPANSION_LIMIT = "jdk.xml.entityExpansionLimit";
+	private static final String IGNORE_EXTERNAL_DTD = "http://java.sun.com/xml/stream/properties/ignore-external-dtd";
+	/** The number of entity expansions allowed by FAST_NO_DTD */
+	static final int FAST_EXPANSION_LIMIT = 10_000;
+
+	// resolves every external DTD and entity to nothing
+	private static final EntityResolver NO_ENTITIES = (publicId, systemId) -> new InputSource(new StringReader(""));
+	private static final XMLResolver NO_STAX_ENTITIES = (publicId, systemId, base, ns) -> new ByteArrayInputStream(
+			new byte[0]);
+	// the default handler of a validating parser only prints errors
+	private static final ErrorHandler VALIDATION_ERRORS = new ErrorHandler() {
+		@Override
+		public void warning(final SAXParseException e) {
+			log.warn("Validation warning: " + e.getMessage());
+		}
+
+		@Override
+		public void error(final SAXParseException e) throws SAXParseException {
+			throw e;
+		}
+
+		@Override
+		public void fatalError(final SAXParseException e) throws SAXParseException {
+			throw e;
+		}
+	};
+
+	/**
+	 * Apply the profile to a factory
+	 *
+	 * @param f a factory with the pool settings applied
+	 * @throws ParserConfigurationException when the parser does not support a
+	 *                                      required feature
+	 */
+	void configure(final DocumentBuilderFactory f) throws ParserConfigurationException {
+		switch (this) {
+			case STRICT_SECURE:
+				f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+				f.setFeature(DISALLOW_DOCTYPE, true);
+				f.setFeature(EXTERNAL_GENERAL, false);
+				f.setFeature(EXTERNAL_PARAMETER, false);
+				f.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+				f.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+				f.setXIncludeAware(false);
+				f.setExpandEntityReferences(false);
+				break;
+			case FAST_NO_DTD:
+				f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+				f.setFeature(LOAD_EXTERNAL_DTD, false);
+				f.setFeature(EXTERNAL_GENERAL, false);
+				f.setFeature(EXTERNAL_PARAMETER, false);
+				f.setXIncludeAware(false);
+				setOptional(f, ENTITY_EXPANSION_LIMIT, Integer.toString(FAST_EXPANSION_LIMIT));
+				break;
+			case VALIDATING:
+				// secure processing keeps the limits but blocks the DTD, allow it again
+				f.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+				f.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "all");
+				f.setValidating(true);
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Apply the profile to a new builder, and again after each reset() as it
+	 * restores the handlers the builder was created with
+	 *
+	 * @param db a builder created by a factory of this profile
+	 */
+	void configure(final DocumentBuilder db) {
+		if (this == FAST_NO_DTD)
+			db.setEntityResolver(NO_ENTITIES);
+		else if (this == VALIDATING)
+			db.setErrorHandler(VALIDATION_ERRORS);
+	}
+
+	/**
+	 * Apply the profile to a StAX factory. StAX readers do not validate, so
+	 * VALIDATING reads like DEFAULT.
+	 *
+	 * @param f a factory with the reader settings applied
+	 */
+	void configure(final XMLInputFactory f) {
+		switch (this) {
+			case STRICT_SECURE:
+				f.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+				f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+				setOptional(f, XMLConstants.ACCESS_EXTERNAL_DTD, "");
+				break;
+			case FAST_NO_DTD:
+				f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+				f.setXMLResolver(NO_STAX_ENTITIES);
+				setOptional(f, IGNORE_EXTERNAL_DTD, Boolean.TRUE);
+				setOptional(f, ENTITY_EXPANSION_LIMIT, Integer.toString(FAST_EXPANSION_LIMIT));
+				break;
+			default:
+				break;
+		}
+	}
+
+	// implementation specific settings are skipped when not supported
+	private static void setOptional(final DocumentBuilderFactory f, final String name, final Object value) {
+		try {
+			f.setAttribute(name, value);
+		} catch (final IllegalArgumentException e) {
+			log.debug("Parser attribute not supported: " + name);
+		}
+	}
+
+	private static void setOptional(final XMLInputFactory f, final String name, final Object value) {
+		if (f.isPropertySupported(name))
+			f.setProperty(name, value);
+		else
+			log.debug("StAX property not supported: " + name);
+	}
+}
@@ -0,0 +1,526 @@
+package com.edrpub.xml.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A parsed xpath limited to the forms used for configuration lookups, so they
+ * can be answered without the general XPath engine. Supported are absolute,
+ * relative and // location paths of element name steps (prefixed or *), an
+ * optional final attribute step, and predicates of the forms [2], [@name],
+ * [@name='value'] and [child='value']. {@link #parse(String)} returns null for
+ * anything else and callers fall back to JAXP.
+ * <p>
+ * {@link #select(Node, NamespaceContext, boolean)} evaluates a path by walking
+ * the DOM and returns the same nodes, in the same document order, as
+ * XPathExpression.evaluate would.
+ */
+final class SimplePath {
+	static final int POSITION = 0;
+	static final int HAS_ATTRIBUTE = 1;
+	static final int ATTRIBUTE_EQUALS = 2;
+	static final int CHILD_EQUALS = 3;
+	private static final int CACHE_SIZE = 1024;
+	// cached for xpaths that are not simple paths
+	private static final SimplePath UNSUPPORTED = new SimplePath(false, new Step[0]);
+	private static final Map<String, SimplePath> cache = new ConcurrentHashMap<String, SimplePath>();
+	private static final Fallback FALLBACK = new Fallback();
+
+	final boolean absolute;
+	final Step[] steps;
+
+	private SimplePath(final boolean absolute, final Step[] steps) {
+		this.absolute = absolute;
+		this.steps = steps;
+	}
+
+	/**
+	 * A name test. A null prefix is an unprefixed name, a local name of * is
+	 * a wildcard.
+	 */
+	static final class Name {
+		final String prefix;
+		final String local;
+
+		Name(final String prefix, final String local) {
+			this.prefix = prefix;
+			this.local = local;
+		}
+
+		boolean isWildcard() {
+			return "*".equals(local);
+		}
+
+		// the namespace uri of the name, "" for no namespace or null when the
+		// prefix is not bound, which callers leave to JAXP to report
+		String resolve(final NamespaceContext context) {
+			if (prefix == null)
+				return "";
+			final String uri = context == null ? null : context.getNamespaceURI(prefix);
+			return uri == null || uri.isEmpty() ? null : uri;
+		}
+	}
+
+	static final class Predicate {
+		final int type;
+		final int position;
+		final Name name;
+		final String value;
+
+		Predicate(final int type, final int position, final Name name, final String value) {
+			this.type = type;
+			this.position = position;
+			this.name = name;
+			this.value = value;
+		}
+	}
+
+	static final class Step {
+		// true when the step follows //
+		final boolean descendant;
+		final boolean attribute;
+		final Name name;
+		final Predicate[] predicates;
+
+		Step(final boolean descendant, final boolean attribute, final Name name, final Predicate[] predicates) {
+			this.descendant = descendant;
+			this.attribute = attribute;
+			this.name = name;
+			this.predicates = predicates;
+		}
+	}
+
+	/**
+	 * Parse an xpath
+	 *
+	 * @param xpath an xpath query string
+	 * @return the parsed path or null when the xpath is not a simple path
+	 */
+	static SimplePath parse(final String xpath) {
+		if (xpath == null || xpath.isEmpty())
+			return null;
+		final Parser p = new Parser(xpath);
+		final List<Step> steps = new ArrayList<Step>();
+		boolean descendant = false;
+		final boolean absolute = p.skip('/');
+		if (absolute)
+			descendant = p.skip('/');
+		while (true) {
+			final Step step = p.step(descendant);
+			if (step == null)
+				return null;
+			steps.add(step);
+			if (p.done())
+				return new SimplePath(absolute, steps.toArray(new Step[steps.size()]));
+			if (step.attribute || !p.skip('/'))
+				return null;
+			descendant = p.skip('/');
+		}
+	}
+
+	/**
+	 * Parse an xpath, remembering the result for the next call
+	 *
+	 * @param xpath an xpath query string
+	 * @return the parsed path or null when the xpath is not a simple path
+	 */
+	static SimplePath compile(final String xpath) {
+		if (xpath == null || xpath.isEmpty())
+			return null;
+		SimplePath path = cache.get(xpath);
+		if (path == null) {
+			path = parse(xpath);
+			if (path == null)
+				path = UNSUPPORTED;
+			if (cache.size() >= CACHE_SIZE)
+				cache.clear();
+			cache.put(xpath, path);
+		}
+		return path == UNSUPPORTED ? null : path;
+	}
+
+	/**
+	 * The nodes selected by this path from the item, in document order and
+	 * without duplicates
+	 *
+	 * @param item    the context node, a document or an element
+	 * @param context a NamespaceContext for prefixed names or null
+	 * @param first   stop after the first result
+	 * @return the nodes or null when the path must be left to JAXP: a prefix
+	 *         is not bound or the item is not part of a document
+	 */
+	List<Node> select(final Node item, final NamespaceContext context, final boolean first) {
+		return select(item, context, first, null);
+	}
+
+	/**
+	 * The nodes selected by this path, looking up a leading // step of the
+	 * document in an element index instead of walking the whole document
+	 *
+	 * @param item    the context node, a document or an element
+	 * @param context a NamespaceContext for prefixed names or null
+	 * @param first   stop after the first result
+	 * @param index   an index of the document of the item or null
+	 * @return the nodes or null when the path must be left to JAXP
+	 */
+	List<Node> select(final Node item, final NamespaceContext context, final boolean first,
+			final ElementIndex index) {
+		try {
+			return walk(item, context, first, index);
+		} catch (final Fallback e) {
+			return null;
+		}
+	}
+
+	private List<Node> walk(final Node item, final NamespaceContext context, final boolean first,
+			final ElementIndex index) {
+		final Node start = absolute ? root(item) : item;
+		if (start == null || start.getNodeType() != Node.DOCUMENT_NODE && start.getNodeType() != Node.ELEMENT_NODE)
+			return null;
+		List<Node> current = Collections.singletonList(start);
+		// true once the selected nodes may contain one another
+		boolean nested = false;
+		for (int i = 0; i < steps.length; i++) {
+			final Step step = steps[i];
+			final String uri = step.name.isWildcard() ? "*" : step.name.resolve(context);
+			if (uri == null)
+				return null;
+			final String[] uris = new String[step.predicates.length];
+			for (int p = 0; p < uris.length; p++) {
+				if (step.predicates[p].type != POSITION && (uris[p] = step.predicates[p].name.resolve(context)) == null)
+					return null;
+			}
+			if (step.attribute)
+				return attributes(step.descendant ? descendantsOrSelf(current) : current, uri, step.name.local,
+						first);
+			final boolean last = first && i == steps.length - 1;
+			final List<Node> next = new ArrayList<Node>();
+			if (step.descendant && canLookup(current, step, index)) {
+				for (final Node n : index.elements(uri, step.name.local)) {
+					if (passes(n, step, uris)) {
+						next.add(n);
+						if (last)
+							break;
+					}
+				}
+				nested = true;
+			} else if (step.descendant) {
+				descendants(current, step, uri, uris, last, next);
+				nested = true;
+			} else {
+				for (final Node c : current) {
+					next.addAll(children(c, step, uri, uris));
+					if (last && !next.isEmpty() && !nested)
+						break;
+				}
+				if (nested && current.size() > 1)
+					next.sort(SimplePath::compareOrder);
+			}
+			current = next;
+		}
+		return first && current.size() > 1 ? current.subList(0, 1) : current;
+	}
+
+	// raised on a node JAXP matches differently, to leave the path to it
+	private static final class Fallback extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Fallback() {
+			super(null, null, false, false);
+		}
+	}
+
+	// true when a // step from the document can be answered by the index;
+	// positions are relative to siblings so those steps are walked
+	private static boolean canLookup(final List<Node> current, final Step step, final ElementIndex index) {
+		if (index == null || index.hasLevel1Elements() || current.size() != 1 || current.get(0) != index.document)
+			return false;
+		for (final Predicate p : step.predicates) {
+			if (p.type == POSITION)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean passes(final Node n, final Step step, final String[] uris) {
+		for (int i = 0; i < step.predicates.length; i++) {
+			if (!test(n, step.predicates[i], uris[i]))
+				return false;
+		}
+		return true;
+	}
+
+	// the document the node belongs to, null when it is detached
+	private static Node root(final Node item) {
+		Node n = item.getNodeType() == Node.ATTRIBUTE_NODE ? ((Attr) item).getOwnerElement() : item;
+		if (n == null)
+			return null;
+		while (n.getParentNode() != null)
+			n = n.getParentNode();
+		return n.getNodeType() == Node.DOCUMENT_NODE ? n : null;
+	}
+
+	private static int compareOrder(final Node a, final Node b) {
+		if (a == b)
+			return 0;
+		return (a.compareDocumentPosition(b) & Node.DOCUMENT_POSITION_FOLLOWING) != 0 ? -1 : 1;
+	}
+
+	private static boolean isAncestor(final Node ancestor, final Node n) {
+		for (Node p = n.getParentNode(); p != null; p = p.getParentNode()) {
+			if (p == ancestor)
+				return true;
+		}
+		return false;
+	}
+
+	// the nodes and all their descendants in document order
+	private static List<Node> descendantsOrSelf(final List<Node> nodes) {
+		final List<Node> result = new ArrayList<Node>();
+		Node covered = null;
+		for (final Node c : nodes) {
+			if (covered != null && isAncestor(covered, c))
+				continue;
+			covered = c;
+			Node n = c;
+			while (n != null) {
+				result.add(n);
+				n = following(c, n);
+			}
+		}
+		return result;
+	}
+
+	// the next node after n in a preorder walk of the subtree of c
+	private static Node following(final Node c, Node n) {
+		Node next = n.getFirstChild();
+		while (next == null && n != c) {
+			next = n.getNextSibling();
+			if (next == null)
+				n = n.getParentNode();
+		}
+		return next;
+	}
+
+	// the children passing a // step of every node below the contexts, found
+	// in one preorder walk so they come out in document order
+	private static void descendants(final List<Node> contexts, final Step step, final String uri,
+			final String[] uris, final boolean first, final List<Node> out) {
+		// children already selected by their parent, waiting to be reached
+		final Set<Node> pending = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		Node covered = null;
+		for (final Node c : contexts) {
+			if (covered != null && isAncestor(covered, c))
+				continue;
+			covered = c;
+			for (Node n = c; n != null; n = following(c, n)) {
+				if (n != c && n.getNodeType() == Node.ELEMENT_NODE && (step.predicates.length == 0
+						? step.name.isWildcard() || matches(n, uri, step.name.local)
+						: pending.remove(n))) {
+					out.add(n);
+					if (first)
+						return;
+				}
+				if (step.predicates.length > 0 && n.hasChildNodes())
+					pending.addAll(children(n, step, uri, uris));
+			}
+		}
+	}
+
+	// the element children of c passing the step
+	private static List<Node> children(final Node c, final Step step, final String uri, final String[] uris) {
+		List<Node> kept = new ArrayList<Node>();
+		for (Node n = c.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() == Node.ELEMENT_NODE && (step.name.isWildcard() || matches(n, uri, step.name.local)))
+				kept.add(n);
+		}
+		for (int i = 0; i < step.predicates.length && !kept.isEmpty(); i++) {
+			final Predicate p = step.predicates[i];
+			if (p.type == POSITION) {
+				kept = p.position >= 1 && p.position <= kept.size() ? kept.subList(p.position - 1, p.position)
+						: Collections.<Node>emptyList();
+				continue;
+			}
+			final List<Node> filtered = new ArrayList<Node>();
+			for (final Node n : kept) {
+				if (test(n, p, uris[i]))
+					filtered.add(n);
+			}
+			kept = filtered;
+		}
+		return kept;
+	}
+
+	private static boolean test(final Node n, final Predicate p, final String uri) {
+		if (p.type == CHILD_EQUALS) {
+			for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+				if (c.getNodeType() == Node.ELEMENT_NODE && matches(c, uri, p.name.local)
+						&& p.value.equals(c.getTextContent()))
+					return true;
+			}
+			return false;
+		}
+		final Node a = attribute(n, uri, p.name.local);
+		return a != null && (p.type == HAS_ATTRIBUTE || p.value.equals(a.getNodeValue()));
+	}
+
+	private static List<Node> attributes(final List<Node> owners, final String uri, final String local,
+			final boolean first) {
+		final List<Node> result = new ArrayList<Node>();
+		for (final Node n : owners) {
+			final Node a = n.getNodeType() == Node.ELEMENT_NODE ? attribute(n, uri, local) : null;
+			if (a != null) {
+				result.add(a);
+				if (first)
+					break;
+			}
+		}
+		return result;
+	}
+
+	// an attribute of element n, never a namespace declaration
+	private static Node attribute(final Node n, final String uri, final String local) {
+		final NamedNodeMap atts = n.getAttributes();
+		for (int i = 0; i < atts.getLength(); i++) {
+			final Node a = atts.item(i);
+			final String name = a.getNodeName();
+			if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(a.getNamespaceURI())
+					|| name.equals(XMLConstants.XMLNS_ATTRIBUTE)
+					|| name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":"))
+				continue;
+			if (matches(a, uri, local))
+				return a;
+		}
+		return null;
+	}
+
+	// match names the way JAXP does. Nodes created without namespace support,
+	// such as by Document.createElement, have no namespace; JAXP resolves the
+	// prefix of prefixed ones itself so those are left to it.
+	private static boolean matches(final Node n, final String uri, final String local) {
+		final String l = n.getLocalName();
+		if (l == null && n.getNodeName().indexOf(':') >= 0 && !("*".equals(local) && "*".equals(uri)))
+			throw FALLBACK;
+		if (!"*".equals(local) && !local.equals(l != null ? l : n.getNodeName()))
+			return false;
+		if ("*".equals(uri))
+			return true;
+		final String u = n.getNamespaceURI();
+		return uri.equals(u == null ? "" : u);
+	}
+
+	private static final class Parser {
+		private final String s;
+		private int pos;
+
+		Parser(final String s) {
+			this.s = s;
+		}
+
+		boolean done() {
+			return pos == s.length();
+		}
+
+		boolean skip(final char c) {
+			if (pos < s.length() && s.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		Step step(final boolean descendant) {
+			final boolean attribute = skip('@');
+			final Name name = name();
+			if (name == null || attribute && name.isWildcard())
+				return null;
+			final List<Predicate> predicates = new ArrayList<Predicate>();
+			while (!attribute && skip('[')) {
+				final Predicate pr = predicate();
+				if (pr == null || !skip(']'))
+					return null;
+				predicates.add(pr);
+			}
+			return new Step(descendant, attribute, name, predicates.toArray(new Predicate[predicates.size()]));
+		}
+
+		private Predicate predicate() {
+			final int start = pos;
+			while (pos < s.length() && s.charAt(pos) >= '0' && s.charAt(pos) <= '9')
+				pos++;
+			if (pos > start) {
+				if (pos - start > 9)
+					return null;
+				return new Predicate(POSITION, Integer.parseInt(s.substring(start, pos)), null, null);
+			}
+			final boolean attribute = skip('@');
+			final Name name = name();
+			if (name == null || name.isWildcard())
+				return null;
+			if (!skip('='))
+				return attribute ? new Predicate(HAS_ATTRIBUTE, 0, name, null) : null;
+			final String value = literal();
+			if (value == null)
+				return null;
+			return new Predicate(attribute ? ATTRIBUTE_EQUALS : CHILD_EQUALS, 0, name, value);
+		}
+
+		private String literal() {
+			if (pos >= s.length())
+				return null;
+			final char quote = s.charAt(pos);
+			if (quote != '\'' && quote != '"')
+				return null;
+			final int end = s.indexOf(quote, pos + 1);
+			if (end < 0)
+				return null;
+			final String value = s.substring(pos + 1, end);
+			pos = end + 1;
+			return value;
+		}
+
+		private Name name() {
+			if (skip('*'))
+				return new Name(null, "*");
+			final String first = ncName();
+			if (first == null)
+				return null;
+			if (!skip(':'))
+				return new Name(null, first);
+			if (skip('*'))
+				return null;
+			final String local = ncName();
+			return local == null ? null : new Name(first, local);
+		}
+
+		private String ncName() {
+			final int start = pos;
+			if (pos < s.length() && (Character.isLetter(s.charAt(pos)) || s.charAt(pos) == '_')) {
+				pos++;
+				while (pos < s.length()) {
+					final char c = s.charAt(pos);
+					if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.')
+						break;
+					pos++;
+				}
+			}
+			if (pos == start)
+				return null;
+			final String name = s.substring(start, pos);
+			// node tests and functions such as text() or node() are not names
+			return pos < s.length() && s.charAt(pos) == '(' ? null : name;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.edrpub.xml.reader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * Builds small DOM fragments from an XMLStreamReader so streaming callers can
+ * hand out nodes without parsing the whole document. Fragments match what the
+ * DOM parser used by XMLUtil produces: comments are dropped, text on either
+ * side of a comment is merged and namespace declarations are kept as xmlns
+ * attributes.
+ */
+final class StaxDomBuilder {
+
+	private StaxDomBuilder() {
+	}
+
+	// create an empty Document to own detached fragments
+	static Document newDocument() throws XMLParserException {
+		final DocumentBuilderPool pool = DocumentBuilderPool.getDefault();
+		try {
+			final DocumentBuilder db = pool.acquire();
+			try {
+				return db.newDocument();
+			} finally {
+				pool.release(db);
+			}
+		} catch (final ParserConfigurationException e) {
+			throw new XMLParserException("FATAL: Invalid parser configuration", e);
+		}
+	}
+
+	/**
+	 * Read the element the reader is positioned on, and all of its content,
+	 * into an element owned by doc. The element is not attached to the
+	 * document. The reader is left on the matching END_ELEMENT.
+	 *
+	 * @param r   a reader positioned on a START_ELEMENT
+	 * @param doc the owner of the new nodes
+	 * @return the new element
+	 * @throws XMLStreamException when the input is not well formed
+	 */
+	static Element readElement(final XMLStreamReader r, final Document doc) throws XMLStreamException {
+		final Element root = createElement(r, doc);
+		Node current = root;
+		while (r.hasNext()) {
+			switch (r.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					current = current.appendChild(createElement(r, doc));
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (current == root)
+						return root;
+					current = current.getParentNode();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					appendText(current, r.getText(), doc);
+					break;
+				case XMLStreamConstants.CDATA:
+					current.appendChild(doc.createCDATASection(r.getText()));
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					current.appendChild(doc.createProcessingInstruction(r.getPITarget(), r.getPIData()));
+					break;
+				default:
+					// comments are ignored like the DOM parser does
+					break;
+			}
+		}
+		throw new XMLStreamException("Unexpected end of document in element " + root.getNodeName());
+	}
+
+	// the element name as written in the document, prefix:local
+	static String qualifiedName(final XMLStreamReader r) {
+		final String prefix = r.getPrefix();
+		return prefix == null || prefix.isEmpty() ? r.getLocalName() : prefix + ":" + r.getLocalName();
+	}
+
+	// the name of an xmlns attribute declaring a prefix
+	static String xmlnsName(final String prefix) {
+		return prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE
+				: XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+	}
+
+	private static Element createElement(final XMLStreamReader r, final Document doc) {
+		final Element e = doc.createElementNS(emptyToNull(r.getNamespaceURI()), qualifiedName(r));
+		for (int i = 0; i < r.getNamespaceCount(); i++) {
+			final String uri = r.getNamespaceURI(i);
+			e.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, xmlnsName(r.getNamespacePrefix(i)),
+					uri == null ? "" : uri);
+		}
+		for (int i = 0; i < r.getAttributeCount(); i++) {
+			final String prefix = r.getAttributePrefix(i);
+			final String local = r.getAttributeLocalName(i);
+			e.setAttributeNS(emptyToNull(r.getAttributeNamespace(i)),
+					prefix == null || prefix.isEmpty() ? local : prefix + ":" + local,
+					r.getAttributeValue(i));
+		}
+		return e;
+	}
+
+	// merge with a preceding text node the way the DOM parser does
+	private static void appendText(final Node parent, final String text, final Document doc) {
+		final Node last = parent.getLastChild();
+		if (last != null && last.getNodeType() == Node.TEXT_NODE)
+			((Text) last).appendData(text);
+		else
+			parent.appendChild(doc.createTextNode(text));
+	}
+
+	static String emptyToNull(final String s) {
+		return s == null || s.isEmpty() ? null : s;
+	}
+}
@@ -0,0 +1,142 @@
+package com.edrpub.xml.reader;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An XMLStreamReader over a file or URL together with the stream it reads,
+ * so both are released by a single close(). Readers follow the
+ * {@link ParserProfile} of the default DocumentBuilderPool.
+ */
+final class StaxInput implements Closeable {
+	private static final Logger log = LoggerFactory.getLogger(StaxInput.class);
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Map<ParserProfile, XMLInputFactory> factories = newFactories();
+
+	final XMLStreamReader reader;
+	private final InputStream in;
+
+	private StaxInput(final XMLStreamReader reader, final InputStream in) {
+		this.reader = reader;
+		this.in = in;
+	}
+
+	/**
+	 * Open a file path or URL for streaming
+	 *
+	 * @param fName a file path or URL
+	 * @return a StaxInput positioned at the start of the document
+	 * @throws XMLParserException when the input cannot be opened
+	 */
+	static StaxInput open(final String fName) throws XMLParserException {
+		XMLUtil.validateRequired(fName, "A file/path is required!");
+		InputStream in = null;
+		try {
+			final Path p = toFile(fName);
+			String systemId = fName;
+			if (p != null) {
+				in = Files.newInputStream(p);
+				systemId = p.toUri().toString();
+			} else {
+				in = new URL(fName).openStream();
+			}
+			in = new BufferedInputStream(in, BUFFER_SIZE);
+			return new StaxInput(factory().createXMLStreamReader(systemId, in), in);
+		} catch (final XMLStreamException e) {
+			closeQuietly(in);
+			throw new XMLParserException("Stax parse error", e);
+		} catch (final IOException e) {
+			log.error("Unable to find/read file: " + fName);
+			throw new XMLParserException("Unable to find/read file: " + fName, e);
+		}
+	}
+
+	/**
+	 * Stream a document from an open stream. Closing the StaxInput does not
+	 * close the stream.
+	 *
+	 * @param in a stream of an xml document
+	 * @return a StaxInput positioned at the start of the document
+	 * @throws XMLParserException when the input is missing or cannot be read
+	 */
+	static StaxInput open(final InputStream in) throws XMLParserException {
+		if (in == null)
+			throw new XMLParserException("An xml input is required!");
+		try {
+			return new StaxInput(factory().createXMLStreamReader(in), null);
+		} catch (final XMLStreamException e) {
+			throw new XMLParserException("Stax parse error", e);
+		}
+	}
+
+	// the local file for a name or null when it is not a readable file
+	static Path toFile(final String fName) {
+		try {
+			final Path p = Paths.get(fName);
+			return Files.isRegularFile(p) ? p : null;
+		} catch (final InvalidPathException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			reader.close();
+		} catch (final XMLStreamException e) {
+			log.debug("Error closing stream reader", e);
+		}
+		closeQuietly(in);
+	}
+
+	private static void closeQuietly(final InputStream in) {
+		if (in != null) {
+			try {
+				in.close();
+			} catch (final IOException e) {
+				log.debug("Error closing input", e);
+			}
+		}
+	}
+
+	// the factory for the profile of the default pool
+	private static XMLInputFactory factory() {
+		return factories.get(DocumentBuilderPool.getDefault().getProfile());
+	}
+
+	// one factory per profile, never changed after they are created
+	private static Map<ParserProfile, XMLInputFactory> newFactories() {
+		final Map<ParserProfile, XMLInputFactory> m = new EnumMap<>(ParserProfile.class);
+		for (final ParserProfile p : ParserProfile.values())
+			m.put(p, newFactory(p));
+		return m;
+	}
+
+	private static XMLInputFactory newFactory(final ParserProfile profile) {
+		final XMLInputFactory f = XMLInputFactory.newInstance();
+		f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		f.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		// report CDATA separately so it can be kept apart from text like the DOM does
+		if (f.isPropertySupported(REPORT_CDATA))
+			f.setProperty(REPORT_CDATA, Boolean.TRUE);
+		profile.configure(f);
+		return f;
+	}
+}
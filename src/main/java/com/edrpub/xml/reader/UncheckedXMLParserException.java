@@ -0,0 +1,20 @@
+package com.edrpub.xml.reader;
+
+/**
+ * Wraps an XMLParserException where a checked exception cannot be thrown,
+ * such as from an Iterator or a Stream.
+ */
+public class UncheckedXMLParserException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedXMLParserException(XMLParserException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized XMLParserException getCause() {
+        return (XMLParserException) super.getCause();
+    }
+
+}
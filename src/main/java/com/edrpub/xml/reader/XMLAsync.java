@@ -0,0 +1,265 @@
+package com.edrpub.xml.reader;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses xml files and runs queries against them asynchronously, returning
+ * CompletableFutures instead of blocking the caller.
+ * <p>
+ * The work is split over two executors. Files are read on the I/O executor,
+ * and parsing and querying, which are CPU bound, run on the CPU executor. The
+ * default instance reads on virtual threads when the runtime supports them
+ * (Java 21 and later) and on a cached pool of daemon threads otherwise, and
+ * parses on a pool with one daemon thread per processor. That way thousands of
+ * concurrent lookups wait for I/O without holding platform threads, while the
+ * number of documents parsed at once stays bounded.
+ * <p>
+ * Every call parses the file again; the {@link DocumentCache} of the static
+ * XMLUtil methods is not used. Parse once with {@link #parse(String)} and
+ * query the returned XMLUtil to run several queries on the same document.
+ * Failures complete the future exceptionally with an XMLParserException as
+ * the cause.
+ */
+public final class XMLAsync {
+	private static final Logger log = LoggerFactory.getLogger(XMLAsync.class);
+
+	private final Executor io;
+	private final Executor cpu;
+	private final boolean virtualThreads;
+
+	/**
+	 * Work to run against a parsed document
+	 *
+	 * @param <T> the type of the result
+	 */
+	@FunctionalInterface
+	public interface Query<T> {
+		/**
+		 * @param util the parsed document
+		 * @return the result of the query
+		 * @throws XMLParserException when the query fails
+		 */
+		T apply(XMLUtil util) throws XMLParserException;
+	}
+
+	// created on first use so the default threads are only started when needed
+	private static final class Default {
+		private static final XMLAsync INSTANCE = create();
+
+		private static XMLAsync create() {
+			final ExecutorService virtual = newVirtualThreadExecutor();
+			final Executor io = virtual != null ? virtual
+					: Executors.newCachedThreadPool(daemon("xml-async-io-"));
+			final Executor cpu = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					daemon("xml-async-cpu-"));
+			return new XMLAsync(io, cpu, virtual != null);
+		}
+	}
+
+	/**
+	 * Create an instance that runs everything on one executor
+	 *
+	 * @param executor the executor for reading, parsing and querying
+	 */
+	public XMLAsync(final Executor executor) {
+		this(executor, executor);
+	}
+
+	/**
+	 * Create an instance with separate executors for I/O and CPU bound work
+	 *
+	 * @param io  the executor files are read on
+	 * @param cpu the executor documents are parsed and queried on
+	 */
+	public XMLAsync(final Executor io, final Executor cpu) {
+		this(io, cpu, false);
+	}
+
+	private XMLAsync(final Executor io, final Executor cpu, final boolean virtualThreads) {
+		if (io == null || cpu == null)
+			throw new IllegalArgumentException("An executor is required!");
+		this.io = io;
+		this.cpu = cpu;
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Get the shared instance using the default executors
+	 *
+	 * @return the default XMLAsync
+	 */
+	public static XMLAsync getDefault() {
+		return Default.INSTANCE;
+	}
+
+	/**
+	 * @return true when files are read on virtual threads
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Read and parse a file. Updates made through the returned XMLUtil are
+	 * written back to the file.
+	 *
+	 * @param fName the file to parse
+	 * @return a future of the parsed document
+	 */
+	public CompletableFuture<XMLUtil> parse(final String fName) {
+		final Path file;
+		try {
+			XMLUtil.validateRequired(fName, "A file/path is required!");
+			file = Paths.get(fName);
+		} catch (final XMLParserException e) {
+			return CompletableFuture.failedFuture(e);
+		} catch (final InvalidPathException e) {
+			return CompletableFuture.failedFuture(new XMLParserException("Invalid file/path: " + fName, e));
+		}
+		return parse(file);
+	}
+
+	/**
+	 * Read and parse a file. Updates made through the returned XMLUtil are
+	 * written back to the file.
+	 *
+	 * @param file the file to parse
+	 * @return a future of the parsed document
+	 */
+	public CompletableFuture<XMLUtil> parse(final Path file) {
+		if (file == null)
+			return CompletableFuture.failedFuture(new XMLParserException("A file/path is required!"));
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return Files.readAllBytes(file);
+			} catch (final IOException e) {
+				log.error("Unable to find/read file: " + file);
+				throw new CompletionException(new XMLParserException("Unable to find/read file: " + file, e));
+			}
+		}, io).thenApplyAsync(xml -> call(() -> XMLUtil.fromFile(file, xml)), cpu);
+	}
+
+	/**
+	 * Parse a file and run a query against it
+	 *
+	 * @param <T>   the type of the result
+	 * @param fName the file to parse
+	 * @param query the work to run against the parsed document
+	 * @return a future of the result of the query
+	 */
+	public <T> CompletableFuture<T> query(final String fName, final Query<T> query) {
+		if (query == null)
+			return CompletableFuture.failedFuture(new XMLParserException("A query is required!"));
+		return parse(fName).thenApply(util -> call(() -> query.apply(util)));
+	}
+
+	/**
+	 * Asynchronous form of {@link XMLUtil#getParameterByXpath(String, String)}
+	 *
+	 * @param qual  an xpath query string
+	 * @param fName the document path/name to search
+	 * @return a future of the value found or null
+	 */
+	public CompletableFuture<String> getParameterByXpath(final String qual, final String fName) {
+		return query(fName, util -> util.getParameterByXpath(qual));
+	}
+
+	/**
+	 * Asynchronous form of
+	 * {@link XMLUtil#getListParametersByXpath(String, String)}
+	 *
+	 * @param qual  an xpath query string
+	 * @param fName the document path/name to search
+	 * @return a future of the values found
+	 */
+	public CompletableFuture<List<String>> getListParametersByXpath(final String qual, final String fName) {
+		return query(fName, util -> util.getListParametersByXpath(qual));
+	}
+
+	/**
+	 * Asynchronous form of {@link XMLUtil#getParametersByXpath(Map)} for a
+	 * file
+	 *
+	 * @param queries a map of parameter name to xpath query string
+	 * @param fName   the document path/name to search
+	 * @return a future of the map of parameter name to value
+	 */
+	public CompletableFuture<Map<String, String>> getParametersByXpath(final Map<String, String> queries,
+			final String fName) {
+		return query(fName, util -> util.getParametersByXpath(queries));
+	}
+
+	/**
+	 * Asynchronous form of {@link XMLUtil#getParameter(XPathQuery)} for a file
+	 *
+	 * @param query a prepared xpath query
+	 * @param fName the document path/name to search
+	 * @return a future of the value found or null
+	 */
+	public CompletableFuture<String> getParameter(final XPathQuery query, final String fName) {
+		return query(fName, util -> util.getParameter(query));
+	}
+
+	/**
+	 * Asynchronous form of {@link XMLUtil#getListParameters(XPathQuery)} for a
+	 * file
+	 *
+	 * @param query a prepared xpath query
+	 * @param fName the document path/name to search
+	 * @return a future of the values found
+	 */
+	public CompletableFuture<List<String>> getListParameters(final XPathQuery query, final String fName) {
+		return query(fName, util -> util.getListParameters(query));
+	}
+
+	// run work that throws XMLParserException inside a future
+	private static <T> T call(final Work<T> work) {
+		try {
+			return work.call();
+		} catch (final XMLParserException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private interface Work<T> {
+		T call() throws XMLParserException;
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor, looked up at run time since
+	// the library is built for Java 11
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			log.debug("Virtual threads are not available, reading on platform threads");
+			return null;
+		}
+	}
+
+	private static ThreadFactory daemon(final String prefix) {
+		final AtomicInteger count = new AtomicInteger();
+		return r -> {
+			final Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+}
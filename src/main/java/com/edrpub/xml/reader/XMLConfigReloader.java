@@ -0,0 +1,367 @@
+package com.edrpub.xml.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Keeps a configuration file loaded and reloads it when it changes on disk.
+ * <p>
+ * The directory of the file is watched with a WatchService. Bursts of change
+ * events, such as an editor saving in several steps, are collapsed into one
+ * reload after the debounce delay. The file is parsed on a background thread
+ * and the new reader and snapshot are published together in one step, so
+ * callers of {@link #getReader()} and {@link #getSnapshot()} never block and
+ * never see a partially loaded file. A file that fails to load or validate is
+ * logged and the previous configuration is kept.
+ * <p>
+ * Listeners are told which parameters changed: the names of the spec
+ * parameters whose values differ (other changes to the file are published
+ * without notifying listeners), or without a spec the paths of the leaf
+ * elements and attributes that were added, removed or changed, such as
+ * /main[1]/maxRetries[1] or /main[1]/item[2]/@href.
+ */
+public class XMLConfigReloader implements Closeable {
+	private static final Logger log = LoggerFactory.getLogger(XMLConfigReloader.class);
+	/** The default delay between the last change event and the reload */
+	public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(250);
+
+	private final Path file;
+	private final ConfigSnapshot.Spec spec;
+	private final long debounceMillis;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private final WatchService watcher;
+	private final Thread watchThread;
+	private final ScheduledExecutorService reloader;
+	private final Object reloadLock = new Object();
+	private volatile State current;
+	private ScheduledFuture<?> pending;
+
+	/**
+	 * Receives the changes of each reload
+	 */
+	public interface Listener {
+		/**
+		 * Called on the reload thread after a changed configuration is
+		 * published
+		 *
+		 * @param change the changed parameters with the old and new state
+		 */
+		void configChanged(Change change);
+	}
+
+	/**
+	 * Load a file and watch it for changes, using the default debounce
+	 *
+	 * @param file the configuration file
+	 * @param spec the parameters to snapshot on each load or null for none
+	 * @throws XMLParserException when the file cannot be loaded or watched
+	 */
+	public XMLConfigReloader(final Path file, final ConfigSnapshot.Spec spec) throws XMLParserException {
+		this(file, spec, DEFAULT_DEBOUNCE);
+	}
+
+	/**
+	 * Load a file and watch it for changes
+	 *
+	 * @param file     the configuration file
+	 * @param spec     the parameters to snapshot on each load or null for none
+	 * @param debounce the delay between the last change event and the reload
+	 * @throws XMLParserException when the file cannot be loaded or watched
+	 */
+	public XMLConfigReloader(final Path file, final ConfigSnapshot.Spec spec, final Duration debounce)
+			throws XMLParserException {
+		if (file == null)
+			throw new XMLParserException("A file/path is required!");
+		if (debounce == null || debounce.isNegative())
+			throw new XMLParserException("A debounce delay is required!");
+		this.file = file.toAbsolutePath().normalize();
+		this.spec = spec;
+		this.debounceMillis = debounce.toMillis();
+		this.current = load();
+		WatchService watcher = null;
+		try {
+			watcher = this.file.getFileSystem().newWatchService();
+			this.file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (final IOException e) {
+			closeQuietly(watcher);
+			throw new XMLParserException("Unable to watch file: " + this.file, e);
+		}
+		this.watcher = watcher;
+		this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread t = new Thread(r, "xml-config-reload-" + this.file.getFileName());
+			t.setDaemon(true);
+			return t;
+		});
+		this.watchThread = new Thread(this::watch, "xml-config-watch-" + this.file.getFileName());
+		this.watchThread.setDaemon(true);
+		this.watchThread.start();
+	}
+
+	/**
+	 * @return the reader of the current configuration, safe to share between
+	 *         threads
+	 */
+	public XMLReadUtil getReader() {
+		return current.reader;
+	}
+
+	/**
+	 * @return the snapshot of the current configuration or null without a spec
+	 */
+	public ConfigSnapshot getSnapshot() {
+		return current.snapshot;
+	}
+
+	/**
+	 * @param listener notified after each reload that changes the configuration
+	 */
+	public void addListener(final Listener listener) {
+		if (listener != null)
+			listeners.add(listener);
+	}
+
+	/**
+	 * @param listener a listener to stop notifying
+	 */
+	public void removeListener(final Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Load the file now on the calling thread and publish it if it changed.
+	 * A change outside the spec parameters is published but not returned or
+	 * passed to listeners.
+	 *
+	 * @return the changed parameters, empty if nothing changed
+	 * @throws XMLParserException when the file fails to load or validate, in
+	 *                            which case the current configuration is kept
+	 */
+	public Set<String> reload() throws XMLParserException {
+		synchronized (reloadLock) {
+			final State previous = current;
+			final State next = load();
+			final Set<String> changed = previous.diff(next);
+			if (changed.isEmpty()) {
+				// content outside the spec, or not seen as a parameter change,
+				// may still differ; the reader must serve it even though
+				// listeners are not told
+				if (!previous.sameDocument(next))
+					current = next;
+				return changed;
+			}
+			current = next;
+			final Change change = new Change(changed, previous, next);
+			for (final Listener l : listeners) {
+				try {
+					l.configChanged(change);
+				} catch (final RuntimeException e) {
+					log.error("Config change listener failed", e);
+				}
+			}
+			return changed;
+		}
+	}
+
+	/**
+	 * Stop watching the file. The current configuration stays readable.
+	 */
+	@Override
+	public synchronized void close() {
+		closeQuietly(watcher);
+		// under the lock of schedule() so no reload is scheduled after shutdown
+		reloader.shutdownNow();
+	}
+
+	private static void closeQuietly(final WatchService watcher) {
+		if (watcher == null)
+			return;
+		try {
+			watcher.close();
+		} catch (final IOException e) {
+			log.debug("Error closing watch service", e);
+		}
+	}
+
+	private State load() throws XMLParserException {
+		final XMLUtil util = new XMLUtil(file.toString(), true);
+		final ConfigSnapshot snapshot = spec == null ? null : ConfigSnapshot.create(spec, util);
+		return new State(XMLReadUtil.wrap(util), util, snapshot);
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				final WatchKey key = watcher.take();
+				boolean ours = false;
+				for (final WatchEvent<?> e : key.pollEvents()) {
+					ours |= e.kind() == StandardWatchEventKinds.OVERFLOW
+							|| file.getFileName().equals(e.context());
+				}
+				if (ours)
+					schedule();
+				if (!key.reset()) {
+					log.warn("Stopped watching " + file + ", the directory is no longer accessible");
+					return;
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	// restart the debounce delay
+	private synchronized void schedule() {
+		if (pending != null)
+			pending.cancel(false);
+		if (reloader.isShutdown())
+			return;
+		pending = reloader.schedule(() -> {
+			try {
+				final Set<String> changed = reload();
+				if (!changed.isEmpty())
+					log.info("Reloaded " + file + ", changed " + changed);
+			} catch (final XMLParserException e) {
+				log.error("Unable to reload " + file + ", keeping the previous configuration", e);
+			}
+		}, debounceMillis, TimeUnit.MILLISECONDS);
+	}
+
+	// a loaded configuration, published as a whole
+	private static final class State {
+		final XMLReadUtil reader;
+		final XMLUtil util;
+		final ConfigSnapshot snapshot;
+
+		State(final XMLReadUtil reader, final XMLUtil util, final ConfigSnapshot snapshot) {
+			this.reader = reader;
+			this.util = util;
+			this.snapshot = snapshot;
+		}
+
+		boolean sameDocument(final State next) throws XMLParserException {
+			return util.document().isEqualNode(next.util.document());
+		}
+
+		Set<String> diff(final State next) throws XMLParserException {
+			final Set<String> changed = new TreeSet<String>();
+			final Map<String, ?> before = snapshot != null ? snapshot.asMap() : leaves(util);
+			final Map<String, ?> after = next.snapshot != null ? next.snapshot.asMap() : leaves(next.util);
+			for (final Map.Entry<String, ?> e : before.entrySet()) {
+				if (!after.containsKey(e.getKey()) || !Objects.equals(e.getValue(), after.get(e.getKey())))
+					changed.add(e.getKey());
+			}
+			for (final String k : after.keySet()) {
+				if (!before.containsKey(k))
+					changed.add(k);
+			}
+			return changed;
+		}
+	}
+
+	// the text of every leaf element and attribute keyed by its path
+	static Map<String, String> leaves(final XMLUtil util) throws XMLParserException {
+		final Map<String, String> values = new LinkedHashMap<String, String>();
+		final NodeList roots = util.getNodeListByXpath("/*");
+		for (int i = 0; i < roots.getLength(); i++)
+			leaves((Element) roots.item(i), "/" + roots.item(i).getNodeName() + "[1]", values);
+		return values;
+	}
+
+	private static void leaves(final Element e, final String path, final Map<String, String> values) {
+		final NamedNodeMap atts = e.getAttributes();
+		for (int i = 0; i < atts.getLength(); i++)
+			values.put(path + "/@" + atts.item(i).getNodeName(), atts.item(i).getNodeValue());
+		final Map<String, Integer> seen = new HashMap<String, Integer>();
+		boolean leaf = true;
+		for (Node c = e.getFirstChild(); c != null; c = c.getNextSibling()) {
+			if (c.getNodeType() != Node.ELEMENT_NODE)
+				continue;
+			leaf = false;
+			final int index = seen.merge(c.getNodeName(), 1, Integer::sum);
+			leaves((Element) c, path + "/" + c.getNodeName() + "[" + index + "]", values);
+		}
+		if (leaf)
+			values.put(path, e.getTextContent());
+	}
+
+	/**
+	 * The parameters changed by a reload with the configuration before and
+	 * after it
+	 */
+	public static final class Change {
+		private final Set<String> changed;
+		private final State previous;
+		private final State current;
+
+		private Change(final Set<String> changed, final State previous, final State current) {
+			this.changed = Collections.unmodifiableSet(changed);
+			this.previous = previous;
+			this.current = current;
+		}
+
+		/**
+		 * @return the names or paths of the changed parameters in sorted order
+		 */
+		public Set<String> getChanged() {
+			return changed;
+		}
+
+		/**
+		 * @return the reader of the configuration before the reload
+		 */
+		public XMLReadUtil getPreviousReader() {
+			return previous.reader;
+		}
+
+		/**
+		 * @return the reader of the new configuration
+		 */
+		public XMLReadUtil getReader() {
+			return current.reader;
+		}
+
+		/**
+		 * @return the snapshot before the reload or null without a spec
+		 */
+		public ConfigSnapshot getPreviousSnapshot() {
+			return previous.snapshot;
+		}
+
+		/**
+		 * @return the new snapshot or null without a spec
+		 */
+		public ConfigSnapshot getSnapshot() {
+			return current.snapshot;
+		}
+	}
+}
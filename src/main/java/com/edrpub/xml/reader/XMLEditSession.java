@@ -0,0 +1,118 @@
+package com.edrpub.xml.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+
+/**
+ * Collects updates, adds and removes for an XMLUtil and applies them together
+ * with a single write of the file.
+ * <p>
+ * Nothing is changed until {@link #commit()} is called. The edits are then
+ * applied in the order they were made and the file is written once, through a
+ * temp file that replaces the original. An edit that finds nothing to change
+ * is skipped, the same as the single edit methods of XMLUtil. If an edit fails
+ * the file is not written and, for a thread-safe XMLUtil, the document is left
+ * as it was. A session is not thread-safe and may be reused after a commit.
+ *
+ * <pre>
+ * XMLEditSession edits = util.edit();
+ * edits.updateOrAddElement("/config/version", "2")
+ *      .removeNode("/config/legacy")
+ *      .addElement("/config", "owner", "ops");
+ * edits.commit();
+ * </pre>
+ */
+public class XMLEditSession {
+	private final XMLUtil util;
+	private final List<Edit> edits = new ArrayList<Edit>();
+
+	XMLEditSession(final XMLUtil util) {
+		this.util = util;
+	}
+
+	// a pending change, returning true if it modified the document
+	interface Edit {
+		boolean apply(Document target) throws XMLParserException;
+	}
+
+	/**
+	 * Update an existing node with a new value or add it if not present
+	 *
+	 * @param xpath the xpath of the node to modify
+	 * @param value the value to set for the node
+	 * @return this session
+	 * @throws XMLParserException when inputs are invalid
+	 */
+	public XMLEditSession updateOrAddElement(final String xpath, final String value) throws XMLParserException {
+		XMLUtil.validateRequired(xpath, "An xpath qual is required!");
+		edits.add(target -> {
+			XMLUtil.updateOrAddElement(target, xpath, value);
+			return true;
+		});
+		return this;
+	}
+
+	/**
+	 * Add an element with a text value below a parent node
+	 *
+	 * @param xpath the xpath of the parent node
+	 * @param name  the name of the new element
+	 * @param value the text value of the new element
+	 * @return this session
+	 * @throws XMLParserException when inputs are invalid
+	 */
+	public XMLEditSession addElement(final String xpath, final String name, final String value)
+			throws XMLParserException {
+		XMLUtil.validateRequired(xpath, "An xpath qual is required!");
+		XMLUtil.validateRequired(name, "A node name is required");
+		XMLUtil.validateRequired(value, "A value is required");
+		edits.add(target -> XMLUtil.addElement(target, xpath, name, value) != null);
+		return this;
+	}
+
+	/**
+	 * Remove a node
+	 *
+	 * @param xpath an xpath statement to identify the node to remove
+	 * @return this session
+	 * @throws XMLParserException when inputs are invalid
+	 */
+	public XMLEditSession removeNode(final String xpath) throws XMLParserException {
+		XMLUtil.validateRequired(xpath, "An xpath qual is required!");
+		edits.add(target -> XMLUtil.removeNode(target, xpath));
+		return this;
+	}
+
+	/**
+	 * @return the number of edits waiting to be committed
+	 */
+	public int size() {
+		return edits.size();
+	}
+
+	/**
+	 * Drop the edits made since the last commit
+	 */
+	public void discard() {
+		edits.clear();
+	}
+
+	/**
+	 * Apply the pending edits and write the file once. The pending edits are
+	 * cleared whether or not the commit succeeds.
+	 *
+	 * @throws XMLParserException when an edit is invalid or there is an error
+	 *                            writing the file
+	 */
+	public void commit() throws XMLParserException {
+		if (edits.isEmpty())
+			return;
+		try {
+			util.apply(edits);
+		} finally {
+			edits.clear();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package com.edrpub.xml.reader;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.namespace.NamespaceContext;
+
+/**
+ * Runs the same set of named xpath queries over many files in parallel.
+ * <p>
+ * Every file is parsed and queried on the executor, by default the common
+ * ForkJoinPool. A file that cannot be read or parsed produces a
+ * {@link FileResult} holding the error instead of failing the whole batch.
+ * Results are handed to the caller, on the calling thread, in the order the
+ * files complete. An XMLFileQuery holds no per-run state and can be shared.
+ */
+public class XMLFileQuery {
+	private final Map<String, String> queries;
+	private final NamespaceContext context;
+	private final Executor executor;
+
+	/**
+	 * Create a query for the common ForkJoinPool
+	 *
+	 * @param queries a map of result name to xpath query string
+	 * @throws XMLParserException if the queries are missing
+	 */
+	public XMLFileQuery(final Map<String, String> queries) throws XMLParserException {
+		this(queries, null, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a namespace aware query run on the given executor
+	 *
+	 * @param queries  a map of result name to xpath query string
+	 * @param context  a NamespaceContext for the queries or null
+	 * @param executor the executor used to parse and query files
+	 * @throws XMLParserException if the queries or executor are missing
+	 */
+	public XMLFileQuery(final Map<String, String> queries, final NamespaceContext context, final Executor executor)
+			throws XMLParserException {
+		if (queries == null || queries.isEmpty())
+			throw new XMLParserException("A map of xpath queries is required!");
+		if (executor == null)
+			throw new XMLParserException("An executor is required!");
+		for (final String q : queries.values())
+			XMLUtil.validateRequired(q, "An xpath qual is required!");
+		this.queries = new LinkedHashMap<String, String>(queries);
+		this.context = context;
+		this.executor = executor;
+	}
+
+	/**
+	 * List the regular files below a directory whose path, relative to the
+	 * directory, matches a glob such as *.xml or **&#47;*.xml
+	 *
+	 * @param dir  the directory to search
+	 * @param glob a glob pattern
+	 * @return the matching files in name order
+	 * @throws XMLParserException when the directory cannot be read
+	 */
+	public static List<Path> listFiles(final Path dir, final String glob) throws XMLParserException {
+		XMLUtil.validateRequired(glob, "A glob pattern is required!");
+		if (dir == null)
+			throw new XMLParserException("A directory is required!");
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		try (Stream<Path> paths = Files.walk(dir)) {
+			return paths.filter(Files::isRegularFile)
+					.filter(p -> matcher.matches(dir.relativize(p)))
+					.sorted()
+					.collect(Collectors.toList());
+		} catch (final IOException e) {
+			throw new XMLParserException("Unable to list directory: " + dir, e);
+		}
+	}
+
+	/**
+	 * Query every file and pass each result to the consumer as soon as its
+	 * file completes. The consumer is called on the calling thread.
+	 *
+	 * @param files    the files to query
+	 * @param consumer receives one result per file
+	 * @throws XMLParserException if the calling thread is interrupted
+	 */
+	public void forEach(final Collection<Path> files, final Consumer<FileResult> consumer)
+			throws XMLParserException {
+		if (files == null || consumer == null)
+			throw new XMLParserException("Files and a consumer are required!");
+		final CompletionService<FileResult> completion = new ExecutorCompletionService<FileResult>(executor);
+		final List<Future<FileResult>> pending = new ArrayList<Future<FileResult>>(files.size());
+		try {
+			for (final Path p : files)
+				pending.add(completion.submit(() -> query(p)));
+			for (int i = 0; i < pending.size(); i++)
+				consumer.accept(completion.take().get());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new XMLParserException("Interrupted while querying files", e);
+		} catch (final ExecutionException e) {
+			// query() captures its own errors so this is unexpected
+			throw new XMLParserException("Unexpected error querying files", e.getCause());
+		} finally {
+			for (final Future<FileResult> f : pending)
+				f.cancel(false);
+		}
+	}
+
+	/**
+	 * Query every file and collect the results in completion order
+	 *
+	 * @param files the files to query
+	 * @return one result per file
+	 * @throws XMLParserException if the calling thread is interrupted
+	 */
+	public List<FileResult> run(final Collection<Path> files) throws XMLParserException {
+		final List<FileResult> results = new ArrayList<FileResult>();
+		forEach(files, results::add);
+		return results;
+	}
+
+	// parse and query one file, capturing any failure in the result
+	private FileResult query(final Path file) {
+		try {
+			final XMLUtil util = new XMLUtil(file.toString());
+			final Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+			for (final Map.Entry<String, String> q : queries.entrySet()) {
+				values.put(q.getKey(), context == null ? util.getListParametersByXpath(q.getValue())
+						: util.getListParametersByXpathNS(q.getValue(), context));
+			}
+			return new FileResult(file, values, null);
+		} catch (final XMLParserException e) {
+			return new FileResult(file, Collections.<String, List<String>>emptyMap(), e);
+		} catch (final RuntimeException e) {
+			// one bad file must not cancel the rest of the batch
+			return new FileResult(file, Collections.<String, List<String>>emptyMap(),
+					new XMLParserException("Unexpected error querying file: " + file, e));
+		}
+	}
+
+	/**
+	 * The values found in one file or the error that stopped it
+	 */
+	public static final class FileResult {
+		private final Path file;
+		private final Map<String, List<String>> values;
+		private final XMLParserException error;
+
+		private FileResult(final Path file, final Map<String, List<String>> values, final XMLParserException error) {
+			this.file = file;
+			this.values = Collections.unmodifiableMap(values);
+			this.error = error;
+		}
+
+		/**
+		 * @return the file that was queried
+		 */
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * @return a map of result name to the values found, empty on error
+		 */
+		public Map<String, List<String>> getValues() {
+			return values;
+		}
+
+		/**
+		 * @return the error that stopped this file or null on success
+		 */
+		public XMLParserException getError() {
+			return error;
+		}
+
+		/**
+		 * @return true if the file was parsed and queried
+		 */
+		public boolean isSuccess() {
+			return error == null;
+		}
+	}
+}
@@ -0,0 +1,506 @@
+package com.edrpub.xml.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Converts xml to JSON in a single streaming pass. StAX events are written
+ * straight to a Jackson JsonGenerator and no DOM or JSON tree is built, so
+ * memory use does not grow with the size of the document. Only the text of
+ * the open elements is held, and whitespace between child elements is
+ * dropped.
+ * <p>
+ * An element with only text becomes a string, an empty element becomes null
+ * and any other element becomes an object. Attributes are fields named with
+ * the attribute prefix (@ by default), and the text of an element that also
+ * has attributes or child elements is the field named by the text key (#text
+ * by default). Elements named as arrays are written as JSON arrays, with
+ * consecutive siblings of that name in one array. Since nothing is buffered,
+ * any other element name repeated within its parent is an error; name such
+ * elements as arrays.
+ * <p>
+ * With a record selector, such as //multiRef or
+ * /soapenv:Envelope/soapenv:Body/*, only the matching elements are converted
+ * and the output is a JSON array of their values. Records nested in a record
+ * are converted as part of it. Without a selector the output is an object
+ * holding the document element.
+ * <p>
+ * A converter is immutable and may be shared between threads.
+ */
+public final class XMLJsonConverter {
+	private static final JsonFactory factory = new JsonFactory();
+	private static final String STAX_MSG = "Stax parse error";
+
+	private final Set<String> arrays;
+	private final boolean attributes;
+	private final String attributePrefix;
+	private final String textKey;
+	private final boolean localNames;
+	private final boolean namespaceDeclarations;
+	private final SimplePath.Step[] records;
+	private final String[] recordUris;
+
+	private XMLJsonConverter(final Builder b, final String[] recordUris) {
+		this.arrays = Collections.unmodifiableSet(new HashSet<String>(b.arrays));
+		this.attributes = b.attributes;
+		this.attributePrefix = b.attributePrefix;
+		this.textKey = b.textKey;
+		this.localNames = b.localNames;
+		this.namespaceDeclarations = b.namespaceDeclarations;
+		this.records = b.records != null ? b.records.steps : null;
+		this.recordUris = recordUris;
+	}
+
+	/**
+	 * @return a builder of converters
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Options for a converter
+	 */
+	public static final class Builder {
+		private final Set<String> arrays = new HashSet<String>();
+		private boolean attributes = true;
+		private String attributePrefix = "@";
+		private String textKey = "#text";
+		private boolean localNames;
+		private boolean namespaceDeclarations;
+		private SimplePath records;
+		private NamespaceBindings bindings = NamespaceBindings.EMPTY;
+
+		private Builder() {
+		}
+
+		/**
+		 * Write the elements with these names as JSON arrays, even when they
+		 * appear once
+		 *
+		 * @param names element names, qualified unless local names are used
+		 * @return this builder
+		 */
+		public Builder arrays(final String... names) {
+			arrays.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * @param include false to drop attributes, true by default
+		 * @return this builder
+		 */
+		public Builder attributes(final boolean include) {
+			this.attributes = include;
+			return this;
+		}
+
+		/**
+		 * @param prefix the prefix of attribute field names, @ by default
+		 * @return this builder
+		 */
+		public Builder attributePrefix(final String prefix) {
+			this.attributePrefix = prefix != null ? prefix : "";
+			return this;
+		}
+
+		/**
+		 * @param key the field name of the text of elements written as
+		 *            objects, #text by default
+		 * @return this builder
+		 */
+		public Builder textKey(final String key) {
+			this.textKey = key;
+			return this;
+		}
+
+		/**
+		 * @param local true to name fields by local name without the
+		 *              namespace prefix, false by default
+		 * @return this builder
+		 */
+		public Builder localNames(final boolean local) {
+			this.localNames = local;
+			return this;
+		}
+
+		/**
+		 * @param include true to write xmlns declarations as attributes, false
+		 *                by default
+		 * @return this builder
+		 */
+		public Builder namespaceDeclarations(final boolean include) {
+			this.namespaceDeclarations = include;
+			return this;
+		}
+
+		/**
+		 * Convert only the elements matching a path of element name steps,
+		 * such as //item or /soapenv:Envelope/soapenv:Body/*
+		 *
+		 * @param selector the path of the record elements
+		 * @param bindings the prefixes used by the selector, null for none
+		 * @return this builder
+		 * @throws XMLParserException when the selector is not a path of element
+		 *                            name steps
+		 */
+		public Builder records(final String selector, final NamespaceBindings bindings)
+				throws XMLParserException {
+			XMLUtil.validateRequired(selector, "A record selector is required!");
+			final SimplePath path = SimplePath.parse(selector);
+			boolean supported = path != null;
+			for (int i = 0; supported && i < path.steps.length; i++)
+				supported = !path.steps[i].attribute && path.steps[i].predicates.length == 0;
+			if (!supported)
+				throw new XMLParserException("Unsupported record selector [" + selector
+						+ "], only element name steps are allowed");
+			this.records = path;
+			this.bindings = bindings != null ? bindings : NamespaceBindings.EMPTY;
+			return this;
+		}
+
+		/**
+		 * @return a converter with these options
+		 * @throws XMLParserException when a prefix of the record selector is
+		 *                            not bound
+		 */
+		public XMLJsonConverter build() throws XMLParserException {
+			if (textKey == null || textKey.isEmpty())
+				throw new XMLParserException("A text key is required!");
+			String[] uris = null;
+			if (records != null) {
+				uris = new String[records.steps.length];
+				for (int i = 0; i < uris.length; i++) {
+					final SimplePath.Name n = records.steps[i].name;
+					uris[i] = n.isWildcard() ? "*" : n.resolve(bindings);
+					if (uris[i] == null)
+						throw new XMLParserException("Prefix [" + n.prefix + "] of the record selector is not bound");
+				}
+			}
+			return new XMLJsonConverter(this, uris);
+		}
+	}
+
+	/**
+	 * Convert a file to a JSON string
+	 *
+	 * @param fName the file to convert
+	 * @return the JSON
+	 * @throws XMLParserException when the file cannot be read or converted
+	 */
+	public String toJson(final String fName) throws XMLParserException {
+		final StringWriter out = new StringWriter();
+		try (JsonGenerator gen = factory.createGenerator(out)) {
+			convert(fName, gen);
+		} catch (final IOException e) {
+			throw new XMLParserException("Unable to write json", e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Convert a file, writing UTF-8 JSON to a stream. The stream is flushed but
+	 * not closed.
+	 *
+	 * @param fName the file to convert
+	 * @param out   the stream to write to
+	 * @throws XMLParserException when the file cannot be read or converted
+	 */
+	public void convert(final String fName, final OutputStream out) throws XMLParserException {
+		try (StaxInput in = StaxInput.open(fName)) {
+			convert(in.reader, out);
+		}
+	}
+
+	/**
+	 * Convert an xml stream, writing UTF-8 JSON to another stream. The input
+	 * is read to the end of the document and neither stream is closed.
+	 *
+	 * @param xml the xml to convert
+	 * @param out the stream to write to
+	 * @throws XMLParserException when the input cannot be read or converted
+	 */
+	public void convert(final InputStream xml, final OutputStream out) throws XMLParserException {
+		try (StaxInput in = StaxInput.open(xml)) {
+			convert(in.reader, out);
+		}
+	}
+
+	/**
+	 * Convert a file, writing to a generator. The generator is not flushed or
+	 * closed.
+	 *
+	 * @param fName the file to convert
+	 * @param gen   the generator to write to
+	 * @throws XMLParserException when the file cannot be read or converted
+	 */
+	public void convert(final String fName, final JsonGenerator gen) throws XMLParserException {
+		try (StaxInput in = StaxInput.open(fName)) {
+			convert(in.reader, gen);
+		}
+	}
+
+	/**
+	 * Convert an xml stream, writing to a generator. The stream is not closed
+	 * and the generator is not flushed or closed.
+	 *
+	 * @param xml the xml to convert
+	 * @param gen the generator to write to
+	 * @throws XMLParserException when the input cannot be read or converted
+	 */
+	public void convert(final InputStream xml, final JsonGenerator gen) throws XMLParserException {
+		try (StaxInput in = StaxInput.open(xml)) {
+			convert(in.reader, gen);
+		}
+	}
+
+	private void convert(final XMLStreamReader r, final OutputStream out) throws XMLParserException {
+		if (out == null)
+			throw new XMLParserException("An output stream is required!");
+		try (JsonGenerator gen = factory.createGenerator(out, JsonEncoding.UTF8)) {
+			gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			convert(r, gen);
+		} catch (final IOException e) {
+			throw new XMLParserException("Unable to write json", e);
+		}
+	}
+
+	private void convert(final XMLStreamReader r, final JsonGenerator gen) throws XMLParserException {
+		if (gen == null)
+			throw new XMLParserException("A json generator is required!");
+		try {
+			if (records != null)
+				writeRecords(r, gen);
+			else
+				writeDocument(r, gen);
+		} catch (final XMLStreamException e) {
+			throw new XMLParserException(STAX_MSG, e);
+		} catch (final IOException e) {
+			throw new XMLParserException("Unable to write json", e);
+		}
+	}
+
+	private void writeDocument(final XMLStreamReader r, final JsonGenerator gen)
+			throws XMLStreamException, IOException, XMLParserException {
+		while (r.hasNext()) {
+			if (r.next() == XMLStreamConstants.START_ELEMENT) {
+				gen.writeStartObject();
+				final String name = name(r);
+				if (arrays.contains(name)) {
+					gen.writeArrayFieldStart(name);
+					writeElement(r, gen);
+					gen.writeEndArray();
+				} else {
+					gen.writeFieldName(name);
+					writeElement(r, gen);
+				}
+				gen.writeEndObject();
+				return;
+			}
+		}
+	}
+
+	private void writeRecords(final XMLStreamReader r, final JsonGenerator gen)
+			throws XMLStreamException, IOException, XMLParserException {
+		gen.writeStartArray();
+		// the open ancestors as namespace uri, local name pairs
+		final List<String> open = new ArrayList<String>();
+		while (r.hasNext()) {
+			final int event = r.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				open.add(emptyIfNull(r.getNamespaceURI()));
+				open.add(r.getLocalName());
+				if (matches(open, 0, 0)) {
+					writeElement(r, gen);
+					open.remove(open.size() - 1);
+					open.remove(open.size() - 1);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				open.remove(open.size() - 1);
+				open.remove(open.size() - 1);
+			}
+		}
+		gen.writeEndArray();
+	}
+
+	// match the record steps from step against the open elements from depth
+	private boolean matches(final List<String> open, final int step, final int depth) {
+		final int depths = open.size() / 2;
+		if (step == records.length)
+			return depth == depths;
+		if (depth == depths)
+			return false;
+		if (matches(step, open.get(depth * 2), open.get(depth * 2 + 1)) && matches(open, step + 1, depth + 1))
+			return true;
+		return records[step].descendant && matches(open, step, depth + 1);
+	}
+
+	private boolean matches(final int step, final String uri, final String local) {
+		final SimplePath.Name n = records[step].name;
+		return (n.isWildcard() || n.local.equals(local))
+				&& ("*".equals(recordUris[step]) || recordUris[step].equals(uri));
+	}
+
+	// write the value of the element the reader is on and leave the reader on
+	// its end
+	private void writeElement(final XMLStreamReader r, final JsonGenerator gen)
+			throws XMLStreamException, IOException, XMLParserException {
+		final List<Frame> frames = new ArrayList<Frame>();
+		frames.add(start(r, gen));
+		while (r.hasNext()) {
+			final int event = r.next();
+			final Frame f = frames.get(frames.size() - 1);
+			switch (event) {
+				case XMLStreamConstants.START_ELEMENT:
+					f.child(name(r), gen);
+					frames.add(start(r, gen));
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					f.end(gen);
+					frames.remove(frames.size() - 1);
+					if (frames.isEmpty())
+						return;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					f.text(r.getText());
+					break;
+				default:
+					break;
+			}
+		}
+		throw new XMLStreamException("Unexpected end of document");
+	}
+
+	// open an element, writing its attributes when it has any
+	private Frame start(final XMLStreamReader r, final JsonGenerator gen) throws IOException {
+		final Frame f = new Frame();
+		if (namespaceDeclarations) {
+			for (int i = 0; i < r.getNamespaceCount(); i++) {
+				f.object(gen);
+				gen.writeStringField(attributePrefix + StaxDomBuilder.xmlnsName(r.getNamespacePrefix(i)),
+						emptyIfNull(r.getNamespaceURI(i)));
+			}
+		}
+		if (attributes) {
+			for (int i = 0; i < r.getAttributeCount(); i++) {
+				f.object(gen);
+				final String prefix = r.getAttributePrefix(i);
+				final String local = r.getAttributeLocalName(i);
+				final String name = localNames || prefix == null || prefix.isEmpty() ? local : prefix + ":" + local;
+				gen.writeStringField(attributePrefix + name, r.getAttributeValue(i));
+			}
+		}
+		return f;
+	}
+
+	private String name(final XMLStreamReader r) {
+		return localNames ? r.getLocalName() : StaxDomBuilder.qualifiedName(r);
+	}
+
+	private static boolean isBlank(final CharSequence s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isWhitespace(s.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	private static String emptyIfNull(final String s) {
+		return s == null ? XMLConstants.NULL_NS_URI : s;
+	}
+
+	// an open element: written as an object once it has attributes or
+	// children, its text held until it ends. Text is collected a run at a
+	// time, between two tags, and runs of only whitespace, such as the
+	// indentation between children, are dropped once the element is an
+	// object so they are not held for the whole element
+	private final class Frame {
+		private boolean object;
+		private StringBuilder text;
+		private StringBuilder run;
+		private Set<String> names;
+		private String array;
+
+		void object(final JsonGenerator gen) throws IOException {
+			if (!object) {
+				object = true;
+				gen.writeStartObject();
+			}
+		}
+
+		void text(final String s) {
+			if (run == null)
+				run = new StringBuilder();
+			run.append(s);
+		}
+
+		// keep the text run that just ended unless it is indentation
+		private void endRun() {
+			if (run == null || run.length() == 0)
+				return;
+			if (!object || !isBlank(run)) {
+				if (text == null)
+					text = new StringBuilder();
+				text.append(run);
+			}
+			run.setLength(0);
+		}
+
+		// write the field, or array entry, of a child element
+		void child(final String name, final JsonGenerator gen) throws IOException, XMLParserException {
+			object(gen);
+			endRun();
+			if (name.equals(array))
+				return;
+			if (array != null) {
+				gen.writeEndArray();
+				array = null;
+			}
+			if (names == null)
+				names = new HashSet<String>();
+			if (!names.add(name))
+				throw new XMLParserException("Element [" + name + "] repeats, name it as an array");
+			if (arrays.contains(name)) {
+				gen.writeArrayFieldStart(name);
+				array = name;
+			} else {
+				gen.writeFieldName(name);
+			}
+		}
+
+		void end(final JsonGenerator gen) throws IOException {
+			endRun();
+			if (array != null)
+				gen.writeEndArray();
+			if (object) {
+				if (text != null && !isBlank(text))
+					gen.writeStringField(textKey, text.toString());
+				gen.writeEndObject();
+			} else if (text != null) {
+				gen.writeString(text.toString());
+			} else {
+				gen.writeNull();
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.edrpub.xml.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The switch for XMLUtil instrumentation. Metrics are disabled by default;
+ * while no listener is installed the instrumented code only reads one
+ * volatile field, so the overhead is close to zero.
+ * <p>
+ * Counting the nodes of each parsed document walks the whole DOM, which is
+ * only done while a listener is installed.
+ */
+public final class XMLMetrics {
+	private static volatile XMLMetricsListener listener;
+
+	private XMLMetrics() {
+	}
+
+	/**
+	 * Install the listener that receives all metrics
+	 *
+	 * @param l the listener or null to disable metrics
+	 */
+	public static void setListener(final XMLMetricsListener l) {
+		listener = l;
+	}
+
+	/**
+	 * @return the installed listener or null when metrics are disabled
+	 */
+	public static XMLMetricsListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return true when a listener is installed
+	 */
+	public static boolean isEnabled() {
+		return listener != null;
+	}
+
+	// the listener for instrumented code, null when disabled
+	static XMLMetricsListener listener() {
+		return listener;
+	}
+
+	// the number of nodes and attributes below and including n
+	static int countNodes(final Node root) {
+		int count = 0;
+		Node n = root;
+		while (n != null) {
+			count++;
+			final NamedNodeMap atts = n.getAttributes();
+			if (atts != null)
+				count += atts.getLength();
+			Node next = n.getFirstChild();
+			while (next == null && n != null && n != root) {
+				next = n.getNextSibling();
+				if (next == null)
+					n = n.getParentNode();
+			}
+			n = next;
+		}
+		return count;
+	}
+
+	// the size of a local file, -1 for urls or when it cannot be read
+	static long sizeOf(final String fName) {
+		final Path p = StaxInput.toFile(fName);
+		return p != null ? sizeOf(p) : -1L;
+	}
+
+	static long sizeOf(final Path p) {
+		try {
+			return Files.size(p);
+		} catch (final IOException e) {
+			return -1L;
+		}
+	}
+}
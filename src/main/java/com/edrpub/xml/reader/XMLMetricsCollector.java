@@ -0,0 +1,421 @@
+package com.edrpub.xml.reader;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * An {@link XMLMetricsListener} that keeps histograms of parse, xpath and
+ * write times, of document sizes and node counts, and a latency histogram
+ * per xpath expression so slow expressions can be found.
+ * <p>
+ * Histograms use logarithmic buckets, four per power of two, so recording is
+ * a few atomic increments and percentiles are accurate to within 25%. At most
+ * maxExpressions distinct expressions are tracked; later ones are recorded
+ * under {@value #OTHER_EXPRESSIONS}.
+ *
+ * <pre>
+ * final XMLMetricsCollector metrics = new XMLMetricsCollector();
+ * metrics.register();
+ * XMLMetrics.setListener(metrics);
+ * </pre>
+ */
+public class XMLMetricsCollector implements XMLMetricsListener, XMLMetricsCollectorMBean {
+	/** The default JMX object name */
+	public static final String OBJECT_NAME = "com.edrpub.xml:type=XMLMetrics";
+	/** The key expressions are recorded under once the limit is reached */
+	public static final String OTHER_EXPRESSIONS = "(other)";
+	/** The default number of distinct expressions tracked */
+	public static final int DEFAULT_MAX_EXPRESSIONS = 1000;
+	private static final int SLOWEST = 10;
+	private static final double NANOS_PER_MILLI = 1_000_000d;
+
+	private final int maxExpressions;
+	private final Histogram parseTime = new Histogram();
+	private final Histogram parseBytes = new Histogram();
+	private final Histogram nodes = new Histogram();
+	private final Histogram xpathTime = new Histogram();
+	private final Histogram writeTime = new Histogram();
+	private final Histogram writeBytes = new Histogram();
+	private final Map<String, Histogram> expressions = new ConcurrentHashMap<String, Histogram>();
+	private volatile String largestDocument;
+	private ObjectName registered;
+
+	/**
+	 * Create a collector tracking up to {@value #DEFAULT_MAX_EXPRESSIONS}
+	 * expressions
+	 */
+	public XMLMetricsCollector() {
+		this(DEFAULT_MAX_EXPRESSIONS);
+	}
+
+	/**
+	 * @param maxExpressions the number of distinct expressions to track
+	 */
+	public XMLMetricsCollector(final int maxExpressions) {
+		if (maxExpressions < 0)
+			throw new IllegalArgumentException("maxExpressions must not be negative");
+		this.maxExpressions = maxExpressions;
+	}
+
+	@Override
+	public void documentParsed(final String source, final long bytes, final int count, final long nanos) {
+		parseTime.record(nanos);
+		if (bytes >= 0)
+			parseBytes.record(bytes);
+		if (nodes.record(count) || largestDocument == null)
+			largestDocument = source;
+	}
+
+	@Override
+	public void xpathEvaluated(final String expression, final long nanos) {
+		xpathTime.record(nanos);
+		Histogram h = expressions.get(expression);
+		if (h == null) {
+			h = expressions.size() < maxExpressions ? expressions.computeIfAbsent(expression, k -> new Histogram())
+					: expressions.computeIfAbsent(OTHER_EXPRESSIONS, k -> new Histogram());
+		}
+		h.record(nanos);
+	}
+
+	@Override
+	public void documentWritten(final String fileName, final long bytes, final long nanos) {
+		writeTime.record(nanos);
+		if (bytes >= 0)
+			writeBytes.record(bytes);
+	}
+
+	/** @return the histogram of parse times in nanoseconds */
+	public Histogram getParseTimes() {
+		return parseTime;
+	}
+
+	/** @return the histogram of parsed input sizes in bytes */
+	public Histogram getParsedBytes() {
+		return parseBytes;
+	}
+
+	/** @return the histogram of node counts per parsed document */
+	public Histogram getNodeCounts() {
+		return nodes;
+	}
+
+	/** @return the histogram of all xpath evaluation times in nanoseconds */
+	public Histogram getXpathTimes() {
+		return xpathTime;
+	}
+
+	/**
+	 * @param expression an xpath expression
+	 * @return the histogram of its evaluation times in nanoseconds or null if
+	 *         it is not tracked
+	 */
+	public Histogram getXpathTimes(final String expression) {
+		return expressions.get(expression);
+	}
+
+	/**
+	 * @return the histograms of the tracked expressions, slowest 99th
+	 *         percentile first
+	 */
+	public Map<String, Histogram> getXpathTimesByExpression() {
+		final List<Map.Entry<String, Histogram>> entries = new ArrayList<Map.Entry<String, Histogram>>(
+				expressions.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue().getPercentile(99), a.getValue().getPercentile(99)));
+		final Map<String, Histogram> sorted = new LinkedHashMap<String, Histogram>();
+		for (final Map.Entry<String, Histogram> e : entries)
+			sorted.put(e.getKey(), e.getValue());
+		return Collections.unmodifiableMap(sorted);
+	}
+
+	/** @return the histogram of write times in nanoseconds */
+	public Histogram getWriteTimes() {
+		return writeTime;
+	}
+
+	/** @return the histogram of written file sizes in bytes */
+	public Histogram getWrittenBytes() {
+		return writeBytes;
+	}
+
+	@Override
+	public long getParseCount() {
+		return parseTime.getCount();
+	}
+
+	@Override
+	public double getParseTimeMeanMillis() {
+		return parseTime.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getParseTimeP50Millis() {
+		return parseTime.getPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getParseTimeP99Millis() {
+		return parseTime.getPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getParseTimeMaxMillis() {
+		return parseTime.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getParsedBytesTotal() {
+		return parseBytes.getTotal();
+	}
+
+	@Override
+	public long getParsedBytesMax() {
+		return parseBytes.getMax();
+	}
+
+	@Override
+	public long getNodeCountP99() {
+		return nodes.getPercentile(99);
+	}
+
+	@Override
+	public long getNodeCountMax() {
+		return nodes.getMax();
+	}
+
+	@Override
+	public String getLargestDocument() {
+		return largestDocument;
+	}
+
+	@Override
+	public long getXpathCount() {
+		return xpathTime.getCount();
+	}
+
+	@Override
+	public double getXpathTimeP50Millis() {
+		return xpathTime.getPercentile(50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getXpathTimeP99Millis() {
+		return xpathTime.getPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getXpathTimeMaxMillis() {
+		return xpathTime.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public String[] getSlowestExpressions() {
+		final List<String> slowest = new ArrayList<String>();
+		for (final Map.Entry<String, Histogram> e : getXpathTimesByExpression().entrySet()) {
+			if (slowest.size() == SLOWEST)
+				break;
+			final Histogram h = e.getValue();
+			slowest.add(String.format("p99=%.3fms max=%.3fms count=%d %s", h.getPercentile(99) / NANOS_PER_MILLI,
+					h.getMax() / NANOS_PER_MILLI, h.getCount(), e.getKey()));
+		}
+		return slowest.toArray(new String[0]);
+	}
+
+	@Override
+	public long getWriteCount() {
+		return writeTime.getCount();
+	}
+
+	@Override
+	public double getWriteTimeP99Millis() {
+		return writeTime.getPercentile(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getWriteTimeMaxMillis() {
+		return writeTime.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getWrittenBytesTotal() {
+		return writeBytes.getTotal();
+	}
+
+	@Override
+	public double getXPathCacheHitRate() {
+		final XPathCache cache = XPathCache.getDefault();
+		return hitRate(cache.getHitCount(), cache.getMissCount());
+	}
+
+	@Override
+	public double getDocumentCacheHitRate() {
+		final DocumentCache cache = XMLUtil.getDocumentCache();
+		return cache == null ? Double.NaN : hitRate(cache.getHitCount(), cache.getMissCount());
+	}
+
+	private static double hitRate(final long hits, final long misses) {
+		return hits + misses == 0 ? Double.NaN : (double) hits / (hits + misses);
+	}
+
+	@Override
+	public void reset() {
+		parseTime.reset();
+		parseBytes.reset();
+		nodes.reset();
+		xpathTime.reset();
+		writeTime.reset();
+		writeBytes.reset();
+		expressions.clear();
+		largestDocument = null;
+	}
+
+	/**
+	 * Register this collector with the platform MBean server under
+	 * {@value #OBJECT_NAME}
+	 *
+	 * @throws XMLParserException when the MBean cannot be registered
+	 */
+	public void register() throws XMLParserException {
+		register(OBJECT_NAME);
+	}
+
+	/**
+	 * Register this collector with the platform MBean server
+	 *
+	 * @param name the JMX object name
+	 * @throws XMLParserException when the name is invalid or the MBean cannot
+	 *                            be registered
+	 */
+	public synchronized void register(final String name) throws XMLParserException {
+		try {
+			final ObjectName on = new ObjectName(name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+			registered = on;
+		} catch (final JMException e) {
+			throw new XMLParserException("Unable to register MBean " + name, e);
+		}
+	}
+
+	/**
+	 * Remove this collector from the platform MBean server if registered
+	 */
+	public synchronized void unregister() {
+		if (registered == null)
+			return;
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(registered))
+				server.unregisterMBean(registered);
+		} catch (final JMException e) {
+			// already gone
+		}
+		registered = null;
+	}
+
+	/**
+	 * A concurrent histogram of non-negative values with logarithmic buckets
+	 */
+	public static final class Histogram {
+		// values 0-3 have their own bucket, then four buckets per power of two
+		private static final int BUCKETS = 62 * 4;
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		Histogram() {
+		}
+
+		// record a value, true if it is the new maximum
+		boolean record(final long value) {
+			final long v = Math.max(0L, value);
+			counts.incrementAndGet(bucket(v));
+			count.increment();
+			total.add(v);
+			long m = max.get();
+			while (v > m) {
+				if (max.compareAndSet(m, v))
+					return true;
+				m = max.get();
+			}
+			return false;
+		}
+
+		static int bucket(final long v) {
+			if (v < 4)
+				return (int) v;
+			final int msb = 63 - Long.numberOfLeadingZeros(v);
+			return (msb - 1) * 4 + (int) ((v >>> (msb - 2)) & 3);
+		}
+
+		// the largest value that falls into the bucket
+		static long upperBound(final int bucket) {
+			if (bucket < 4)
+				return bucket;
+			final int shift = bucket / 4 - 1;
+			final long lower = (long) (4 + bucket % 4) << shift;
+			return lower + (1L << shift) - 1;
+		}
+
+		/** @return the number of recorded values */
+		public long getCount() {
+			return count.sum();
+		}
+
+		/** @return the sum of the recorded values */
+		public long getTotal() {
+			return total.sum();
+		}
+
+		/** @return the largest recorded value */
+		public long getMax() {
+			return max.get();
+		}
+
+		/** @return the mean of the recorded values or 0 when empty */
+		public double getMean() {
+			final long n = count.sum();
+			return n == 0 ? 0d : (double) total.sum() / n;
+		}
+
+		/**
+		 * @param percentile a percentile from 0 to 100
+		 * @return an upper bound of the value at the percentile, never more than
+		 *         the maximum, or 0 when empty
+		 */
+		public long getPercentile(final double percentile) {
+			long n = 0;
+			for (int i = 0; i < BUCKETS; i++)
+				n += counts.get(i);
+			if (n == 0)
+				return 0L;
+			final long rank = Math.max(1L, (long) Math.ceil(n * Math.min(100d, Math.max(0d, percentile)) / 100d));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts.get(i);
+				if (seen >= rank)
+					return Math.min(upperBound(i), max.get());
+			}
+			return max.get();
+		}
+
+		void reset() {
+			for (int i = 0; i < BUCKETS; i++)
+				counts.set(i, 0L);
+			count.reset();
+			total.reset();
+			max.set(0L);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.edrpub.xml.reader;
+
+/**
+ * JMX view of an {@link XMLMetricsCollector}. Times are in milliseconds and
+ * percentiles are accurate to within 25%.
+ */
+public interface XMLMetricsCollectorMBean {
+
+	/** @return the number of documents parsed */
+	long getParseCount();
+
+	/** @return the mean parse time */
+	double getParseTimeMeanMillis();
+
+	/** @return the median parse time */
+	double getParseTimeP50Millis();
+
+	/** @return the 99th percentile parse time */
+	double getParseTimeP99Millis();
+
+	/** @return the longest parse time */
+	double getParseTimeMaxMillis();
+
+	/** @return the total size of the parsed inputs of known size */
+	long getParsedBytesTotal();
+
+	/** @return the size of the largest parsed input */
+	long getParsedBytesMax();
+
+	/** @return the 99th percentile of the number of nodes per document */
+	long getNodeCountP99();
+
+	/** @return the number of nodes of the largest document */
+	long getNodeCountMax();
+
+	/** @return the source of the document with the most nodes */
+	String getLargestDocument();
+
+	/** @return the number of xpath evaluations */
+	long getXpathCount();
+
+	/** @return the median xpath evaluation time */
+	double getXpathTimeP50Millis();
+
+	/** @return the 99th percentile xpath evaluation time */
+	double getXpathTimeP99Millis();
+
+	/** @return the longest xpath evaluation time */
+	double getXpathTimeMaxMillis();
+
+	/** @return the slowest expressions by 99th percentile, slowest first */
+	String[] getSlowestExpressions();
+
+	/** @return the number of documents written */
+	long getWriteCount();
+
+	/** @return the 99th percentile write time */
+	double getWriteTimeP99Millis();
+
+	/** @return the longest write time */
+	double getWriteTimeMaxMillis();
+
+	/** @return the total size of the files written */
+	long getWrittenBytesTotal();
+
+	/** @return the hit rate of the default XPathCache, NaN before any lookup */
+	double getXPathCacheHitRate();
+
+	/** @return the hit rate of the XMLUtil document cache, NaN when disabled or unused */
+	double getDocumentCacheHitRate();
+
+	/** Clear all recorded metrics */
+	void reset();
+}
@@ -0,0 +1,44 @@
+package com.edrpub.xml.reader;
+
+/**
+ * Receives timings and sizes of the work done by XMLUtil. Install one with
+ * {@link XMLMetrics#setListener(XMLMetricsListener)}; {@link XMLMetricsCollector}
+ * is a ready made implementation that keeps histograms and can be published
+ * as a JMX MBean.
+ * <p>
+ * Methods are called on the thread doing the work, right after it completes
+ * successfully, so implementations must be thread-safe, fast and must not
+ * throw. Failed operations are not reported.
+ */
+public interface XMLMetricsListener {
+
+	/**
+	 * A document was parsed into a DOM or a compact document
+	 *
+	 * @param source the file name or a description of the input such as
+	 *               "byte array"
+	 * @param bytes  the size of the input or -1 when it is not known, as for
+	 *               streams
+	 * @param nodes  the number of nodes in the document, including attributes
+	 * @param nanos  the time taken to parse
+	 */
+	void documentParsed(String source, long bytes, int nodes, long nanos);
+
+	/**
+	 * An xpath expression was evaluated
+	 *
+	 * @param expression the xpath expression
+	 * @param nanos      the time taken to evaluate it
+	 */
+	void xpathEvaluated(String expression, long nanos);
+
+	/**
+	 * A modified document was written back to its file
+	 *
+	 * @param fileName the file written
+	 * @param bytes    the size of the file written or -1 when it is not known,
+	 *                 as for urls
+	 * @param nanos    the time taken to serialize and write the document
+	 */
+	void documentWritten(String fileName, long bytes, long nanos);
+}
@@ -1,6 +1,9 @@
 package com.edrpub.xml.reader;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class XMLReadUtil {
 
@@ -10,6 +13,27 @@ public class XMLReadUtil {
 		this.reader = new XMLUtil(confPath);
 	}
 
+	/**
+	 * Create a reader that may be shared by many threads when threadSafe is
+	 * true, see {@link XMLUtil#XMLUtil(String, boolean)}
+	 * 
+	 * @param confPath   full path to an xml file
+	 * @param threadSafe true to allow concurrent use of this instance
+	 * @throws XMLParserException when the file cannot be read or parsed
+	 */
+	public XMLReadUtil(String confPath, boolean threadSafe) throws XMLParserException {
+		this.reader = new XMLUtil(confPath, threadSafe);
+	}
+
+	private XMLReadUtil(XMLUtil reader) {
+		this.reader = reader;
+	}
+
+	// wrap an already loaded document
+	static XMLReadUtil wrap(XMLUtil reader) {
+		return new XMLReadUtil(reader);
+	}
+
 	/**
 	 * Get a text value of an element in xml or null if not found
 	 * 
@@ -96,6 +120,86 @@ public class XMLReadUtil {
 		return !isEmpty(t) && t.equalsIgnoreCase("true") ? true : false;
 	}
 
+	/**
+	 * Get text values for a batch of named xpath queries in one call.
+	 * Parameters that are not found map to null.
+	 * 
+	 * @param xpaths a map of friendly parameter name to xpath query
+	 * @return a map of parameter name to value in the order of the input map
+	 * @throws XMLParserException when inputs are invalid or there is an error processing the search
+	 */
+	public Map<String, String> getStringParameters(Map<String, String> xpaths) throws XMLParserException {
+		return reader.getParametersByXpath(xpaths);
+	}
+
+	/**
+	 * Get string values for a batch of required parameters. Every missing
+	 * parameter is reported together in a single exception.
+	 * 
+	 * @param xpaths a map of friendly parameter name to xpath query
+	 * @return a map of parameter name to value in the order of the input map
+	 * @throws XMLParserException when inputs are invalid, any parameter is missing, or error processing the search
+	 */
+	public Map<String, String> getRequiredStrings(Map<String, String> xpaths) throws XMLParserException {
+		Map<String, String> values = getStringParameters(xpaths);
+		List<String> missing = new ArrayList<String>();
+		for (Map.Entry<String, String> e : values.entrySet()) {
+			if (isEmpty(e.getValue()))
+				missing.add(e.getKey());
+		}
+		if (!missing.isEmpty())
+			throw new XMLParserException("Parameters " + missing + " are required but not found!");
+		return values;
+	}
+
+	/**
+	 * Get integer values for a batch of required parameters. Every missing or
+	 * invalid parameter is reported together in a single exception.
+	 * 
+	 * @param xpaths a map of friendly parameter name to xpath query
+	 * @return a map of parameter name to int value in the order of the input map
+	 * @throws XMLParserException when inputs are invalid, any parameter is missing or not an int, or error processing the search
+	 */
+	public Map<String, Integer> getRequiredInts(Map<String, String> xpaths) throws XMLParserException {
+		Map<String, Integer> ints = new LinkedHashMap<String, Integer>();
+		List<String> missing = new ArrayList<String>();
+		List<String> invalid = new ArrayList<String>();
+		for (Map.Entry<String, String> e : getStringParameters(xpaths).entrySet()) {
+			if (isEmpty(e.getValue())) {
+				missing.add(e.getKey());
+				continue;
+			}
+			try {
+				ints.put(e.getKey(), Integer.parseInt(e.getValue()));
+			} catch (NumberFormatException nfe) {
+				invalid.add(e.getKey());
+			}
+		}
+		StringBuilder msg = new StringBuilder();
+		if (!missing.isEmpty())
+			msg.append("Parameters ").append(missing).append(" are required but not found!");
+		if (!invalid.isEmpty())
+			msg.append(msg.length() > 0 ? " " : "").append("Parameters ").append(invalid)
+					.append(" are invalid. Must be an integer");
+		if (msg.length() > 0)
+			throw new XMLParserException(msg.toString());
+		return ints;
+	}
+
+	/**
+	 * Resolve a set of typed parameters once into an immutable snapshot.
+	 * Every missing or invalid parameter is reported together in a single
+	 * exception, and reading from the snapshot afterwards does no xpath or
+	 * parsing work.
+	 * 
+	 * @param spec the parameters to resolve
+	 * @return a ConfigSnapshot of the current document
+	 * @throws XMLParserException when inputs are invalid, any parameter is missing or invalid, or error processing the search
+	 */
+	public ConfigSnapshot snapshot(ConfigSnapshot.Spec spec) throws XMLParserException {
+		return ConfigSnapshot.create(spec, reader);
+	}
+
 	/**
 	 * Get a list of string parameters matching a given xpath query
 	 * 
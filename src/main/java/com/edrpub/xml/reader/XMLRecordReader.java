@@ -0,0 +1,195 @@
+package com.edrpub.xml.reader;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Streams a document and returns each repeating record element as a small
+ * detached DOM, so only one record is held in memory at a time.
+ * <p>
+ * Every record is the document element of its own Document and carries the
+ * namespace declarations in scope where it appeared, so it can be queried
+ * with {@link XMLUtil#getNodeListFromNodeByXpath(String, Node)} or wrapped in
+ * a new XMLUtil. Records nested inside a matching record are returned as part
+ * of that record and not on their own.
+ * <p>
+ * Parse errors met while iterating are thrown as
+ * {@link UncheckedXMLParserException}. Close the reader, or the Stream from
+ * {@link #stream()}, to release the file when not reading to the end.
+ */
+public final class XMLRecordReader implements Iterator<Node>, Closeable {
+	private static final String STAX_MSG = "Stax parse error";
+
+	private final StaxInput in;
+	private final String tag;
+	private final String namespace;
+	// namespace declarations of the open ancestors as prefix, uri pairs
+	private final List<String[]> scope = new ArrayList<String[]>();
+	private int[] scopeCounts = new int[16];
+	private int depth;
+	private Element next;
+	private boolean done;
+
+	private XMLRecordReader(final StaxInput in, final String tag, final String namespace) {
+		this.in = in;
+		this.tag = tag;
+		this.namespace = namespace;
+	}
+
+	/**
+	 * Open a reader over the elements with the specified tag, matched the same
+	 * way as Document.getElementsByTagName
+	 *
+	 * @param tag   the qualified tag of the record elements
+	 * @param fName the file to parse
+	 * @return an XMLRecordReader
+	 * @throws XMLParserException when inputs are invalid or the file cannot be
+	 *                            opened
+	 */
+	public static XMLRecordReader open(final String tag, final String fName) throws XMLParserException {
+		XMLUtil.validateRequired(tag, "A tag is required");
+		return new XMLRecordReader(StaxInput.open(fName), tag, null);
+	}
+
+	/**
+	 * Open a reader over the elements with the specified local name and
+	 * namespace, matched the same way as Document.getElementsByTagNameNS
+	 *
+	 * @param tag       the local name of the record elements or *
+	 * @param namespace the namespace uri of the record elements or *
+	 * @param fName     the file to parse
+	 * @return an XMLRecordReader
+	 * @throws XMLParserException when inputs are invalid or the file cannot be
+	 *                            opened
+	 */
+	public static XMLRecordReader openNS(final String tag, final String namespace, final String fName)
+			throws XMLParserException {
+		XMLUtil.validateRequired(tag, "A tag is required");
+		XMLUtil.validateRequired(namespace, "A namespace string is required");
+		return new XMLRecordReader(StaxInput.open(fName), tag, namespace);
+	}
+
+	/**
+	 * Get the remaining records as a sequential Stream. Closing the stream
+	 * closes the reader.
+	 *
+	 * @return Stream&lt;Node&gt; of record elements
+	 */
+	public Stream<Node> stream() {
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null && !done)
+			next = advance();
+		return next != null;
+	}
+
+	@Override
+	public Node next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		final Element e = next;
+		next = null;
+		return e;
+	}
+
+	@Override
+	public void close() {
+		done = true;
+		in.close();
+	}
+
+	// read up to and including the next record
+	private Element advance() {
+		final XMLStreamReader r = in.reader;
+		try {
+			while (r.hasNext()) {
+				switch (r.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						if (matches(r))
+							return readRecord(r);
+						push(r);
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						pop();
+						break;
+					default:
+						break;
+				}
+			}
+			close();
+			return null;
+		} catch (final XMLStreamException e) {
+			close();
+			throw new UncheckedXMLParserException(new XMLParserException(STAX_MSG, e));
+		} catch (final XMLParserException e) {
+			close();
+			throw new UncheckedXMLParserException(e);
+		}
+	}
+
+	private boolean matches(final XMLStreamReader r) {
+		if (namespace == null)
+			return XMLStreamUtil.matches(tag, r);
+		final String uri = StaxDomBuilder.emptyToNull(r.getNamespaceURI());
+		return ("*".equals(tag) || tag.equals(r.getLocalName()))
+				&& ("*".equals(namespace) || namespace.equals(uri));
+	}
+
+	private Element readRecord(final XMLStreamReader r) throws XMLStreamException, XMLParserException {
+		final Document d = StaxDomBuilder.newDocument();
+		final Element e = StaxDomBuilder.readElement(r, d);
+		// declare inherited namespaces, innermost first, unless the record redeclares them
+		final Set<String> seen = new HashSet<String>();
+		for (int i = scope.size() - 1; i >= 0; i--) {
+			final String[] ns = scope.get(i);
+			final String name = StaxDomBuilder.xmlnsName(ns[0]);
+			if (seen.add(name) && !e.hasAttribute(name))
+				e.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, ns[1]);
+		}
+		d.appendChild(e);
+		return e;
+	}
+
+	private void push(final XMLStreamReader r) {
+		if (depth == scopeCounts.length)
+			scopeCounts = Arrays.copyOf(scopeCounts, depth * 2);
+		final int count = r.getNamespaceCount();
+		for (int i = 0; i < count; i++) {
+			final String uri = r.getNamespaceURI(i);
+			scope.add(new String[] { r.getNamespacePrefix(i), uri == null ? "" : uri });
+		}
+		scopeCounts[depth++] = count;
+	}
+
+	private void pop() {
+		if (depth == 0)
+			return;
+		final int count = scopeCounts[--depth];
+		for (int i = 0; i < count; i++)
+			scope.remove(scope.size() - 1);
+	}
+}
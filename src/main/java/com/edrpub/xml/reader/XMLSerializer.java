@@ -0,0 +1,134 @@
+package com.edrpub.xml.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Node;
+
+/**
+ * Writes DOM nodes as xml to streams, byte arrays and strings.
+ * <p>
+ * Creating a TransformerFactory and a Transformer means a service lookup and
+ * several allocations, so each thread keeps one identity Transformer and
+ * resets it for every write. How the output is written is set with
+ * {@link OutputOptions}.
+ */
+public final class XMLSerializer {
+	private static final Logger log = LoggerFactory.getLogger(XMLSerializer.class);
+	/** The size of the buffer used when writing files */
+	static final int BUFFER_SIZE = 64 * 1024;
+	private static final String INDENT_AMOUNT = "{http://xml.apache.org/xslt}indent-amount";
+	private static final TransformerFactory factory = TransformerFactory.newInstance();
+	private static final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>();
+
+	private XMLSerializer() {
+	}
+
+	/**
+	 * Write a node to a stream. The stream is not flushed or closed.
+	 *
+	 * @param node    the document or node to write
+	 * @param out     the stream to write to
+	 * @param options how to write the node, null for the defaults
+	 * @throws XMLParserException when the inputs are missing or the node cannot
+	 *                            be written
+	 */
+	public static void serialize(final Node node, final OutputStream out, final OutputOptions options)
+			throws XMLParserException {
+		if (out == null)
+			throw new XMLParserException("An output stream is required!");
+		serialize(node, new StreamResult(out), options);
+	}
+
+	/**
+	 * Write a node to a byte array
+	 *
+	 * @param node    the document or node to write
+	 * @param options how to write the node, null for the defaults
+	 * @return the xml in the encoding of the options
+	 * @throws XMLParserException when the node is missing or cannot be written
+	 */
+	public static byte[] toBytes(final Node node, final OutputOptions options) throws XMLParserException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+		serialize(node, out, options);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write a node to a String. The encoding of the options is only written
+	 * in the xml declaration.
+	 *
+	 * @param node    the document or node to write
+	 * @param options how to write the node, null for the defaults
+	 * @return the xml
+	 * @throws XMLParserException when the node is missing or cannot be written
+	 */
+	public static String toString(final Node node, final OutputOptions options) throws XMLParserException {
+		final StringWriter out = new StringWriter();
+		serialize(node, new StreamResult(out), options);
+		return out.toString();
+	}
+
+	// write a node to any result, such as a StreamResult for a url
+	static void serialize(final Node node, final Result result, final OutputOptions options)
+			throws XMLParserException {
+		if (node == null)
+			throw new XMLParserException("A node is required!");
+		try {
+			final Transformer t = transformer();
+			apply(t, options != null ? options : OutputOptions.DEFAULT);
+			t.transform(new DOMSource(node), result);
+		} catch (final TransformerConfigurationException e) {
+			log.error("transformer configuration error while writing: " + e);
+			throw new XMLParserException("transformer configuration error while writing", e);
+		} catch (final TransformerException e) {
+			log.error("transformer error while writing", e);
+			throw new XMLParserException("transformer error while writing", e);
+		}
+	}
+
+	// leave the defaults alone so the default output does not change
+	private static void apply(final Transformer t, final OutputOptions options) {
+		if (!options.getEncoding().equals(OutputOptions.DEFAULT.getEncoding()))
+			t.setOutputProperty(OutputKeys.ENCODING, options.getEncoding());
+		if (!options.isXmlDeclaration())
+			t.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+		if (options.getIndent() >= 0) {
+			t.setOutputProperty(OutputKeys.INDENT, "yes");
+			t.setOutputProperty(INDENT_AMOUNT, Integer.toString(options.getIndent()));
+		}
+	}
+
+	/**
+	 * Get the identity Transformer of the calling thread, reset to its initial
+	 * state. It must not be used after the next call on the same thread.
+	 *
+	 * @return a Transformer
+	 * @throws TransformerConfigurationException when no Transformer can be
+	 *                                           created
+	 */
+	static Transformer transformer() throws TransformerConfigurationException {
+		Transformer t = transformers.get();
+		if (t == null) {
+			synchronized (factory) {
+				t = factory.newTransformer();
+			}
+			transformers.set(t);
+		} else {
+			t.reset();
+		}
+		return t;
+	}
+}
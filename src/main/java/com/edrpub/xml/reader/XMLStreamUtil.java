@@ -0,0 +1,342 @@
+package com.edrpub.xml.reader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Streaming (StAX) versions of the tag based lookups in XMLUtil. The file is
+ * read once from the start without building a DOM, so memory use does not
+ * depend on the size of the file, and lookups that only need the first match
+ * stop reading as soon as it is found.
+ * <p>
+ * Results are the same as the XMLUtil methods of the same name. XMLUtil
+ * switches to these methods automatically for files at or above the size set
+ * with {@link XMLUtil#setStreamingThreshold(long)}.
+ */
+public final class XMLStreamUtil {
+	private static final String TAG_REQ = "A tag is required";
+	private static final String STAX_MSG = "Stax parse error";
+
+	private XMLStreamUtil() {
+	}
+
+	/**
+	 * Returns the value of the first child of the first element with the
+	 * specified tag, streaming the file until the element is found.
+	 *
+	 * @param tag   the tag of the xml element node to return.
+	 * @param fName the file to parse
+	 * @return the node value of a single element returned as a String.
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static String getParameterByTag(final String tag, final String fName) throws XMLParserException {
+		XMLUtil.validateRequired(tag, TAG_REQ);
+		try (StaxInput in = StaxInput.open(fName)) {
+			final XMLStreamReader r = in.reader;
+			while (r.hasNext()) {
+				if (r.next() == XMLStreamConstants.START_ELEMENT && matches(tag, r))
+					return firstChildValue(r);
+			}
+			return null;
+		} catch (final XMLStreamException e) {
+			throw new XMLParserException(STAX_MSG, e);
+		}
+	}
+
+	/**
+	 * Returns the value of the first attribute, in name order, of every
+	 * element with the specified tag.
+	 *
+	 * @param tag   the tag of the xml element node(s) to return.
+	 * @param fName the file to parse
+	 * @return List&lt;String&gt;
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static List<String> getListParametersByTag(final String tag, final String fName)
+			throws XMLParserException {
+		XMLUtil.validateRequired(tag, TAG_REQ);
+		final List<String> ls = new ArrayList<String>();
+		try (StaxInput in = StaxInput.open(fName)) {
+			final XMLStreamReader r = in.reader;
+			while (r.hasNext()) {
+				if (r.next() == XMLStreamConstants.START_ELEMENT && matches(tag, r)) {
+					final String tmp = firstAttributeValue(r);
+					if (tmp != null)
+						ls.add(tmp);
+				}
+			}
+			return ls;
+		} catch (final XMLStreamException e) {
+			throw new XMLParserException(STAX_MSG, e);
+		}
+	}
+
+	/**
+	 * Streams the value of the first attribute, in name order, of every
+	 * element with the specified tag. The file is read only as far as the
+	 * stream is consumed, so limit, findFirst and anyMatch stop reading early.
+	 * Close the stream if it is not read to the end. Parse errors met while
+	 * reading are thrown as {@link UncheckedXMLParserException}.
+	 *
+	 * @param tag   the tag of the xml element node(s) to return.
+	 * @param fName the file to parse
+	 * @return Stream&lt;String&gt; of attribute values
+	 * @throws XMLParserException when inputs are invalid or the file cannot be
+	 *                            opened
+	 */
+	public static Stream<String> streamParametersByTag(final String tag, final String fName)
+			throws XMLParserException {
+		XMLUtil.validateRequired(tag, TAG_REQ);
+		final StaxInput in = StaxInput.open(fName);
+		final Iterator<String> values = new Iterator<String>() {
+			private String next;
+			private boolean done;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null && !done)
+					next = advance();
+				return next != null;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				final String value = next;
+				next = null;
+				return value;
+			}
+
+			private String advance() {
+				final XMLStreamReader r = in.reader;
+				try {
+					while (r.hasNext()) {
+						if (r.next() == XMLStreamConstants.START_ELEMENT && matches(tag, r)) {
+							final String value = firstAttributeValue(r);
+							if (value != null)
+								return value;
+						}
+					}
+				} catch (final XMLStreamException e) {
+					done = true;
+					in.close();
+					throw new UncheckedXMLParserException(new XMLParserException(STAX_MSG, e));
+				}
+				done = true;
+				in.close();
+				return null;
+			}
+		};
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(values, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(in::close);
+	}
+
+	/**
+	 * Returns the child nodes of the first element with the specified tag.
+	 * Only that element is built as DOM; the nodes are detached from the file
+	 * and may be modified freely.
+	 *
+	 * @param tag   the tag of the xml element node(s) to return.
+	 * @param fName the file to parse
+	 * @return org.w3c.dom.NodeList - children of the first matching element or
+	 *         null.
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static NodeList getNodeListByTag(final String tag, final String fName) throws XMLParserException {
+		XMLUtil.validateRequired(tag, TAG_REQ);
+		try (StaxInput in = StaxInput.open(fName)) {
+			final XMLStreamReader r = in.reader;
+			while (r.hasNext()) {
+				if (r.next() == XMLStreamConstants.START_ELEMENT && matches(tag, r)) {
+					final Document d = StaxDomBuilder.newDocument();
+					final Element e = StaxDomBuilder.readElement(r, d);
+					d.appendChild(e);
+					return e.hasChildNodes() ? e.getChildNodes() : null;
+				}
+			}
+			return null;
+		} catch (final XMLStreamException e) {
+			throw new XMLParserException(STAX_MSG, e);
+		}
+	}
+
+	/**
+	 * Returns the same map as {@link XMLUtil#getMapByTag(String, String)},
+	 * built directly from the events of the first element with the specified
+	 * tag without creating any DOM. Reading stops at the end of that element.
+	 *
+	 * @param tag   the tag of the xml element node(s) to return.
+	 * @param fName the file to parse
+	 * @return map - elements of the node name/value returned given the tag
+	 *         input.
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static Map<String, List<String>> getMapByTag(final String tag, final String fName)
+			throws XMLParserException {
+		XMLUtil.validateRequired(tag, TAG_REQ);
+		try (StaxInput in = StaxInput.open(fName)) {
+			final XMLStreamReader r = in.reader;
+			while (r.hasNext()) {
+				if (r.next() == XMLStreamConstants.START_ELEMENT && matches(tag, r))
+					return readMap(r);
+			}
+			return new HashMap<String, List<String>>();
+		} catch (final XMLStreamException e) {
+			throw new XMLParserException(STAX_MSG, e);
+		}
+	}
+
+	// Map the element the reader is on. Its children are at depth 1 and
+	// their element children, the entries, at depth 2. Every child node of an
+	// entry adds a value: the merged text, a CDATA section, the data of a
+	// processing instruction or null for an element.
+	private static Map<String, List<String>> readMap(final XMLStreamReader r) throws XMLStreamException {
+		final Map<String, List<String>> map = new HashMap<String, List<String>>();
+		String name = null;
+		List<String> values = null;
+		String entry = null;
+		// text of the entry not yet added, comments do not end it
+		StringBuilder text = null;
+		int depth = 0;
+		while (r.hasNext()) {
+			final int event = r.next();
+			final boolean isText = event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE
+					|| event == XMLStreamConstants.ENTITY_REFERENCE;
+			if (text != null && !isText && event != XMLStreamConstants.COMMENT) {
+				values.add(text.toString());
+				text = null;
+			}
+			// a new child node of the entry starts a new list unless the previous
+			// entry had the same name
+			if (depth == 2 && (isText && text == null || event == XMLStreamConstants.START_ELEMENT
+					|| event == XMLStreamConstants.CDATA || event == XMLStreamConstants.PROCESSING_INSTRUCTION)
+					&& !entry.equals(name)) {
+				name = entry;
+				values = new ArrayList<String>();
+			}
+			switch (event) {
+				case XMLStreamConstants.START_ELEMENT:
+					if (depth == 2)
+						values.add(null);
+					depth++;
+					if (depth == 2)
+						entry = StaxDomBuilder.qualifiedName(r);
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (depth == 0)
+						return map;
+					if (depth == 2)
+						map.put(name, values);
+					depth--;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					if (depth == 2) {
+						if (text == null)
+							text = new StringBuilder();
+						text.append(r.getText());
+					}
+					break;
+				case XMLStreamConstants.CDATA:
+					if (depth == 2)
+						values.add(r.getText());
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					if (depth == 2)
+						values.add(r.getPIData());
+					break;
+				default:
+					// comments are not part of the DOM
+					break;
+			}
+		}
+		throw new XMLStreamException("Unexpected end of document in element " + StaxDomBuilder.qualifiedName(r));
+	}
+
+	// same matching rules as Document.getElementsByTagName
+	static boolean matches(final String tag, final XMLStreamReader r) {
+		return "*".equals(tag) || tag.equals(StaxDomBuilder.qualifiedName(r));
+	}
+
+	// the node value of the first child of the current element as the DOM would report it
+	private static String firstChildValue(final XMLStreamReader r) throws XMLStreamException {
+		StringBuilder text = null;
+		boolean cdata = false;
+		while (r.hasNext()) {
+			final int event = r.next();
+			switch (event) {
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					if (cdata)
+						return text.toString();
+					if (text == null)
+						text = new StringBuilder();
+					text.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+					break;
+				case XMLStreamConstants.CDATA:
+					if (text != null && !cdata)
+						return text.toString();
+					if (text == null)
+						text = new StringBuilder();
+					cdata = true;
+					text.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+					break;
+				case XMLStreamConstants.COMMENT:
+					// comments are not part of the DOM
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					return text != null ? text.toString() : r.getPIData();
+				default:
+					return text != null ? text.toString() : null;
+			}
+		}
+		return text != null ? text.toString() : null;
+	}
+
+	// the DOM orders attributes, including namespace declarations, by name
+	private static String firstAttributeValue(final XMLStreamReader r) {
+		String name = null;
+		String value = null;
+		for (int i = 0; i < r.getNamespaceCount(); i++) {
+			final String n = StaxDomBuilder.xmlnsName(r.getNamespacePrefix(i));
+			if (name == null || n.compareTo(name) < 0) {
+				name = n;
+				value = r.getNamespaceURI(i) == null ? "" : r.getNamespaceURI(i);
+			}
+		}
+		for (int i = 0; i < r.getAttributeCount(); i++) {
+			final String prefix = r.getAttributePrefix(i);
+			final String local = r.getAttributeLocalName(i);
+			final String n = prefix == null || prefix.isEmpty() ? local : prefix + ":" + local;
+			if (name == null || n.compareTo(name) < 0) {
+				name = n;
+				value = r.getAttributeValue(i);
+			}
+		}
+		return value;
+	}
+}
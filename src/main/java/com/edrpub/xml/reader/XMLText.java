@@ -0,0 +1,207 @@
+package com.edrpub.xml.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.util.Base64;
+
+import org.w3c.dom.Node;
+
+/**
+ * Reads the text of a node without building it as one String.
+ * <p>
+ * Node.getTextContent concatenates the text nodes of an element into a new
+ * String, and large values, such as base64 attachments in SOAP bodies, are
+ * then copied again by every caller. These methods write the text node by
+ * node into a caller supplied Appendable, such as a Writer or StringBuilder,
+ * or a CharBuffer, or decode base64 text straight into an OutputStream. The
+ * text is the same as getTextContent returns: the value of an attribute,
+ * text, CDATA, comment or processing instruction node, or the text and CDATA
+ * of every descendant of an element, in document order.
+ */
+public final class XMLText {
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private XMLText() {
+	}
+
+	/**
+	 * Append the text of a node
+	 *
+	 * @param node the node, null appends nothing
+	 * @param out  the destination, for example a Writer or StringBuilder
+	 * @return the number of characters appended
+	 * @throws XMLParserException when the destination is missing or cannot be
+	 *                            written
+	 */
+	public static long appendText(final Node node, final Appendable out) throws XMLParserException {
+		if (out == null)
+			throw new XMLParserException("An output is required!");
+		long length = 0;
+		try {
+			for (Node n = first(node); n != null; n = next(node, n)) {
+				final String value = n.getNodeValue();
+				out.append(value);
+				length += value.length();
+			}
+		} catch (final IOException e) {
+			throw new XMLParserException("Unable to write text", e);
+		}
+		return length;
+	}
+
+	/**
+	 * Copy the text of a node into a buffer. Nothing is copied when the text
+	 * does not fit in the remaining space.
+	 *
+	 * @param node   the node, null copies nothing
+	 * @param buffer the destination
+	 * @return the number of characters copied
+	 * @throws XMLParserException when the buffer is missing or too small
+	 */
+	public static int copyText(final Node node, final CharBuffer buffer) throws XMLParserException {
+		if (buffer == null)
+			throw new XMLParserException("A buffer is required!");
+		final long length = textLength(node);
+		if (length > buffer.remaining())
+			throw new XMLParserException(
+					"Text of " + length + " characters does not fit in " + buffer.remaining() + " remaining");
+		for (Node n = first(node); n != null; n = next(node, n))
+			buffer.put(n.getNodeValue());
+		return (int) length;
+	}
+
+	/**
+	 * Get the length of the text of a node without building it
+	 *
+	 * @param node the node, null has a length of 0
+	 * @return the number of characters getTextContent would return
+	 */
+	public static long textLength(final Node node) {
+		long length = 0;
+		for (Node n = first(node); n != null; n = next(node, n))
+			length += n.getNodeValue().length();
+		return length;
+	}
+
+	/**
+	 * Decode the base64 text of a node into a stream. Line breaks and other
+	 * characters outside the base64 alphabet are ignored, as in MIME encoded
+	 * content. The stream is not closed.
+	 *
+	 * @param node the node, null writes nothing
+	 * @param out  the destination of the decoded bytes
+	 * @return the number of bytes written
+	 * @throws XMLParserException when the stream is missing or cannot be
+	 *                            written, or the text is not valid base64
+	 */
+	public static long decodeBase64(final Node node, final OutputStream out) throws XMLParserException {
+		if (out == null)
+			throw new XMLParserException("An output stream is required!");
+		long length = 0;
+		try (InputStream in = Base64.getMimeDecoder().wrap(new TextInputStream(node))) {
+			final byte[] buf = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				out.write(buf, 0, n);
+				length += n;
+			}
+		} catch (final IllegalArgumentException e) {
+			throw new XMLParserException("Invalid base64 text", e);
+		} catch (final IOException e) {
+			// the decoder reports bad input as IOException too
+			throw new XMLParserException("Unable to decode base64 text", e);
+		}
+		return length;
+	}
+
+	// the first node holding text of the root, or the root itself when it
+	// holds its own value
+	private static Node first(final Node root) {
+		if (root == null)
+			return null;
+		switch (root.getNodeType()) {
+			case Node.ELEMENT_NODE:
+			case Node.DOCUMENT_FRAGMENT_NODE:
+			case Node.ENTITY_NODE:
+			case Node.ENTITY_REFERENCE_NODE:
+				return next(root, root);
+			case Node.DOCUMENT_NODE:
+			case Node.DOCUMENT_TYPE_NODE:
+			case Node.NOTATION_NODE:
+				return null;
+			default:
+				return root.getNodeValue() != null ? root : null;
+		}
+	}
+
+	// the next text or CDATA node after n within the root, in document order
+	private static Node next(final Node root, Node n) {
+		if (n == root && !hasText(root))
+			return null;
+		while (true) {
+			Node next = n.getFirstChild();
+			if (next == null) {
+				while (n != root && n.getNextSibling() == null)
+					n = n.getParentNode();
+				if (n == root)
+					return null;
+				next = n.getNextSibling();
+			}
+			n = next;
+			final short type = n.getNodeType();
+			if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE)
+				return n;
+		}
+	}
+
+	// true when the root is a container whose text comes from its children
+	private static boolean hasText(final Node root) {
+		final short type = root.getNodeType();
+		return type == Node.ELEMENT_NODE || type == Node.DOCUMENT_FRAGMENT_NODE || type == Node.ENTITY_NODE
+				|| type == Node.ENTITY_REFERENCE_NODE;
+	}
+
+	// the characters of the text of a node as bytes, for base64 which only
+	// uses ascii; other characters become '?', which the decoder skips
+	private static final class TextInputStream extends InputStream {
+		private final Node root;
+		private Node node;
+		private String value;
+		private int pos;
+
+		TextInputStream(final Node root) {
+			this.root = root;
+			this.node = first(root);
+			this.value = node != null ? node.getNodeValue() : null;
+		}
+
+		@Override
+		public int read() {
+			while (value != null && pos == value.length()) {
+				node = next(root, node);
+				value = node != null ? node.getNodeValue() : null;
+				pos = 0;
+			}
+			if (value == null)
+				return -1;
+			final char c = value.charAt(pos++);
+			return c < 0x80 ? c : '?';
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0)
+				return 0;
+			int i = 0;
+			while (i < len) {
+				final int c = read();
+				if (c < 0)
+					break;
+				b[off + i++] = (byte) c;
+			}
+			return i == 0 ? -1 : i;
+		}
+	}
+}
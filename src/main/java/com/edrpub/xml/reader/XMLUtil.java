@@ -1,27 +1,50 @@
 package com.edrpub.xml.reader;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import javax.xml.namespace.NamespaceContext;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +52,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 public class XMLUtil {
@@ -36,11 +60,33 @@ public class XMLUtil {
 	private static final String XPATH_MSG = "Invalid Xpath";
 	private static final String XPATH_REQ = "An xpath qual is required!";
 	private static final String CONTEXT_REQ = "A namespace context is required!";
+	private static final String QUERY_REQ = "A prepared query is required!";
 	private static final String FILE_REQ = "A file/path is required!";
 	private static final String TAG_REQ = "A tag is required";
 	private static final String NS_REQ = "A namespace string is required";
-	private final Document doc;
+	private static final String QUERIES_REQ = "A map of xpath queries is required!";
+	private static final String INPUT_REQ = "An xml input is required!";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// a uri scheme of two or more characters, such as http: or file:
+	private static final Pattern URL_SCHEME = Pattern.compile("[A-Za-z][A-Za-z0-9+.-]+:");
+	/** System property used to set the streaming threshold in bytes */
+	public static final String STREAMING_PROPERTY = "com.edrpub.xml.streamingThreshold";
+	private static volatile DocumentCache documentCache;
+	private static volatile long streamingThreshold = Long.getLong(STREAMING_PROPERTY, -1L);
+	/** System property set to false to evaluate every xpath with JAXP */
+	public static final String SIMPLE_PATH_PROPERTY = "com.edrpub.xml.simplePaths";
+	private static volatile boolean simplePaths = !"false".equalsIgnoreCase(System.getProperty(SIMPLE_PATH_PROPERTY));
+	// replaced, never modified, by writers in thread-safe mode
+	private volatile Document doc;
 	private final String fileName;
+	private final boolean threadSafe;
+	// set instead of doc for a read-only compact document
+	private final CompactDocument compact;
+	private final Object writeLock = new Object();
+	private volatile boolean indexed;
+	// built on first use for the document it holds, dropped by writers
+	private volatile ElementIndex index;
+	private volatile OutputOptions outputOptions = OutputOptions.DEFAULT;
 
 	/**
 	 * Instantiate XMLUtil using a path to an xml document
@@ -52,9 +98,38 @@ public class XMLUtil {
 	 *                            that doesn't allow it to be parsed.
 	 */
 	public XMLUtil(final String url) throws XMLParserException {
+		this(url, false);
+	}
+
+	/**
+	 * Instantiate XMLUtil using a path to an xml document, optionally in
+	 * thread-safe mode.
+	 * <p>
+	 * In thread-safe mode one instance can be shared by many threads. The DOM
+	 * is fully expanded up front and its content never modified afterwards,
+	 * so the query methods of this class run concurrently without locking.
+	 * Writers are serialized; each update is applied to a copy of the
+	 * document which then replaces the current one, so readers see either the
+	 * whole update or none of it. Nodes returned to callers belong to the
+	 * document current at the time of the call and must not be modified.
+	 * Reading returned nodes with getFirstChild(), getNextSibling(),
+	 * getAttributes() and getTextContent() is safe from any thread, but the
+	 * NodeList of getChildNodes() caches its position in the parent node and
+	 * must not be read by several threads at once.
+	 * 
+	 * @param url        full path to an xml file
+	 * @param threadSafe true to allow concurrent use of this instance
+	 * @throws XMLParserException if the input is invalid, there is an error opening
+	 *                            the file, or
+	 *                            there is something wrong with the xml document
+	 *                            that doesn't allow it to be parsed.
+	 */
+	public XMLUtil(final String url, final boolean threadSafe) throws XMLParserException {
 		validateRequired(url, FILE_REQ);
-		this.doc = getDocument(url);
+		this.doc = threadSafe ? expand(getDocument(url)) : getDocument(url);
 		this.fileName = url;
+		this.threadSafe = threadSafe;
+		this.compact = null;
 	}
 
 	/**
@@ -65,16 +140,249 @@ public class XMLUtil {
 	 * @throws XMLParserException if the input is invalid
 	 */
 	public XMLUtil(final Document document) throws XMLParserException {
+		this(document, false);
+	}
+
+	/**
+	 * Instantiate XMLUtil using an existing DOM, optionally in thread-safe
+	 * mode as described in {@link #XMLUtil(String, boolean)}. In thread-safe
+	 * mode the caller must not modify the document after handing it over.
+	 * 
+	 * @param document   Document object
+	 * @param threadSafe true to allow concurrent use of this instance
+	 * @throws XMLParserException if the input is invalid
+	 */
+	public XMLUtil(final Document document, final boolean threadSafe) throws XMLParserException {
 		if (document == null)
 			throw new XMLParserException("A document is required!");
-		this.doc = document;
+		this.doc = threadSafe ? expand(document) : document;
 		this.fileName = null;
+		this.threadSafe = threadSafe;
+		this.compact = null;
+	}
+
+	/**
+	 * Instantiate a read-only XMLUtil over a compact document. Simple paths
+	 * passed to getParameterByXpath, getListParametersByXpath and their NS
+	 * forms, and the getParameterByTagNS and getparametersByTagNS lookups, are
+	 * answered from the compact form. Other queries build a temporary DOM for
+	 * the call. Updates are rejected. The instance is thread-safe.
+	 * 
+	 * @param document a CompactDocument
+	 * @throws XMLParserException if the input is invalid
+	 */
+	public XMLUtil(final CompactDocument document) throws XMLParserException {
+		if (document == null)
+			throw new XMLParserException("A document is required!");
+		this.doc = null;
+		this.fileName = null;
+		this.threadSafe = true;
+		this.compact = document;
+	}
+
+	/**
+	 * Instantiate XMLUtil by parsing a file. Updates are written back to the
+	 * file.
+	 * 
+	 * @param file the xml file
+	 * @throws XMLParserException if the file cannot be read or parsed
+	 */
+	public XMLUtil(final Path file) throws XMLParserException {
+		this(getDocument(file), file.toString());
+	}
+
+	/**
+	 * Instantiate XMLUtil by parsing an xml document held in memory, such as a
+	 * serialized SOAP message. The array is read in place and not copied.
+	 * 
+	 * @param xml the bytes of an xml document
+	 * @throws XMLParserException if the input is missing or cannot be parsed
+	 */
+	public XMLUtil(final byte[] xml) throws XMLParserException {
+		this(getDocument(xml), null);
+	}
+
+	/**
+	 * Instantiate XMLUtil by parsing the remaining bytes of a buffer, including
+	 * a MappedByteBuffer from FileChannel.map. The buffer is read in place and
+	 * its position is not changed.
+	 * 
+	 * @param xml a buffer holding an xml document
+	 * @throws XMLParserException if the input is missing or cannot be parsed
+	 */
+	public XMLUtil(final ByteBuffer xml) throws XMLParserException {
+		this(getDocument(xml), null);
+	}
+
+	/**
+	 * Instantiate XMLUtil by parsing a stream. The stream is read to the end
+	 * but not closed.
+	 * 
+	 * @param in a stream of an xml document
+	 * @throws XMLParserException if the input is missing or cannot be parsed
+	 */
+	public XMLUtil(final InputStream in) throws XMLParserException {
+		this(getDocument(in), null);
+	}
+
+	/**
+	 * Instantiate XMLUtil from a JAXP Source. A DOMSource holding a Document
+	 * is used as is, stream and SAX sources are parsed directly and any other
+	 * source, such as a StAXSource, is copied into a new DOM.
+	 * 
+	 * @param source an xml source
+	 * @throws XMLParserException if the input is missing or cannot be parsed
+	 */
+	public XMLUtil(final Source source) throws XMLParserException {
+		this(getDocument(source), null);
+	}
+
+	private XMLUtil(final Document document, final String fileName) {
+		this.doc = document;
+		this.fileName = fileName;
+		this.threadSafe = false;
+		this.compact = null;
+	}
+
+	// parse a file that was already read into memory, updates are written
+	// back to the file
+	static XMLUtil fromFile(final Path file, final byte[] xml) throws XMLParserException {
+		final InputSource src = new InputSource(new ByteArrayInputStream(xml));
+		src.setSystemId(file.toUri().toString());
+		return new XMLUtil(parse(src, file.toString(), xml.length), file.toString());
+	}
+
+	// the DOM to query, built for the call when backed by a compact document
+	Document document() throws XMLParserException {
+		final Document d = doc;
+		return d != null ? d : compact.toDocument();
+	}
+
+	// answer a simple path from the compact document, null to use the DOM,
+	// as it is when simple path evaluation is turned off
+	private List<String> selectCompact(final String qual, final NamespaceContext context, final boolean first) {
+		if (compact == null || !simplePaths)
+			return null;
+		final SimplePath path = SimplePath.compile(qual);
+		return path == null ? null : compact.select(path, context, first);
+	}
+
+	/**
+	 * @return true if this instance was created in thread-safe mode
+	 */
+	public boolean isThreadSafe() {
+		return threadSafe;
+	}
+
+	/**
+	 * Set how updates are written back to the file and how toBytes and writeTo
+	 * write the document
+	 * 
+	 * @param options the output options, null for the defaults
+	 */
+	public void setOutputOptions(final OutputOptions options) {
+		this.outputOptions = options != null ? options : OutputOptions.DEFAULT;
+	}
+
+	/**
+	 * @return the output options of this instance
+	 */
+	public OutputOptions getOutputOptions() {
+		return outputOptions;
+	}
+
+	/**
+	 * Returns the document as xml written with the output options of this
+	 * instance
+	 * 
+	 * @return the xml in the encoding of the output options
+	 * @throws XMLParserException when the document cannot be written
+	 */
+	public byte[] toBytes() throws XMLParserException {
+		return XMLSerializer.toBytes(document(), outputOptions);
+	}
+
+	/**
+	 * Writes the document as xml with the output options of this instance. The
+	 * stream is not flushed or closed.
+	 * 
+	 * @param out the stream to write to
+	 * @throws XMLParserException when the stream is missing or the document
+	 *                            cannot be written
+	 */
+	public void writeTo(final OutputStream out) throws XMLParserException {
+		XMLSerializer.serialize(document(), out, outputOptions);
+	}
+
+	/**
+	 * Enable or disable the element index of this instance. Disabled by
+	 * default.
+	 * <p>
+	 * When enabled, an index of the elements by namespace and local name is
+	 * built in one pass the first time it is needed. getParameterByTagNS,
+	 * getparametersByTagNS and xpaths whose first step is a // name step, such
+	 * as //item/@id, then look the elements up instead of scanning the whole
+	 * document. Updates made through this instance drop the index and it is
+	 * rebuilt on the next lookup, so while indexed the document must not be
+	 * modified by other means, such as through returned nodes.
+	 * 
+	 * @param indexed true to index the elements of the document
+	 */
+	public void setIndexed(final boolean indexed) {
+		this.indexed = indexed;
+		this.index = null;
+	}
+
+	/**
+	 * @return true if the element index is enabled
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	// the index of the current document or null when not indexed; threads
+	// racing to build it each build one and the last one is kept
+	private ElementIndex index(final Document d) {
+		if (!indexed || compact != null)
+			return null;
+		ElementIndex i = index;
+		if (i == null || i.document != d) {
+			i = ElementIndex.build(d);
+			index = i;
+		}
+		return i;
+	}
+
+	// visit every node so lazily built (deferred) DOM nodes are created before
+	// the document is shared. Afterwards walking the tree with getFirstChild,
+	// getNextSibling and getAttributes no longer modifies it, but item() and
+	// getLength() of a getChildNodes() list still update a cache in the
+	// parent, so shared documents are never read through those lists
+	static Document expand(final Document d) {
+		Node n = d;
+		while (n != null) {
+			final NamedNodeMap atts = n.getAttributes();
+			if (atts != null) {
+				for (int i = 0; i < atts.getLength(); i++)
+					atts.item(i).getFirstChild();
+			}
+			n.getNodeValue();
+			Node next = n.getFirstChild();
+			while (next == null && n != null) {
+				next = n.getNextSibling();
+				if (next == null)
+					n = n.getParentNode();
+			}
+			n = next;
+		}
+		return d;
 	}
 
 	private NodeList getNodes(final String qual) throws XMLParserException {
 		validateRequired(qual, XPATH_REQ);
 		try {
-			final Object result = getExpression(qual).evaluate(doc, XPathConstants.NODESET);
+			final Document d = document();
+			final Object result = evaluate(qual, null, d, XPathConstants.NODESET, index(d));
 			return (NodeList) result;
 		} catch (final XPathExpressionException e) {
 			throw new XMLParserException(XPATH_MSG, e);
@@ -86,19 +394,27 @@ public class XMLUtil {
 		if (context == null)
 			throw new XMLParserException(CONTEXT_REQ);
 		try {
-			final XPath xpath = XPathFactory.newInstance().newXPath();
-			xpath.setNamespaceContext(context);
-			final XPathExpression expr = xpath.compile(qual);
-			return (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
+			final Document d = document();
+			return (NodeList) evaluate(qual, context, d, XPathConstants.NODESET, index(d));
 		} catch (final XPathExpressionException e) {
 			throw new XMLParserException(XPATH_MSG, e);
 		}
 	}
 
 	private Node getNode(final String qual) throws XMLParserException {
+		final Document d = document();
+		return getNode(d, qual, index(d));
+	}
+
+	private static Node getNode(final Node item, final String qual) throws XMLParserException {
+		return getNode(item, qual, null);
+	}
+
+	private static Node getNode(final Node item, final String qual, final ElementIndex index)
+			throws XMLParserException {
 		validateRequired(qual, XPATH_REQ);
 		try {
-			return (Node) getExpression(qual).evaluate(doc, XPathConstants.NODE);
+			return (Node) evaluate(qual, null, item, XPathConstants.NODE, index);
 		} catch (final XPathExpressionException e) {
 			throw new XMLParserException(XPATH_MSG, e);
 		}
@@ -109,10 +425,8 @@ public class XMLUtil {
 		if (context == null)
 			throw new XMLParserException(CONTEXT_REQ);
 		try {
-			final XPath xpath = XPathFactory.newInstance().newXPath();
-			xpath.setNamespaceContext(context);
-			final XPathExpression expr = xpath.compile(qual);
-			return (Node) expr.evaluate(doc, XPathConstants.NODE);
+			final Document d = document();
+			return (Node) evaluate(qual, context, d, XPathConstants.NODE, index(d));
 		} catch (final XPathExpressionException e) {
 			throw new XMLParserException(XPATH_MSG, e);
 		}
@@ -128,6 +442,9 @@ public class XMLUtil {
 	 *                            processing the search
 	 */
 	public List<String> getListParametersByXpath(final String qual) throws XMLParserException {
+		final List<String> fast = selectCompact(qual, null, false);
+		if (fast != null)
+			return fast;
 		final List<String> s = new ArrayList<String>();
 		final NodeList nodes = getNodes(qual);
 		for (int i = 0; i < nodes.getLength(); i++) {
@@ -151,6 +468,11 @@ public class XMLUtil {
 	 */
 	public List<String> getListParametersByXpathNS(final String qual, final NamespaceContext context)
 			throws XMLParserException {
+		if (context != null) {
+			final List<String> fast = selectCompact(qual, context, false);
+			if (fast != null)
+				return fast;
+		}
 		final List<String> s = new ArrayList<String>();
 		final NodeList nodes = getNodesNS(qual, context);
 		if (nodes.getLength() < 1)
@@ -163,6 +485,173 @@ public class XMLUtil {
 		return s;
 	}
 
+	/**
+	 * Streams the values of the nodes matching the xpath. The text of each
+	 * node is only read when the stream reaches it, so limit, findFirst and
+	 * anyMatch avoid reading the rest.
+	 * 
+	 * @param qual String representation of an xpath query statement
+	 * @return Stream&lt;String&gt; of values matching the xpath
+	 * @throws XMLParserException when the xpath is invalid or there is an error
+	 *                            processing the search
+	 */
+	public Stream<String> streamParametersByXpath(final String qual) throws XMLParserException {
+		final List<String> fast = selectCompact(qual, null, false);
+		if (fast != null)
+			return fast.stream();
+		return textContents(getNodes(qual));
+	}
+
+	/**
+	 * Streams the values of the nodes matching the xpath in the Namespace
+	 * provided in the context parameter
+	 * 
+	 * @param qual    String representation of an xpath query statement
+	 * @param context Namespace context to include in the search
+	 * @return Stream&lt;String&gt; of values matching the xpath
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search
+	 */
+	public Stream<String> streamParametersByXpathNS(final String qual, final NamespaceContext context)
+			throws XMLParserException {
+		if (context != null) {
+			final List<String> fast = selectCompact(qual, context, false);
+			if (fast != null)
+				return fast.stream();
+		}
+		return textContents(getNodesNS(qual, context));
+	}
+
+	/**
+	 * Passes the value of each node matching the xpath to the action, without
+	 * collecting them
+	 * 
+	 * @param qual   String representation of an xpath query statement
+	 * @param action called with each value in document order
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search
+	 */
+	public void forEachParameterByXpath(final String qual, final Consumer<? super String> action)
+			throws XMLParserException {
+		validateAction(action);
+		streamParametersByXpath(qual).forEach(action);
+	}
+
+	/**
+	 * Passes the value of each node matching the xpath in the Namespace
+	 * provided in the context parameter to the action, without collecting them
+	 * 
+	 * @param qual    String representation of an xpath query statement
+	 * @param context Namespace context to include in the search
+	 * @param action  called with each value in document order
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search
+	 */
+	public void forEachParameterByXpathNS(final String qual, final NamespaceContext context,
+			final Consumer<? super String> action) throws XMLParserException {
+		validateAction(action);
+		streamParametersByXpathNS(qual, context).forEach(action);
+	}
+
+	/**
+	 * Counts the values getListParametersByXpath would return, without reading
+	 * them
+	 * 
+	 * @param qual String representation of an xpath query statement
+	 * @return the number of matching nodes that have a value
+	 * @throws XMLParserException when the xpath is invalid or there is an error
+	 *                            processing the search
+	 */
+	public int countByXpath(final String qual) throws XMLParserException {
+		final List<String> fast = selectCompact(qual, null, false);
+		return fast != null ? fast.size() : countValues(getNodes(qual));
+	}
+
+	/**
+	 * Counts the values getListParametersByXpathNS would return, without
+	 * reading them
+	 * 
+	 * @param qual    String representation of an xpath query statement
+	 * @param context Namespace context to include in the search
+	 * @return the number of matching nodes that have a value
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search
+	 */
+	public int countByXpathNS(final String qual, final NamespaceContext context) throws XMLParserException {
+		if (context != null) {
+			final List<String> fast = selectCompact(qual, context, false);
+			if (fast != null)
+				return fast.size();
+		}
+		return countValues(getNodesNS(qual, context));
+	}
+
+	/**
+	 * Checks whether the xpath matches a node with a value, stopping at the
+	 * first match where the xpath allows it
+	 * 
+	 * @param qual String representation of an xpath query statement
+	 * @return true when getListParametersByXpath would not be empty
+	 * @throws XMLParserException when the xpath is invalid or there is an error
+	 *                            processing the search
+	 */
+	public boolean existsByXpath(final String qual) throws XMLParserException {
+		final List<String> fast = selectCompact(qual, null, true);
+		if (fast != null)
+			return !fast.isEmpty();
+		final Node n = getNode(qual);
+		return n != null && (hasValue(n) || countByXpath(qual) > 0);
+	}
+
+	/**
+	 * Checks whether the xpath matches a node with a value in the Namespace
+	 * provided in the context parameter, stopping at the first match where the
+	 * xpath allows it
+	 * 
+	 * @param qual    String representation of an xpath query statement
+	 * @param context Namespace context to include in the search
+	 * @return true when getListParametersByXpathNS would not be empty
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search
+	 */
+	public boolean existsByXpathNS(final String qual, final NamespaceContext context) throws XMLParserException {
+		if (context != null) {
+			final List<String> fast = selectCompact(qual, context, true);
+			if (fast != null)
+				return !fast.isEmpty();
+		}
+		final Node n = getNodeNS(qual, context);
+		return n != null && (hasValue(n) || countByXpathNS(qual, context) > 0);
+	}
+
+	// the text of each node, read as the stream reaches it. Lists from
+	// getElementsByTagName find their items as they are asked for, so the
+	// length is never requested.
+	private static Stream<String> textContents(final NodeList nodes) {
+		return IntStream.iterate(0, i -> nodes.item(i) != null, i -> i + 1).mapToObj(nodes::item)
+				.map(Node::getTextContent).filter(Objects::nonNull);
+	}
+
+	private static int countValues(final NodeList nodes) {
+		int count = 0;
+		for (int i = 0; i < nodes.getLength(); i++) {
+			if (hasValue(nodes.item(i)))
+				count++;
+		}
+		return count;
+	}
+
+	// true when getTextContent does not return null
+	private static boolean hasValue(final Node n) {
+		final short type = n.getNodeType();
+		return type != Node.DOCUMENT_NODE && type != Node.DOCUMENT_TYPE_NODE && type != Node.NOTATION_NODE;
+	}
+
+	private static void validateAction(final Consumer<?> action) throws XMLParserException {
+		if (action == null)
+			throw new XMLParserException("An action is required!");
+	}
+
 	/**
 	 * Returns a NodeList of all the matching nodes specified by the qual input
 	 * parameter.
@@ -186,6 +675,9 @@ public class XMLUtil {
 	 *                            processing the search
 	 */
 	public String getParameterByXpath(final String qual) throws XMLParserException {
+		final List<String> fast = selectCompact(qual, null, true);
+		if (fast != null)
+			return fast.isEmpty() ? null : fast.get(0);
 		final Node n = getNode(qual);
 		return n != null ? n.getTextContent() : null;
 	}
@@ -201,10 +693,140 @@ public class XMLUtil {
 	 *                            processing the search
 	 */
 	public String getParameterByXpathNS(final String qual, final NamespaceContext context) throws XMLParserException {
+		if (context != null) {
+			final List<String> fast = selectCompact(qual, context, true);
+			if (fast != null)
+				return fast.isEmpty() ? null : fast.get(0);
+		}
 		final Node n = getNodeNS(qual, context);
 		return n != null ? n.getTextContent() : null;
 	}
 
+	/**
+	 * Appends the value of the item found using the xpath to out, node by node
+	 * without building it as a String. Use this for large values.
+	 * 
+	 * @param qual an xpath query string
+	 * @param out  the destination, for example a Writer or StringBuilder
+	 * @return true when a node was found
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search or writing
+	 * @see XMLText#appendText(Node, Appendable)
+	 */
+	public boolean appendParameterByXpath(final String qual, final Appendable out) throws XMLParserException {
+		final Node n = getNode(qual);
+		XMLText.appendText(n, out);
+		return n != null;
+	}
+
+	/**
+	 * Appends the value of the item found using the xpath and the Namespace
+	 * provided in the context parameter to out, without building it as a
+	 * String
+	 * 
+	 * @param qual    an xpath query string
+	 * @param context a NamespaceContext
+	 * @param out     the destination, for example a Writer or StringBuilder
+	 * @return true when a node was found
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search or writing
+	 */
+	public boolean appendParameterByXpathNS(final String qual, final NamespaceContext context,
+			final Appendable out) throws XMLParserException {
+		final Node n = getNodeNS(qual, context);
+		XMLText.appendText(n, out);
+		return n != null;
+	}
+
+	/**
+	 * Decodes the base64 value of the item found using the xpath, such as a
+	 * SOAP attachment, straight into a stream. The stream is not closed.
+	 * 
+	 * @param qual an xpath query string
+	 * @param out  the destination of the decoded bytes
+	 * @return true when a node was found
+	 * @throws XMLParserException when the inputs are invalid, there is an error
+	 *                            processing the search or the value is not
+	 *                            base64
+	 * @see XMLText#decodeBase64(Node, OutputStream)
+	 */
+	public boolean decodeBase64ByXpath(final String qual, final OutputStream out) throws XMLParserException {
+		final Node n = getNode(qual);
+		XMLText.decodeBase64(n, out);
+		return n != null;
+	}
+
+	/**
+	 * Decodes the base64 value of the item found using the xpath and the
+	 * Namespace provided in the context parameter straight into a stream. The
+	 * stream is not closed.
+	 * 
+	 * @param qual    an xpath query string
+	 * @param context a NamespaceContext
+	 * @param out     the destination of the decoded bytes
+	 * @return true when a node was found
+	 * @throws XMLParserException when the inputs are invalid, there is an error
+	 *                            processing the search or the value is not
+	 *                            base64
+	 */
+	public boolean decodeBase64ByXpathNS(final String qual, final NamespaceContext context, final OutputStream out)
+			throws XMLParserException {
+		final Node n = getNodeNS(qual, context);
+		XMLText.decodeBase64(n, out);
+		return n != null;
+	}
+
+	/**
+	 * Returns the string values for a batch of named xpath queries. Each
+	 * query is compiled once and evaluated against this document; queries
+	 * that find nothing map to null.
+	 * 
+	 * @param queries a map of parameter name to xpath query string
+	 * @return a map of parameter name to value in the order of the input map
+	 * @throws XMLParserException when an input is invalid or there is an error
+	 *                            processing the search
+	 */
+	public Map<String, String> getParametersByXpath(final Map<String, String> queries) throws XMLParserException {
+		final Document d = document();
+		return evaluateAll(queries, d, null, index(d));
+	}
+
+	/**
+	 * Returns the string values for a batch of named xpath queries using the
+	 * Namespace provided in the context parameter
+	 * 
+	 * @param queries a map of parameter name to xpath query string
+	 * @param context a NamespaceContext
+	 * @return a map of parameter name to value in the order of the input map
+	 * @throws XMLParserException when an input is invalid or there is an error
+	 *                            processing the search
+	 */
+	public Map<String, String> getParametersByXpathNS(final Map<String, String> queries,
+			final NamespaceContext context) throws XMLParserException {
+		if (context == null)
+			throw new XMLParserException(CONTEXT_REQ);
+		final Document d = document();
+		return evaluateAll(queries, d, context, index(d));
+	}
+
+	// evaluate every named query against the item
+	private static Map<String, String> evaluateAll(final Map<String, String> queries, final Node item,
+			final NamespaceContext context, final ElementIndex index) throws XMLParserException {
+		if (queries == null)
+			throw new XMLParserException(QUERIES_REQ);
+		final Map<String, String> values = new LinkedHashMap<String, String>();
+		for (final Map.Entry<String, String> q : queries.entrySet()) {
+			validateRequired(q.getValue(), XPATH_REQ);
+			try {
+				final Node n = (Node) evaluate(q.getValue(), context, item, XPathConstants.NODE, index);
+				values.put(q.getKey(), n != null ? n.getTextContent() : null);
+			} catch (final XPathExpressionException e) {
+				throw new XMLParserException(XPATH_MSG + " for [" + q.getKey() + "]", e);
+			}
+		}
+		return values;
+	}
+
 	/**
 	 * Returns a NodeList for matching items based on the the inputs of xpath
 	 * statement and a NamespaceContext
@@ -233,91 +855,399 @@ public class XMLUtil {
 	public NodeList getNodeListFromNodeByXpathNS(final String qual, final Node item, final NamespaceContext context)
 			throws XMLParserException {
 		try {
-			return (NodeList) getExpression(qual, context).evaluate(item, XPathConstants.NODESET);
+			return (NodeList) evaluate(qual, context, item, XPathConstants.NODESET, index(doc));
+		} catch (final XPathExpressionException e) {
+			throw new XMLParserException(XPATH_MSG, e);
+		}
+	}
+
+	/**
+	 * Returns the namespace declarations on the root element as reusable
+	 * bindings for the XPathQuery methods. A default namespace is bound to
+	 * defaultPrefix, or skipped when it is null.
+	 * 
+	 * @param defaultPrefix the prefix for the default namespace or null
+	 * @return the namespace bindings of the document
+	 * @throws XMLParserException when a declaration cannot be bound
+	 */
+	public NamespaceBindings getNamespaceBindings(final String defaultPrefix) throws XMLParserException {
+		return NamespaceBindings.fromDocument(document(), defaultPrefix);
+	}
+
+	/**
+	 * Returns a string value of the item found with a prepared query
+	 * 
+	 * @param query a prepared xpath query
+	 * @return string of found value or null
+	 * @throws XMLParserException when the query is null or there is an error
+	 *                            processing the search
+	 */
+	public String getParameter(final XPathQuery query) throws XMLParserException {
+		final List<String> fast = selectCompact(query, true);
+		if (fast != null)
+			return fast.isEmpty() ? null : fast.get(0);
+		final Document d = document();
+		final Node n = (Node) evaluate(query, d, XPathConstants.NODE, index(d));
+		return n != null ? n.getTextContent() : null;
+	}
+
+	/**
+	 * Returns a string list of all the nodes found with a prepared query
+	 * 
+	 * @param query a prepared xpath query
+	 * @return List&lt;String&gt; of parameters matching the query
+	 * @throws XMLParserException when the query is null or there is an error
+	 *                            processing the search
+	 */
+	public List<String> getListParameters(final XPathQuery query) throws XMLParserException {
+		final List<String> fast = selectCompact(query, false);
+		if (fast != null)
+			return fast;
+		final List<String> s = new ArrayList<String>();
+		final NodeList nodes = getNodeList(query);
+		for (int i = 0; i < nodes.getLength(); i++) {
+			final String text = nodes.item(i).getTextContent();
+			if (text != null)
+				s.add(text);
+		}
+		return s;
+	}
+
+	/**
+	 * Returns a NodeList of all the nodes found with a prepared query
+	 * 
+	 * @param query a prepared xpath query
+	 * @return NodeList
+	 * @throws XMLParserException when the query is null or there is an error
+	 *                            processing the search
+	 */
+	public NodeList getNodeList(final XPathQuery query) throws XMLParserException {
+		final Document d = document();
+		return (NodeList) evaluate(query, d, XPathConstants.NODESET, index(d));
+	}
+
+	/**
+	 * Get a NodeList of the results of a prepared query of the item object
+	 * 
+	 * @param query a prepared xpath query
+	 * @param item  org.w3c.dom.Node in which to search
+	 * @return org.w3c.dom.NodeList
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public NodeList getNodeListFromNode(final XPathQuery query, final Node item) throws XMLParserException {
+		if (item == null)
+			throw new XMLParserException("An XML object is required!");
+		return (NodeList) evaluate(query, item, XPathConstants.NODESET, index(doc));
+	}
+
+	// evaluate a prepared query, reporting errors as XMLParserException
+	private static Object evaluate(final XPathQuery query, final Node item, final QName type,
+			final ElementIndex index) throws XMLParserException {
+		if (query == null)
+			throw new XMLParserException(QUERY_REQ);
+		try {
+			return evaluate(query.getXpath(), query.getBindings(), query, item, type, index);
 		} catch (final XPathExpressionException e) {
 			throw new XMLParserException(XPATH_MSG, e);
 		}
 	}
 
-	// construct and xpath expression from an xpath string and namespace
-	private XPathExpression getExpression(final String qual, final NamespaceContext context)
+	// answer a prepared query from the compact document, null to use the DOM
+	private List<String> selectCompact(final XPathQuery query, final boolean first) throws XMLParserException {
+		if (query == null)
+			throw new XMLParserException(QUERY_REQ);
+		if (compact == null || !simplePaths || query.path() == null)
+			return null;
+		return compact.select(query.path(), query.getBindings(), first);
+	}
+
+	// evaluate an xpath against the item, reporting the time when metrics are
+	// enabled
+	private static Object evaluate(final String qual, final NamespaceContext context, final Node item,
+			final QName type, final ElementIndex index) throws XPathExpressionException {
+		return evaluate(qual, context, null, item, type, index);
+	}
+
+	// evaluate an xpath or, when query is not null, its prepared form
+	private static Object evaluate(final String qual, final NamespaceContext context, final XPathQuery query,
+			final Node item, final QName type, final ElementIndex index) throws XPathExpressionException {
+		final XMLMetricsListener m = XMLMetrics.listener();
+		if (m == null)
+			return select(qual, context, query, item, type, index);
+		final long start = System.nanoTime();
+		final Object result = select(qual, context, query, item, type, index);
+		m.xpathEvaluated(qual, System.nanoTime() - start);
+		return result;
+	}
+
+	// walk the DOM directly for simple paths, anything else goes to JAXP
+	private static Object select(final String qual, final NamespaceContext context, final XPathQuery query,
+			final Node item, final QName type, final ElementIndex index) throws XPathExpressionException {
+		final SimplePath path = !simplePaths ? null : query != null ? query.path() : SimplePath.compile(qual);
+		final List<Node> nodes = path == null ? null
+				: path.select(item, context, type == XPathConstants.NODE, index);
+		if (nodes == null)
+			return query != null ? query.expression().evaluate(item, type)
+					: getExpression(qual, context).evaluate(item, type);
+		if (type == XPathConstants.NODE)
+			return nodes.isEmpty() ? null : nodes.get(0);
+		return new SelectedNodes(nodes);
+	}
+
+	// get a cached xpath expression for an xpath string and namespace
+	private static XPathExpression getExpression(final String qual, final NamespaceContext context)
 			throws XPathExpressionException {
-		final XPathFactory factory = XPathFactory.newInstance();
-		final XPath xpath = factory.newXPath();
-		xpath.setNamespaceContext(context);
-		return xpath.compile(qual);
+		return XPathCache.getDefault().compile(qual, context);
+	}
+
+	/**
+	 * Returns a string list of all the matching nodes specified by the qual input
+	 * parameter.
+	 * 
+	 * @param qual  String representation of an xpath query statement
+	 * @param fName The document path/name to search
+	 * @return List&lt;String&gt; of values found for the xpath statement
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static List<String> getListParametersByXpath(final String qual, final String fName)
+			throws XMLParserException {
+		try {
+			final List<String> s = new ArrayList<String>();
+			final Document d = loadDocument(fName);
+			synchronized (d) {
+				final NodeList nodes = (NodeList) evaluate(qual, null, d, XPathConstants.NODESET, null);
+				for (int i = 0; i < nodes.getLength(); i++) {
+					String txt = null;
+					if ((txt = nodes.item(i).getTextContent()) != null) {
+						s.add(txt);
+					}
+				}
+			}
+			return s;
+		} catch (final XPathExpressionException e) {
+			throw new XMLParserException(XPATH_MSG, e);
+		}
+	}
+
+	static void validateRequired(String value, String msg) throws XMLParserException {
+		if (value == null || value == "")
+			throw new XMLParserException(msg);
+	}
+
+	/**
+	 * Returns the string values for a batch of named xpath queries against a
+	 * file. The file is parsed once for the whole batch.
+	 * 
+	 * @param queries a map of parameter name to xpath query string
+	 * @param fName   The document path/name to search
+	 * @return a map of parameter name to value in the order of the input map
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static Map<String, String> getParametersByXpath(final Map<String, String> queries, final String fName)
+			throws XMLParserException {
+		if (queries == null)
+			throw new XMLParserException(QUERIES_REQ);
+		final Document d = loadDocument(fName);
+		synchronized (d) {
+			return evaluateAll(queries, d, null, null);
+		}
+	}
+
+	/**
+	 * Returns a NodeList of all the matching nodes specified by the qual input
+	 * parameter. When the document cache is enabled the nodes belong to the
+	 * shared cached document and must not be modified.
+	 * 
+	 * @param qual  String representation of an xpath query statement
+	 * @param fName The document path/name to search
+	 * @return org.w3c.dom.NodeList
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static NodeList getNodeListByXpath(final String qual, final String fName) throws XMLParserException {
+		try {
+			final Document d = loadDocument(fName);
+			synchronized (d) {
+				return copyOf((NodeList) evaluate(qual, null, d, XPathConstants.NODESET, null));
+			}
+		} catch (final XPathExpressionException e) {
+			throw new XMLParserException(XPATH_MSG, e);
+		}
+	}
+
+	/**
+	 * Get a NodeList result from an xpath search of an item object
+	 * 
+	 * @param qual an xpath query string
+	 * @param item an xml object
+	 * @return org.w3c.dom.NodeList
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static NodeList getNodeListFromNodeByXpath(final String qual, final Node item)
+			throws XMLParserException {
+		validateRequired(qual, XPATH_REQ);
+		if (item == null)
+			throw new XMLParserException("An XML object is required!");
+		try {
+			return (NodeList) evaluate(qual, null, item, XPathConstants.NODESET, null);
+		} catch (final XPathExpressionException e) {
+			throw new XMLParserException(XPATH_MSG, e);
+		}
+	}
+
+	/**
+	 * Get a string value from an xml file given an xpath query and file
+	 * 
+	 * @param qual an xpath statement
+	 * @param file the file to search
+	 * @return String
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static String getParameterByXpath(final String qual, final Path file) throws XMLParserException {
+		if (file == null)
+			throw new XMLParserException(FILE_REQ);
+		return getParameterByXpath(qual, file.toString());
+	}
+
+	/**
+	 * Get a string value from an xml document held in a byte array
+	 * 
+	 * @param qual an xpath statement
+	 * @param xml  the bytes of an xml document
+	 * @return String
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static String getParameterByXpath(final String qual, final byte[] xml) throws XMLParserException {
+		validateRequired(qual, XPATH_REQ);
+		return new XMLUtil(xml).getParameterByXpath(qual);
+	}
+
+	/**
+	 * Get a string value from an xml document held in a buffer
+	 * 
+	 * @param qual an xpath statement
+	 * @param xml  a buffer holding an xml document
+	 * @return String
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static String getParameterByXpath(final String qual, final ByteBuffer xml) throws XMLParserException {
+		validateRequired(qual, XPATH_REQ);
+		return new XMLUtil(xml).getParameterByXpath(qual);
+	}
+
+	/**
+	 * Get a string value from an xml document read from a stream
+	 * 
+	 * @param qual an xpath statement
+	 * @param in   a stream of an xml document, not closed
+	 * @return String
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static String getParameterByXpath(final String qual, final InputStream in) throws XMLParserException {
+		validateRequired(qual, XPATH_REQ);
+		return new XMLUtil(in).getParameterByXpath(qual);
+	}
+
+	/**
+	 * Get a string value from a JAXP Source
+	 * 
+	 * @param qual   an xpath statement
+	 * @param source an xml source
+	 * @return String
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static String getParameterByXpath(final String qual, final Source source) throws XMLParserException {
+		validateRequired(qual, XPATH_REQ);
+		return new XMLUtil(source).getParameterByXpath(qual);
+	}
+
+	/**
+	 * Returns a string list of all the nodes of a file matching the xpath
+	 * 
+	 * @param qual String representation of an xpath query statement
+	 * @param file the file to search
+	 * @return List&lt;String&gt; of values found for the xpath statement
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static List<String> getListParametersByXpath(final String qual, final Path file)
+			throws XMLParserException {
+		if (file == null)
+			throw new XMLParserException(FILE_REQ);
+		return getListParametersByXpath(qual, file.toString());
+	}
+
+	/**
+	 * Returns a string list of all the nodes of a document held in a byte
+	 * array matching the xpath
+	 * 
+	 * @param qual String representation of an xpath query statement
+	 * @param xml  the bytes of an xml document
+	 * @return List&lt;String&gt; of values found for the xpath statement
+	 * @throws XMLParserException when inputs are invalid or there is an error
+	 *                            processing the search
+	 */
+	public static List<String> getListParametersByXpath(final String qual, final byte[] xml)
+			throws XMLParserException {
+		validateRequired(qual, XPATH_REQ);
+		return new XMLUtil(xml).getListParametersByXpath(qual);
 	}
 
 	/**
-	 * Returns a string list of all the matching nodes specified by the qual input
-	 * parameter.
+	 * Returns a string list of all the nodes of a document held in a buffer
+	 * matching the xpath
 	 * 
-	 * @param qual  String representation of an xpath query statement
-	 * @param fName The document path/name to search
+	 * @param qual String representation of an xpath query statement
+	 * @param xml  a buffer holding an xml document
 	 * @return List&lt;String&gt; of values found for the xpath statement
 	 * @throws XMLParserException when inputs are invalid or there is an error
 	 *                            processing the search
 	 */
-	public static List<String> getListParametersByXpath(final String qual, final String fName)
+	public static List<String> getListParametersByXpath(final String qual, final ByteBuffer xml)
 			throws XMLParserException {
-		try {
-			final List<String> s = new ArrayList<String>();
-			final NodeList nodes = (NodeList) getExpression(qual)
-					.evaluate(getDocument(fName), XPathConstants.NODESET);
-			for (int i = 0; i < nodes.getLength(); i++) {
-				String txt = null;
-				if ((txt = nodes.item(i).getTextContent()) != null) {
-					s.add(txt);
-				}
-			}
-			return s;
-		} catch (final XPathExpressionException e) {
-			throw new XMLParserException(XPATH_MSG, e);
-		}
-	}
-
-	private static void validateRequired(String value, String msg) throws XMLParserException {
-		if (value == null || value == "")
-			throw new XMLParserException(msg);
+		validateRequired(qual, XPATH_REQ);
+		return new XMLUtil(xml).getListParametersByXpath(qual);
 	}
 
 	/**
-	 * Returns a NodeList of all the matching nodes specified by the qual input
-	 * parameter.
+	 * Returns a string list of all the nodes of a document read from a stream
+	 * matching the xpath
 	 * 
-	 * @param qual  String representation of an xpath query statement
-	 * @param fName The document path/name to search
-	 * @return org.w3c.dom.NodeList
+	 * @param qual String representation of an xpath query statement
+	 * @param in   a stream of an xml document, not closed
+	 * @return List&lt;String&gt; of values found for the xpath statement
 	 * @throws XMLParserException when inputs are invalid or there is an error
 	 *                            processing the search
 	 */
-	public static NodeList getNodeListByXpath(final String qual, final String fName) throws XMLParserException {
-		try {
-			return (NodeList) getExpression(qual).evaluate(getDocument(fName), XPathConstants.NODESET);
-		} catch (final XPathExpressionException e) {
-			throw new XMLParserException(XPATH_MSG, e);
-		}
+	public static List<String> getListParametersByXpath(final String qual, final InputStream in)
+			throws XMLParserException {
+		validateRequired(qual, XPATH_REQ);
+		return new XMLUtil(in).getListParametersByXpath(qual);
 	}
 
 	/**
-	 * Get a NodeList result from an xpath search of an item object
+	 * Returns a string list of all the nodes of a JAXP Source matching the
+	 * xpath
 	 * 
-	 * @param qual an xpath query string
-	 * @param item an xml object
-	 * @return org.w3c.dom.NodeList
+	 * @param qual   String representation of an xpath query statement
+	 * @param source an xml source
+	 * @return List&lt;String&gt; of values found for the xpath statement
 	 * @throws XMLParserException when inputs are invalid or there is an error
 	 *                            processing the search
 	 */
-	public static NodeList getNodeListFromNodeByXpath(final String qual, final Node item)
+	public static List<String> getListParametersByXpath(final String qual, final Source source)
 			throws XMLParserException {
 		validateRequired(qual, XPATH_REQ);
-		if (item == null)
-			throw new XMLParserException("An XML object is required!");
-		try {
-			return (NodeList) getExpression(qual).evaluate(item, XPathConstants.NODESET);
-		} catch (final XPathExpressionException e) {
-			throw new XMLParserException(XPATH_MSG, e);
-		}
+		return new XMLUtil(source).getListParametersByXpath(qual);
 	}
 
 	/**
@@ -331,20 +1261,16 @@ public class XMLUtil {
 	 */
 	public static String getParameterByXpath(final String qual, final String fName) throws XMLParserException {
 		try {
-			final Node result = (Node) getExpression(qual).evaluate(getDocument(fName), XPathConstants.NODE);
-			return result != null ? result.getTextContent() : null;
+			final Document d = loadDocument(fName);
+			synchronized (d) {
+				final Node result = (Node) evaluate(qual, null, d, XPathConstants.NODE, null);
+				return result != null ? result.getTextContent() : null;
+			}
 		} catch (final XPathExpressionException e) {
 			throw new XMLParserException(XPATH_MSG, e);
 		}
 	}
 
-	// Construct an XPathExpression using just an xpath string
-	private static XPathExpression getExpression(final String qual) throws XPathExpressionException {
-		final XPathFactory factory = XPathFactory.newInstance();
-		final XPath xpath = factory.newXPath();
-		return xpath.compile(qual);
-	}
-
 	/**
 	 * Returns the value of the node found using the specified tag.
 	 * Used for 1 and only 1 key:value pair. If more than one node exists
@@ -357,15 +1283,21 @@ public class XMLUtil {
 	 *                            processing the search
 	 */
 	public static String getParameterByTag(final String tag, final String fName) throws XMLParserException {
-		final NodeList nl = getDocument(fName).getElementsByTagName(tag);
-		if (nl.item(0) != null && nl.item(0).getFirstChild() != null)
-			return nl.item(0).getFirstChild().getNodeValue();
+		if (useStreaming(fName))
+			return XMLStreamUtil.getParameterByTag(tag, fName);
+		final Document d = loadDocument(fName);
+		synchronized (d) {
+			final NodeList nl = d.getElementsByTagName(tag);
+			if (nl.item(0) != null && nl.item(0).getFirstChild() != null)
+				return nl.item(0).getFirstChild().getNodeValue();
+		}
 		return null;
 	}
 
 	/**
 	 * Returns the node(s) found using the specified tag.
-	 * Used for more than 1 key:value pairs.
+	 * Used for more than 1 key:value pairs. When the document cache is enabled
+	 * the nodes belong to the shared cached document and must not be modified.
 	 * 
 	 * @param tag   the tag of the xml element node(s) to return.
 	 * @param fName the file to parse
@@ -375,11 +1307,53 @@ public class XMLUtil {
 	 *                            processing the search
 	 */
 	public static NodeList getNodeListByTag(final String tag, final String fName) throws XMLParserException {
-		NodeList nl = getDocument(fName).getElementsByTagName(tag);
-		if (nl.getLength() > 0 && nl.item(0).hasChildNodes()) {
-			return nl.item(0).getChildNodes();
+		if (useStreaming(fName))
+			return XMLStreamUtil.getNodeListByTag(tag, fName);
+		final Document d = loadDocument(fName);
+		synchronized (d) {
+			return getNodeListByTag(tag, d);
 		}
-		return null;
+	}
+
+	// the nodes of a list read while the document is locked, so callers can
+	// read them after the lock is released
+	private static NodeList copyOf(final NodeList nl) {
+		final List<Node> nodes = new ArrayList<Node>(nl.getLength());
+		for (int i = 0; i < nl.getLength(); i++)
+			nodes.add(nl.item(i));
+		return new SelectedNodes(nodes);
+	}
+
+	// children of the first element matching the tag or null. The children
+	// are copied by walking the siblings: reading the live list returned by
+	// getChildNodes() updates a cache in the parent, which is not safe when
+	// the document is shared by several threads
+	private static NodeList getNodeListByTag(final String tag, final Document d) {
+		final NodeList nl = d.getElementsByTagName(tag);
+		final Node first = nl.item(0);
+		if (first == null || !first.hasChildNodes())
+			return null;
+		final List<Node> children = new ArrayList<Node>();
+		for (Node c = first.getFirstChild(); c != null; c = c.getNextSibling())
+			children.add(c);
+		return new SelectedNodes(children);
+	}
+
+	/**
+	 * Streams the file and returns every element with the specified tag as a
+	 * small detached DOM, one record at a time. Use this instead of
+	 * getNodeListByXpath for large files made of repeating records. The
+	 * stream must be closed if it is not read to the end.
+	 * 
+	 * @param tag   the tag of the repeating record elements
+	 * @param fName the file to parse
+	 * @return Stream&lt;Node&gt; of record elements
+	 * @throws XMLParserException when inputs are invalid or the file cannot be
+	 *                            opened
+	 * @see XMLRecordReader
+	 */
+	public static Stream<Node> streamRecords(final String tag, final String fName) throws XMLParserException {
+		return XMLRecordReader.open(tag, fName).stream();
 	}
 
 	/**
@@ -394,15 +1368,20 @@ public class XMLUtil {
 	 */
 	public static List<String> getListParametersByTag(final String tag, final String fName)
 			throws XMLParserException {
+		if (useStreaming(fName))
+			return XMLStreamUtil.getListParametersByTag(tag, fName);
 		List<String> ls = new ArrayList<String>();
-		final NodeList nl = getDocument(fName).getElementsByTagName(tag);
-		if (nl.getLength() > 0) {
-			String tmp = null;
-			for (int i = 0; i < nl.getLength(); i++) {
-				NamedNodeMap atts = nl.item(i).getAttributes();
-				tmp = atts.getLength() > 0 ? atts.item(0).getNodeValue() : null;
-				if (tmp != null) {
-					ls.add(tmp);
+		final Document d = loadDocument(fName);
+		synchronized (d) {
+			final NodeList nl = d.getElementsByTagName(tag);
+			if (nl.getLength() > 0) {
+				String tmp = null;
+				for (int i = 0; i < nl.getLength(); i++) {
+					NamedNodeMap atts = nl.item(i).getAttributes();
+					tmp = atts.getLength() > 0 ? atts.item(0).getNodeValue() : null;
+					if (tmp != null) {
+						ls.add(tmp);
+					}
 				}
 			}
 		}
@@ -423,8 +1402,10 @@ public class XMLUtil {
 	public List<String> getparametersByTagNS(final String tag, final String namespace) throws XMLParserException {
 		validateRequired(tag, TAG_REQ);
 		validateRequired(namespace, NS_REQ);
+		if (compact != null)
+			return compact.firstChildValues(tag, namespace, false);
 		List<String> ls = new ArrayList<String>();
-		final NodeList nl = doc.getElementsByTagNameNS(namespace, tag);
+		final NodeList nl = elementsByTagNS(namespace, tag);
 		if (nl.getLength() > 0) {
 			ls = new ArrayList<String>();
 			String tmp = null;
@@ -441,6 +1422,66 @@ public class XMLUtil {
 		return ls;
 	}
 
+	/**
+	 * Streams the values getparametersByTagNS would return. The document is
+	 * searched only as far as the stream is consumed.
+	 * 
+	 * @param tag       the tag of the xml element node(s) to return.
+	 * @param namespace the namespace of the tag
+	 * @return Stream&lt;String&gt; of values
+	 * @throws XMLParserException when inputs are invalid
+	 */
+	public Stream<String> streamParametersByTagNS(final String tag, final String namespace)
+			throws XMLParserException {
+		validateRequired(tag, TAG_REQ);
+		validateRequired(namespace, NS_REQ);
+		if (compact != null)
+			return compact.firstChildValues(tag, namespace, false).stream();
+		final NodeList nl = elementsByTagNS(namespace, tag);
+		return IntStream.iterate(0, i -> nl.item(i) != null, i -> i + 1).mapToObj(nl::item)
+				.filter(Node::hasChildNodes).map(n -> n.getFirstChild().getNodeValue()).filter(Objects::nonNull);
+	}
+
+	/**
+	 * Passes each value getparametersByTagNS would return to the action,
+	 * without collecting them
+	 * 
+	 * @param tag       the tag of the xml element node(s) to return.
+	 * @param namespace the namespace of the tag
+	 * @param action    called with each value in document order
+	 * @throws XMLParserException when inputs are invalid
+	 */
+	public void forEachParameterByTagNS(final String tag, final String namespace,
+			final Consumer<? super String> action) throws XMLParserException {
+		validateAction(action);
+		streamParametersByTagNS(tag, namespace).forEach(action);
+	}
+
+	/**
+	 * Streams the value of the first attribute of every element with the
+	 * specified tag, as getListParametersByTag returns them. The file is
+	 * always streamed with StAX and read only as far as the stream is
+	 * consumed. Close the stream if it is not read to the end.
+	 * 
+	 * @param tag   the tag of the xml element node(s) to return.
+	 * @param fName the file to parse
+	 * @return Stream&lt;String&gt; of attribute values
+	 * @throws XMLParserException when inputs are invalid or the file cannot be
+	 *                            opened
+	 * @see XMLStreamUtil#streamParametersByTag(String, String)
+	 */
+	public static Stream<String> streamParametersByTag(final String tag, final String fName)
+			throws XMLParserException {
+		return XMLStreamUtil.streamParametersByTag(tag, fName);
+	}
+
+	// the elements with the tag, looked up in the index when enabled
+	private NodeList elementsByTagNS(final String namespace, final String tag) {
+		final Document d = doc;
+		final ElementIndex i = index(d);
+		return i != null ? new SelectedNodes(i.elements(namespace, tag)) : d.getElementsByTagNameNS(namespace, tag);
+	}
+
 	/**
 	 * Returns the value of the node found using the specified tag and namespace.
 	 * Used for 1 and only 1 key:value pair. If more than one node exists
@@ -453,8 +1494,12 @@ public class XMLUtil {
 	 *         or null if not found.
 	 */
 	public String getParameterByTagNS(final String tag, final String namespace) {
+		if (compact != null) {
+			final List<String> values = compact.firstChildValues(tag, namespace, true);
+			return values.isEmpty() ? null : values.get(0);
+		}
 		String x = null;
-		final NodeList nl = doc.getElementsByTagNameNS(namespace, tag);
+		final NodeList nl = elementsByTagNS(namespace, tag);
 		if (nl != null && nl.getLength() > 0 && nl.item(0) != null
 				&& nl.item(0).hasChildNodes()) {
 			x = nl.item(0).getFirstChild().getNodeValue();
@@ -477,27 +1522,12 @@ public class XMLUtil {
 			throws XMLParserException {
 		validateRequired(tag, TAG_REQ);
 		validateRequired(fName, FILE_REQ);
-		final Map<String, List<String>> map = new HashMap<String, List<String>>();
-		final NodeList nl = getNodeListByTag(tag, fName);
-		String node2 = null;
-		List<String> temp = null;
-		for (int i = 0; i < nl.getLength(); i++) {
-			while (nl.item(i).hasChildNodes()) {
-				if (nl.item(i).getFirstChild().getNodeType() == 1) {
-					while (nl.item(i).getFirstChild().hasChildNodes()) {
-						if (!nl.item(i).getFirstChild().getNodeName().equals(node2)) {
-							node2 = nl.item(i).getFirstChild().getNodeName();
-							temp = new ArrayList<String>();
-						}
-						temp.add(nl.item(i).getFirstChild().getFirstChild().getNodeValue());
-						nl.item(i).getFirstChild().removeChild(nl.item(i).getFirstChild().getFirstChild());
-					}
-					map.put(node2, temp);
-				}
-				nl.item(i).removeChild(nl.item(i).getFirstChild());
-			}
+		if (useStreaming(fName))
+			return XMLStreamUtil.getMapByTag(tag, fName);
+		final Document d = loadDocument(fName);
+		synchronized (d) {
+			return mapOf(getNodeListByTag(tag, d));
 		}
-		return map;
 	}
 
 	/**
@@ -515,36 +1545,175 @@ public class XMLUtil {
 			throws XMLParserException {
 		validateRequired(qual, XPATH_REQ);
 		validateRequired(fName, FILE_REQ);
-		final Map<String, List<String>> map = new HashMap<String, List<String>>();
-		NodeList nl;
-		Object result;
-		try {
-			result = getExpression(qual).evaluate(getDocument(fName), XPathConstants.NODESET);
-		} catch (XPathExpressionException e) {
-			throw new XMLParserException("Invalid xpath [" + qual + "]", e);
+		final Document d = loadDocument(fName);
+		synchronized (d) {
+			try {
+				return mapOf((NodeList) evaluate(qual, null, d, XPathConstants.NODESET, null));
+			} catch (XPathExpressionException e) {
+				throw new XMLParserException("Invalid xpath [" + qual + "]", e);
+			}
 		}
-		nl = (NodeList) result;
-		String node2 = null;
-		List<String> temp = null;
+	}
+
+	/**
+	 * Returns a map of key value pairs found using the specified tag, as
+	 * {@link #getMapByTag(String, String)} does for a file. The document is
+	 * not modified.
+	 * 
+	 * @param tag the tag of the xml element node(s) to return.
+	 * @return map - elements of the node name/value returned given the tag input.
+	 * @throws XMLParserException when the input is invalid
+	 */
+	public Map<String, List<String>> getMapByTag(final String tag) throws XMLParserException {
+		validateRequired(tag, TAG_REQ);
+		return mapOf(getNodeListByTag(tag, document()));
+	}
+
+	/**
+	 * Returns a map of key value pairs found using the xpath string, as
+	 * {@link #getMapByXpath(String, String)} does for a file. The document is
+	 * not modified.
+	 * 
+	 * @param qual an xpath query string
+	 * @return map - elements of the node name/value returned given the xpath.
+	 * @throws XMLParserException when the xpath is invalid or there is an error
+	 *                            processing the search
+	 */
+	public Map<String, List<String>> getMapByXpath(final String qual) throws XMLParserException {
+		return mapOf(getNodes(qual));
+	}
+
+	/**
+	 * Returns a map of key value pairs found using the xpath string and the
+	 * Namespace provided in the context parameter. The document is not
+	 * modified.
+	 * 
+	 * @param qual    an xpath query string
+	 * @param context a NamespaceContext
+	 * @return map - elements of the node name/value returned given the xpath.
+	 * @throws XMLParserException when the inputs are invalid or there is an
+	 *                            error processing the search
+	 */
+	public Map<String, List<String>> getMapByXpathNS(final String qual, final NamespaceContext context)
+			throws XMLParserException {
+		return mapOf(getNodesNS(qual, context));
+	}
+
+	// Build the map in one read-only pass with the results the original
+	// loop had when it removed the nodes as it went: for each element child
+	// of a node, every one of its child nodes adds its node value (null for
+	// elements) to the list of the child's name. Consecutive children with the
+	// same name share a list, a later run of a name replaces the earlier list
+	// and a child without content maps the previous name again. A node whose
+	// parent was mapped before it had its content consumed and adds nothing.
+	private static Map<String, List<String>> mapOf(final NodeList nl) {
+		final Map<String, List<String>> map = new HashMap<String, List<String>>();
+		if (nl == null)
+			return map;
+		final Set<Node> mapped = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		String name = null;
+		List<String> values = null;
 		for (int i = 0; i < nl.getLength(); i++) {
-			while (nl.item(i).hasChildNodes()) {
-				if (nl.item(i).getFirstChild().getNodeType() == 1) {
-					while (nl.item(i).getFirstChild().hasChildNodes()) {
-						if (!nl.item(i).getFirstChild().getNodeName().equals(node2)) {
-							node2 = nl.item(i).getFirstChild().getNodeName();
-							temp = new ArrayList<String>();
-						}
-						temp.add(nl.item(i).getFirstChild().getFirstChild().getNodeValue());
-						nl.item(i).getFirstChild().removeChild(nl.item(i).getFirstChild().getFirstChild());
+			final Node n = nl.item(i);
+			if (mapped.contains(n.getParentNode()))
+				continue;
+			mapped.add(n);
+			for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+				if (c.getNodeType() != Node.ELEMENT_NODE)
+					continue;
+				for (Node g = c.getFirstChild(); g != null; g = g.getNextSibling()) {
+					if (!c.getNodeName().equals(name)) {
+						name = c.getNodeName();
+						values = new ArrayList<String>();
 					}
-					map.put(node2, temp);
+					values.add(g.getNodeValue());
 				}
-				nl.item(i).removeChild(nl.item(i).getFirstChild());
+				map.put(name, values);
 			}
 		}
 		return map;
 	}
 
+	/**
+	 * Enable or disable the cache of parsed documents used by the static
+	 * file based methods. Disabled (null) by default.
+	 * 
+	 * @param cache the DocumentCache to use or null to parse on every call
+	 */
+	public static void setDocumentCache(final DocumentCache cache) {
+		documentCache = cache;
+	}
+
+	/**
+	 * Get the cache of parsed documents used by the static file based methods
+	 * 
+	 * @return the DocumentCache or null if caching is disabled
+	 */
+	public static DocumentCache getDocumentCache() {
+		return documentCache;
+	}
+
+	/**
+	 * Set the file size at or above which the static tag based methods stream
+	 * the file with {@link XMLStreamUtil} instead of building a DOM. Disabled
+	 * (-1) by default; can also be set with the system property
+	 * {@value #STREAMING_PROPERTY}.
+	 * 
+	 * @param bytes the threshold in bytes, 0 to always stream or -1 to never
+	 *              stream
+	 */
+	public static void setStreamingThreshold(final long bytes) {
+		streamingThreshold = bytes;
+	}
+
+	/**
+	 * Get the file size at or above which tag based lookups are streamed
+	 * 
+	 * @return the threshold in bytes or -1 if streaming is disabled
+	 */
+	public static long getStreamingThreshold() {
+		return streamingThreshold;
+	}
+
+	/**
+	 * Enable or disable the direct evaluation of simple xpaths. Enabled by
+	 * default; can also be disabled with the system property
+	 * {@value #SIMPLE_PATH_PROPERTY}.
+	 * <p>
+	 * Absolute, relative and // paths of element name steps, prefixed or *,
+	 * with an optional final attribute step and predicates of the forms [2],
+	 * [@name], [@name='value'] and [child='value'] are answered by walking the
+	 * DOM, without the overhead of the XPath engine. The results are the same
+	 * as JAXP returns. Any other xpath is evaluated with JAXP.
+	 * 
+	 * @param enabled false to evaluate every xpath with JAXP
+	 */
+	public static void setSimplePathEvaluation(final boolean enabled) {
+		simplePaths = enabled;
+	}
+
+	/**
+	 * @return true when simple xpaths are evaluated directly against the DOM
+	 */
+	public static boolean isSimplePathEvaluation() {
+		return simplePaths;
+	}
+
+	// stream local files at or above the threshold
+	private static boolean useStreaming(final String fName) {
+		final long threshold = streamingThreshold;
+		if (threshold < 0 || fName == null || fName.isEmpty())
+			return false;
+		final Path p = StaxInput.toFile(fName);
+		return p != null && p.toFile().length() >= threshold;
+	}
+
+	// parse the file or get it from the document cache when enabled
+	private static Document loadDocument(final String fileName) throws XMLParserException {
+		final DocumentCache cache = documentCache;
+		return cache != null ? cache.get(fileName) : getDocument(fileName);
+	}
+
 	/**
 	 * Returns the DOM of the xml file so that elements can be
 	 * extracted.
@@ -553,16 +1722,13 @@ public class XMLUtil {
 	 * @return DOM (Document Object Model) of the xml file
 	 * @throws XMLParserException when there is a problem parsing the file into DOM
 	 */
-	private static Document getDocument(final String fileName) throws XMLParserException {
+	static Document getDocument(final String fileName) throws XMLParserException {
 		validateRequired(fileName, FILE_REQ);
+		final XMLMetricsListener m = XMLMetrics.listener();
+		final long start = m == null ? 0L : System.nanoTime();
 		try {
-			final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-			dbf.setIgnoringComments(true);
-			dbf.setNamespaceAware(true);
-			dbf.setIgnoringElementContentWhitespace(true);
-			final DocumentBuilder db = dbf.newDocumentBuilder();
-			return db.parse(fileName);
-
+			final Document d = DocumentBuilderPool.getDefault().parse(new InputSource(fileName));
+			return m == null ? d : parsed(m, fileName, XMLMetrics.sizeOf(fileName), d, start);
 		} catch (final ParserConfigurationException e) {
 			log.error("Error parsing file");
 			throw new XMLParserException("FATAL: Invalid parser configuration", e);
@@ -575,6 +1741,90 @@ public class XMLUtil {
 		}
 	}
 
+	static Document getDocument(final Path file) throws XMLParserException {
+		if (file == null)
+			throw new XMLParserException(FILE_REQ);
+		try (InputStream in = Files.newInputStream(file)) {
+			final InputSource src = new InputSource(new BufferedInputStream(in, BUFFER_SIZE));
+			src.setSystemId(file.toUri().toString());
+			return parse(src, file.toString(), XMLMetrics.isEnabled() ? XMLMetrics.sizeOf(file) : -1L);
+		} catch (final IOException e) {
+			log.error("Unable to find/read file: " + file);
+			throw new XMLParserException("Unable to find/read file: " + file, e);
+		}
+	}
+
+	static Document getDocument(final byte[] xml) throws XMLParserException {
+		if (xml == null)
+			throw new XMLParserException(INPUT_REQ);
+		return parse(new InputSource(new ByteArrayInputStream(xml)), "byte array", xml.length);
+	}
+
+	static Document getDocument(final ByteBuffer xml) throws XMLParserException {
+		if (xml == null)
+			throw new XMLParserException(INPUT_REQ);
+		return parse(new InputSource(new ByteBufferInputStream(xml)), "byte buffer", xml.remaining());
+	}
+
+	static Document getDocument(final InputStream in) throws XMLParserException {
+		if (in == null)
+			throw new XMLParserException(INPUT_REQ);
+		// the parser closes its input, keep the caller's stream open
+		return parse(new InputSource(new FilterInputStream(in) {
+			@Override
+			public void close() {
+			}
+		}), "input stream", -1L);
+	}
+
+	static Document getDocument(final Source source) throws XMLParserException {
+		if (source == null)
+			throw new XMLParserException(INPUT_REQ);
+		if (source instanceof DOMSource && ((DOMSource) source).getNode() instanceof Document)
+			return (Document) ((DOMSource) source).getNode();
+		if (source instanceof StreamSource
+				|| source instanceof SAXSource && ((SAXSource) source).getXMLReader() == null) {
+			final InputSource src = SAXSource.sourceToInputSource(source);
+			if (src != null)
+				return parse(src, "source", -1L);
+		}
+		try {
+			final DOMResult result = new DOMResult(StaxDomBuilder.newDocument());
+			XMLSerializer.transformer().transform(source, result);
+			return (Document) result.getNode();
+		} catch (final TransformerException e) {
+			log.error("transformer error while reading source");
+			throw new XMLParserException("transformer error while reading source", e);
+		}
+	}
+
+	private static Document parse(final InputSource src, final String name, final long bytes)
+			throws XMLParserException {
+		final XMLMetricsListener m = XMLMetrics.listener();
+		final long start = m == null ? 0L : System.nanoTime();
+		try {
+			final Document d = DocumentBuilderPool.getDefault().parse(src);
+			return m == null ? d : parsed(m, name, bytes, d, start);
+		} catch (final ParserConfigurationException e) {
+			log.error("Error parsing " + name);
+			throw new XMLParserException("FATAL: Invalid parser configuration", e);
+		} catch (final SAXException e) {
+			log.error("Sax parse error.");
+			throw new XMLParserException("Sax parse error", e);
+		} catch (final IOException e) {
+			log.error("Unable to read " + name);
+			throw new XMLParserException("Unable to read " + name, e);
+		}
+	}
+
+	// report a parsed document, the nodes are counted after the parse is timed
+	private static Document parsed(final XMLMetricsListener m, final String source, final long bytes,
+			final Document d, final long start) {
+		final long nanos = System.nanoTime() - start;
+		m.documentParsed(source, bytes, XMLMetrics.countNodes(d), nanos);
+		return d;
+	}
+
 	/**
 	 * Updates an existing node with a new value in the file
 	 * or adds it if not already present
@@ -586,17 +1836,10 @@ public class XMLUtil {
 	 */
 	public void updateOrAddElement(final String xpath, final String value) throws XMLParserException {
 		validateRequired(xpath, XPATH_REQ);
-		final Node n = getNode(xpath);
-		if (n != null) {
-			// update existing node
-			n.setTextContent(value);
-			updateDocument();
-		} else {
-			// add new element
-			final String parent = xpath.substring(0, xpath.lastIndexOf("/"));
-			final String nodeName = xpath.substring(xpath.lastIndexOf("/") + 1, xpath.length());
-			addElement(parent, nodeName, value);
-			updateDocument();
+		synchronized (writeLock) {
+			final Document target = workingCopy();
+			updateOrAddElement(target, xpath, value);
+			publish(target);
 		}
 	}
 
@@ -608,32 +1851,105 @@ public class XMLUtil {
 	 *                            processing the deletion
 	 */
 	public void removeNode(final String xpath) throws XMLParserException {
-		final Node n = getNode(xpath);
+		synchronized (writeLock) {
+			final Document target = workingCopy();
+			if (removeNode(target, xpath))
+				publish(target);
+		}
+	}
+
+	/**
+	 * Start an edit session. Edits made through the session are collected in
+	 * memory and applied together, with a single write of the file, when the
+	 * session is committed.
+	 * 
+	 * @return a new XMLEditSession for this document
+	 */
+	public XMLEditSession edit() {
+		return new XMLEditSession(this);
+	}
+
+	// apply the edits of a session and write the file once if anything changed.
+	// The edits are made on a copy in every mode, so a failed edit or write
+	// leaves the current document as it was
+	void apply(final List<XMLEditSession.Edit> edits) throws XMLParserException {
+		synchronized (writeLock) {
+			final Document target = workingCopy(true);
+			boolean changed = false;
+			for (final XMLEditSession.Edit e : edits)
+				changed |= e.apply(target);
+			if (changed)
+				publish(target);
+		}
+	}
+
+	// the document writers modify: the live one, or a copy in thread-safe mode
+	private Document workingCopy() throws XMLParserException {
+		return workingCopy(threadSafe);
+	}
+
+	private Document workingCopy(final boolean copy) throws XMLParserException {
+		if (compact != null)
+			throw new XMLParserException("A compact document is read-only!");
+		if (copy)
+			return (Document) doc.cloneNode(true);
+		index = null;
+		return doc;
+	}
+
+	// write a modified document to the file and make it current
+	private void publish(final Document target) throws XMLParserException {
+		if (threadSafe)
+			expand(target);
+		updateDocument(target);
+		doc = target;
+		index = null;
+	}
+
+	static void updateOrAddElement(final Document target, final String xpath, final String value)
+			throws XMLParserException {
+		final Node n = getNode(target, xpath);
+		if (n != null) {
+			// update existing node
+			n.setTextContent(value);
+		} else {
+			// add new element
+			final String parent = xpath.substring(0, xpath.lastIndexOf("/"));
+			final String nodeName = xpath.substring(xpath.lastIndexOf("/") + 1, xpath.length());
+			addElement(target, parent, nodeName, value);
+		}
+	}
+
+	static boolean removeNode(final Document target, final String xpath) throws XMLParserException {
+		final Node n = getNode(target, xpath);
 		if (n != null) {
 			Node parent = n.getParentNode();
 			parent.removeChild(n);
-			updateDocument();
+			return true;
 		}
+		return false;
 	}
 
 	/**
 	 * Adds an element with a text node (value)
 	 * 
-	 * @param xpath the xpath for the parent node where node to be added
-	 * @param name  the name of the new node
-	 * @param value the value to add (not required)
+	 * @param target the document to modify
+	 * @param xpath  the xpath for the parent node where node to be added
+	 * @param name   the name of the new node
+	 * @param value  the value to add (not required)
 	 * @return Node
 	 * @throws XMLParserException when inputs are invalid or there is an error
 	 *                            processing the request
 	 */
-	private Node addElement(final String xpath, final String name, final String value) throws XMLParserException {
+	static Node addElement(final Document target, final String xpath, final String name,
+			final String value) throws XMLParserException {
 		validateRequired(xpath, XPATH_REQ);
 		validateRequired(name, "A node name is required");
 		validateRequired(value, "A value is required");
-		Node n = getNode(xpath);
+		Node n = getNode(target, xpath);
 		if (n != null) {
-			n = n.appendChild(doc.createElement(name));
-			n.appendChild(doc.createTextNode(value));
+			n = n.appendChild(target.createElement(name));
+			n.appendChild(target.createTextNode(value));
 		} else {
 			log.warn("addElement() parent not found at [" + xpath + "]");
 		}
@@ -641,25 +1957,98 @@ public class XMLUtil {
 	}
 
 	/**
-	 * Updates the xml configuration file DOM with an updated DOM.
+	 * Updates the xml configuration file DOM with an updated DOM. A local file
+	 * is written to a temp file in the same directory that then replaces it,
+	 * so a failed write never leaves a truncated file behind.
 	 * 
-	 * @param Document doc
-	 * @return void
+	 * @param target the document to write
 	 * @throws XMLParserException
 	 */
-	private void updateDocument() throws XMLParserException {
+	private void updateDocument(final Document target) throws XMLParserException {
 		validateRequired(fileName, FILE_REQ);
+		final XMLMetricsListener m = XMLMetrics.listener();
+		final long start = m == null ? 0L : System.nanoTime();
+		final Path file = toWritablePath(fileName);
+		if (file == null) {
+			XMLSerializer.serialize(target, new StreamResult(fileName), outputOptions);
+			if (m != null)
+				m.documentWritten(fileName, -1L, System.nanoTime() - start);
+			return;
+		}
+		Path tmp = null;
 		try {
-			final Source source = new DOMSource(doc);
-			final StreamResult result = new StreamResult(fileName);
-			final Transformer xformer = TransformerFactory.newInstance().newTransformer();
-			xformer.transform(source, result);
-		} catch (final TransformerConfigurationException e) {
-			log.error("transformer configuration error while writing to file: " + e);
-			throw new XMLParserException("transformer configuration error while writing to file", e);
-		} catch (final TransformerException e) {
-			log.error("transformer error while writing to file", e);
-			throw new XMLParserException("transformer error while writing to file", e);
+			tmp = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+			copyPermissions(file, tmp);
+			try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+					OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch),
+							XMLSerializer.BUFFER_SIZE)) {
+				XMLSerializer.serialize(target, out, outputOptions);
+				out.flush();
+				ch.force(true);
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			tmp = null;
+			if (m != null)
+				m.documentWritten(fileName, XMLMetrics.sizeOf(file), System.nanoTime() - start);
+		} catch (final IOException e) {
+			log.error("io error while writing to file", e);
+			throw new XMLParserException("io error while writing to file: " + fileName, e);
+		} finally {
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (final IOException e) {
+					log.debug("Unable to delete temp file " + tmp, e);
+				}
+			}
+		}
+	}
+
+	// the absolute path of a local file name, or null for urls. A scheme of
+	// one letter is taken as a windows drive
+	static Path toWritablePath(final String fName) {
+		if (URL_SCHEME.matcher(fName).lookingAt() && !fName.regionMatches(true, 0, "file:", 0, 5))
+			return null;
+		try {
+			final Path p = fName.regionMatches(true, 0, "file:", 0, 5) ? Paths.get(URI.create(fName))
+					: Paths.get(fName);
+			return p.toAbsolutePath();
+		} catch (final IllegalArgumentException | FileSystemNotFoundException e) {
+			return null;
+		}
+	}
+
+	// keep the mode of the file being replaced where the file system has one
+	private static void copyPermissions(final Path from, final Path to) {
+		try {
+			if (Files.exists(from))
+				Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+		} catch (final UnsupportedOperationException | IOException e) {
+			log.debug("Unable to copy permissions of " + from, e);
+		}
+	}
+
+	// the nodes found by a simple path
+	private static final class SelectedNodes implements NodeList {
+		private final List<Node> nodes;
+
+		SelectedNodes(final List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		public Node item(final int index) {
+			return index >= 0 && index < nodes.size() ? nodes.get(index) : null;
+		}
+
+		@Override
+		public int getLength() {
+			return nodes.size();
 		}
 	}
 }
@@ -0,0 +1,197 @@
+package com.edrpub.xml.reader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * A bounded LRU cache of compiled XPathExpressions keyed by the expression
+ * text and the NamespaceContext it was compiled with.
+ * <p>
+ * Neither XPath nor XPathExpression is thread-safe, so every thread keeps its
+ * own XPath instance and its own map of compiled expressions. The size limit
+ * and the hit/miss counters are shared by all threads. The default size can
+ * be set with the system property {@value #SIZE_PROPERTY}; a size of 0
+ * disables caching.
+ * <p>
+ * Namespace contexts are compared with equals(), which for most
+ * implementations means identity. Reuse the same context instance, or use
+ * {@link NamespaceBindings}, which compare by their bindings, to get cache hits
+ * on namespace aware queries.
+ */
+public final class XPathCache {
+	/** System property used to override the default cache size */
+	public static final String SIZE_PROPERTY = "com.edrpub.xml.xpathCacheSize";
+	/** Default number of compiled expressions kept per thread */
+	public static final int DEFAULT_MAX_SIZE = 256;
+	private static final XPathCache DEFAULT = new XPathCache(Integer.getInteger(SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final AtomicInteger generation = new AtomicInteger();
+	private final ThreadLocal<Local> local = ThreadLocal.withInitial(Local::new);
+	private volatile int maxSize;
+
+	/**
+	 * Create a cache holding at most maxSize expressions per thread
+	 *
+	 * @param maxSize the maximum number of compiled expressions per thread
+	 */
+	public XPathCache(final int maxSize) {
+		setMaxSize(maxSize);
+	}
+
+	/**
+	 * Get the cache shared by XMLUtil
+	 *
+	 * @return the default XPathCache
+	 */
+	public static XPathCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Get a compiled expression for the xpath and namespace context, compiling
+	 * it on a cache miss. The returned expression must only be used on the
+	 * calling thread.
+	 *
+	 * @param qual    an xpath query string
+	 * @param context a NamespaceContext or null for none
+	 * @return a compiled XPathExpression
+	 * @throws XPathExpressionException if the xpath cannot be compiled
+	 */
+	public XPathExpression compile(final String qual, final NamespaceContext context)
+			throws XPathExpressionException {
+		final Local l = local.get();
+		final int gen = generation.get();
+		if (l.generation != gen) {
+			l.expressions.clear();
+			l.generation = gen;
+		}
+		final Key key = new Key(qual, context);
+		XPathExpression expr = l.expressions.get(key);
+		if (expr != null) {
+			hits.increment();
+			return expr;
+		}
+		misses.increment();
+		l.xpath.reset();
+		if (context != null)
+			l.xpath.setNamespaceContext(context);
+		expr = l.xpath.compile(qual);
+		final int max = maxSize;
+		if (max > 0) {
+			l.expressions.put(key, expr);
+			trim(l.expressions, max);
+		}
+		return expr;
+	}
+
+	// drop the least recently used entries until the map fits
+	private static void trim(final Map<Key, XPathExpression> map, final int max) {
+		final Iterator<Key> it = map.keySet().iterator();
+		while (map.size() > max && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Discard the compiled expressions of every thread. Other threads drop
+	 * their entries the next time they use the cache.
+	 */
+	public void clear() {
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * Set the maximum number of compiled expressions kept per thread.
+	 *
+	 * @param maxSize the new size, 0 disables caching
+	 */
+	public void setMaxSize(final int maxSize) {
+		if (maxSize < 0)
+			throw new IllegalArgumentException("Cache size must not be negative");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the maximum number of compiled expressions kept per thread
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of expressions cached for the calling thread
+	 */
+	public int size() {
+		final Local l = local.get();
+		return l.generation == generation.get() ? l.expressions.size() : 0;
+	}
+
+	/**
+	 * @return the number of lookups served from the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that required a compile
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Reset the hit and miss counters
+	 */
+	public void resetStatistics() {
+		hits.reset();
+		misses.reset();
+	}
+
+	// per thread XPath and compiled expressions
+	private static final class Local {
+		private final XPath xpath = XPathFactory.newInstance().newXPath();
+		private final Map<Key, XPathExpression> expressions = new LinkedHashMap<>(16, 0.75f, true);
+		private int generation;
+	}
+
+	private static final class Key {
+		private final String qual;
+		private final NamespaceContext context;
+		private final int hash;
+
+		private Key(final String qual, final NamespaceContext context) {
+			this.qual = qual;
+			this.context = context;
+			this.hash = 31 * qual.hashCode() + Objects.hashCode(context);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof Key))
+				return false;
+			final Key k = (Key) o;
+			return qual.equals(k.qual) && Objects.equals(context, k.context);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.edrpub.xml.reader;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * A prepared xpath query bound to a set of {@link NamespaceBindings}.
+ * <p>
+ * The xpath is checked and compiled when the query is created, so an invalid
+ * xpath or an unbound prefix is reported once up front. Each thread then keeps
+ * its own compiled expression for the life of the query, instead of looking
+ * it up on every call. A query is immutable and safe to share between threads;
+ * pass it to the XPathQuery methods of {@link XMLUtil}, such as
+ * {@link XMLUtil#getParameter(XPathQuery)}.
+ */
+public final class XPathQuery {
+	private final String xpath;
+	private final NamespaceBindings bindings;
+	// null when the xpath is not a simple path
+	private final SimplePath path;
+	private final ThreadLocal<XPathExpression> expression;
+
+	/**
+	 * Prepare a query
+	 *
+	 * @param xpath    an xpath query string
+	 * @param bindings the prefixes used by the xpath, null for none
+	 * @throws XMLParserException when the xpath is invalid
+	 */
+	public XPathQuery(final String xpath, final NamespaceBindings bindings) throws XMLParserException {
+		XMLUtil.validateRequired(xpath, "An xpath qual is required!");
+		this.xpath = xpath;
+		this.bindings = bindings != null ? bindings : NamespaceBindings.EMPTY;
+		this.path = SimplePath.parse(xpath);
+		final XPathExpression compiled;
+		try {
+			compiled = compile();
+		} catch (final XPathExpressionException e) {
+			throw new XMLParserException("Invalid xpath [" + xpath + "]", e);
+		}
+		final Thread owner = Thread.currentThread();
+		this.expression = ThreadLocal.withInitial(() -> {
+			if (Thread.currentThread() == owner)
+				return compiled;
+			try {
+				return compile();
+			} catch (final XPathExpressionException e) {
+				// compiled once already, so this cannot happen
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private XPathExpression compile() throws XPathExpressionException {
+		return XPathCache.getDefault().compile(xpath, bindings);
+	}
+
+	/**
+	 * @return the xpath query string
+	 */
+	public String getXpath() {
+		return xpath;
+	}
+
+	/**
+	 * @return the namespace bindings of the query
+	 */
+	public NamespaceBindings getBindings() {
+		return bindings;
+	}
+
+	// the simple path form of the xpath or null
+	SimplePath path() {
+		return path;
+	}
+
+	// the compiled expression of the calling thread
+	XPathExpression expression() {
+		return expression.get();
+	}
+
+	@Override
+	public String toString() {
+		return xpath;
+	}
+}
@@ -0,0 +1,123 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+
+import org.junit.jupiter.api.Test;
+
+import com.edr.test.TestNamespace;
+
+public class CompactDocumentTest extends XMLTest {
+    private static final String MIXED = "<?xml version=\"1.0\"?><?top data?>"
+            + "<r xmlns:a=\"urn:a\" id=\"1\"><!-- c --><x>one<!-- c -->two<![CDATA[<3>]]>four</x>"
+            + "<x a:k=\"v\"><?pi some data?>five</x><x><y>six</y>seven</x><a:x>eight &amp; nine</a:x>"
+            + "<x><![CDATA[ten]]></x><x/><z><x k=\"v\">eleven</x></z></r>";
+
+    private static final String[] XPATHS = {
+            "/bookstore/book/title", "//book[@category='WEB']/author", "//book[3]/author[2]",
+            "/bookstore/book[@category=\"CHILDREN\"]/title/@lang", "//book[year='2005']/price", "//title[@lang]",
+            "//mybook/edition/version", "//*[2]", "/bookstore/*/title", "//editableBook/version", "//missing",
+            "/main/serviceUrl", "//attachments/getContent", "//retryIntervalExtended", "/main/*",
+            "//soapenv:Body/ns1:findServerRefsResponse/findServerRefsReturn/item/@href", "//ns1:Id",
+            "//multiRef[@id='id1']/name", "//multiRef/id/@xsi:type", "//findJobRefsReturn/item/@href",
+            "//multiRef[id='120420001']/@id", "//item[2]/@href", "//r/x", "/r/x[2]/@a:k", "//x", "//x[1]",
+            "//x[@k='v']", "/r/a:x", "/r/@id", "//y", "//z/x/@k", "/r", "//x[@a:k]", "//x[5]", "//x[0]",
+            "count(//book)", "//book[last()]/title", "//x/text()", "/", "//missing:x" };
+
+    @Test
+    void testMatchesDom() throws Exception {
+        final XMLUtil mixedDom = new XMLUtil(MIXED.getBytes(StandardCharsets.UTF_8));
+        final XMLUtil mixedCompact = new XMLUtil(
+                CompactDocument.parse(new ByteArrayInputStream(MIXED.getBytes(StandardCharsets.UTF_8))));
+        final TestNamespace context = new TestNamespace();
+        context.addNamespaceDef("a", "urn:a");
+        compare(mixedDom, mixedCompact, context);
+        for (final String f : new String[] { FILEBOOKS, FILENONS, FILENS, FILE_JOBREF }) {
+            final XMLUtil dom = new XMLUtil(f);
+            final XMLUtil compact = new XMLUtil(CompactDocument.parse(f));
+            compare(dom, compact, ns);
+        }
+    }
+
+    private void compare(final XMLUtil dom, final XMLUtil compact, final NamespaceContext context)
+            throws XMLParserException {
+        for (final String xpath : XPATHS) {
+            final boolean prefixed = xpath.contains(":") && !xpath.startsWith("//missing");
+            final List<String> expected;
+            try {
+                expected = prefixed ? dom.getListParametersByXpathNS(xpath, context)
+                        : dom.getListParametersByXpath(xpath);
+            } catch (final XMLParserException e) {
+                assertThrows(XMLParserException.class, () -> compact.getListParametersByXpathNS(xpath, context),
+                        xpath);
+                assertThrows(XMLParserException.class, () -> compact.getParameterByXpath(xpath), xpath);
+                continue;
+            }
+            if (prefixed) {
+                assertEquals(expected, compact.getListParametersByXpathNS(xpath, context), xpath);
+                assertEquals(dom.getParameterByXpathNS(xpath, context),
+                        compact.getParameterByXpathNS(xpath, context), xpath);
+            } else {
+                assertEquals(expected, compact.getListParametersByXpath(xpath), xpath);
+                assertEquals(dom.getParameterByXpath(xpath), compact.getParameterByXpath(xpath), xpath);
+            }
+        }
+        for (final String[] tag : new String[][] { { "*", "*" }, { "x", "*" }, { "x", "urn:a" }, { "Id", "*" },
+                { "Id", "http://server.opsware.com" }, { "title", "*" }, { "book", "*" }, { "x", "urn:none" } }) {
+            assertEquals(dom.getparametersByTagNS(tag[0], tag[1]), compact.getparametersByTagNS(tag[0], tag[1]));
+            assertEquals(dom.getParameterByTagNS(tag[0], tag[1]), compact.getParameterByTagNS(tag[0], tag[1]));
+        }
+        assertEquals(dom.getParameterByTagNS("x", null), compact.getParameterByTagNS("x", null));
+    }
+
+    @Test
+    void testSimplePathSwitch() throws Exception {
+        final XMLUtil compact = new XMLUtil(
+                CompactDocument.parse(new ByteArrayInputStream(MIXED.getBytes(StandardCharsets.UTF_8))));
+        final XPathQuery query = new XPathQuery("//z/x", NamespaceBindings.EMPTY);
+        final List<String> all = compact.getListParametersByXpath("//x");
+        final List<String> prepared = compact.getListParameters(query);
+        final XMLMetricsCollector metrics = new XMLMetricsCollector();
+        XMLMetrics.setListener(metrics);
+        try {
+            compact.getListParametersByXpath("//x");
+            compact.getListParameters(query);
+            // answered from the compact form without an xpath evaluation
+            assertEquals(0, metrics.getXpathCount());
+            XMLUtil.setSimplePathEvaluation(false);
+            assertEquals(all, compact.getListParametersByXpath("//x"));
+            assertEquals(prepared, compact.getListParameters(query));
+            assertEquals(2, metrics.getXpathCount());
+        } finally {
+            XMLUtil.setSimplePathEvaluation(true);
+            XMLMetrics.setListener(null);
+        }
+    }
+
+    @Test
+    void testCompactForm() throws Exception {
+        final CompactDocument d = CompactDocument.parse(FILE_JOBREF);
+        final XMLUtil util = new XMLUtil(d);
+        assertTrue(util.isThreadSafe());
+        assertTrue(d.getNodeCount() > 100);
+        assertTrue(d.getEstimatedBytes() > 0);
+        assertEquals(new XMLUtil(FILE_JOBREF).getNodeListByXpathNS("//multiRef", ns).getLength(),
+                new XMLUtil(d.toDocument()).getNodeListByXpathNS("//multiRef", ns).getLength());
+        assertEquals(21, util.getNodeListByXpath("//findJobRefsReturn/item").getLength());
+        assertEquals("#id3", util.getParametersByXpath(Map.of("h", "//item[4]/@href")).get("h"));
+        assertThrows(XMLParserException.class, () -> util.updateOrAddElement("//item", "x"));
+        assertThrows(XMLParserException.class, () -> util.removeNode("//item"));
+        assertThrows(XMLParserException.class, () -> new XMLUtil((CompactDocument) null));
+        assertThrows(XMLParserException.class, () -> CompactDocument.parse("missing.xml"));
+        assertNull(util.getParameterByXpath("//nothing"));
+    }
+}
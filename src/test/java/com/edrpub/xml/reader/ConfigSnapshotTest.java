@@ -0,0 +1,85 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ConfigSnapshotTest extends XMLTest {
+
+    @Test
+    void testSnapshot() throws XMLParserException {
+        final XMLReadUtil reader = new XMLReadUtil(FILENONS);
+        final ConfigSnapshot.Spec spec = new ConfigSnapshot.Spec();
+        final ConfigSnapshot.IntKey retries = spec.requiredInt("maxRetries", "/main/maxRetries");
+        final ConfigSnapshot.IntKey threads = spec.optionalInt("threads", "/main/threads", 3);
+        final ConfigSnapshot.LongKey extended = spec.requiredLong("extended", "/main/retryIntervalExtended");
+        final ConfigSnapshot.BooleanKey debug = spec.optionalBoolean("debug", "/main/debug", true);
+        final ConfigSnapshot.Key<String> mode = spec.requiredString("mode", "/main/authenticationMode");
+        final ConfigSnapshot.Key<String> none = spec.optionalString("none", "/main/none", null);
+        final ConfigSnapshot.Key<Duration> interval = spec.requiredDuration("interval", "/main/retryInterval",
+                ChronoUnit.SECONDS);
+        final ConfigSnapshot.Key<List<String>> attachments = spec.list("attachments", "/main/attachments/*");
+        final ConfigSnapshot config = reader.snapshot(spec);
+        assertAll(
+                () -> assertEquals(reader.getRequiredInt("maxRetries", "/main/maxRetries"), config.get(retries)),
+                () -> assertEquals(3, config.get(threads)),
+                () -> assertEquals(300L, config.get(extended)),
+                () -> assertTrue(config.get(debug)),
+                () -> assertEquals("BASIC", config.get(mode)),
+                () -> assertNull(config.get(none)),
+                () -> assertEquals(Duration.ofSeconds(5), config.get(interval)),
+                () -> assertEquals(reader.getListParameters("/main/attachments/*"), config.get(attachments)),
+                () -> assertEquals(5, config.get("maxRetries")),
+                () -> assertEquals("maxRetries", retries.getName()),
+                () -> assertEquals("interval", interval.getName()),
+                () -> assertEquals(spec.getNames(), List.copyOf(config.asMap().keySet())),
+                () -> assertThrows(UnsupportedOperationException.class, () -> config.get(attachments).clear()));
+        assertEquals(config.asMap(), reader.snapshot(spec).asMap());
+        assertThrows(XMLParserException.class, () -> config.get("other"));
+        assertThrows(XMLParserException.class, () -> spec.requiredInt("late", "/main/late"));
+        assertThrows(IllegalArgumentException.class,
+                () -> config.get(new ConfigSnapshot.Spec().requiredInt("maxRetries", "/main/maxRetries")));
+    }
+
+    @Test
+    void testValidation() throws XMLParserException {
+        final ConfigSnapshot.Spec spec = new ConfigSnapshot.Spec();
+        spec.requiredInt("url", "/main/serviceUrl");
+        spec.requiredInt("missing", "/main/missing");
+        spec.requiredBoolean("mode", "/main/authenticationMode");
+        spec.requiredDuration("zone", "/main/timezoneServer", ChronoUnit.SECONDS);
+        spec.requiredString("other", "/main/other");
+        final XMLParserException e = assertThrows(XMLParserException.class,
+                () -> new XMLReadUtil(FILENONS).snapshot(spec));
+        assertEquals("Parameters [missing, other] are required but not found!"
+                + " Parameter [url] is invalid. Must be an integer"
+                + " Parameter [mode] is invalid. Must be true or false"
+                + " Parameter [zone] is invalid. Must be a duration", e.getMessage());
+        assertThrows(XMLParserException.class, () -> spec.requiredInt("url", "/main/serviceUrl"));
+        assertThrows(XMLParserException.class, () -> spec.requiredInt("", "/main/serviceUrl"));
+        assertThrows(XMLParserException.class, () -> spec.requiredInt("x", null));
+        assertThrows(XMLParserException.class, () -> new XMLReadUtil(FILENONS).snapshot(null));
+    }
+
+    @Test
+    void testDurations() {
+        assertAll(
+                () -> assertEquals(Duration.ofSeconds(30), ConfigSnapshot.parseDuration("PT30S", ChronoUnit.DAYS)),
+                () -> assertEquals(Duration.ofMillis(250), ConfigSnapshot.parseDuration("250ms", ChronoUnit.DAYS)),
+                () -> assertEquals(Duration.ofMinutes(5), ConfigSnapshot.parseDuration("5 m", ChronoUnit.DAYS)),
+                () -> assertEquals(Duration.ofHours(2), ConfigSnapshot.parseDuration("2H", ChronoUnit.DAYS)),
+                () -> assertEquals(Duration.ofMillis(40), ConfigSnapshot.parseDuration("40", ChronoUnit.MILLIS)),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> ConfigSnapshot.parseDuration("5 weeks", ChronoUnit.DAYS)));
+        assertFalse(ConfigSnapshot.parseDuration("1d", ChronoUnit.SECONDS).isNegative());
+    }
+}
@@ -0,0 +1,80 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.edrpub.xml.reader.DocumentBuilderPool.Strategy;
+
+public class DocumentBuilderPoolTest extends XMLTest {
+
+    @Test
+    void testThreadLocalReuse() throws Exception {
+        final DocumentBuilderPool pool = new DocumentBuilderPool(Strategy.THREAD_LOCAL);
+        final DocumentBuilder first = pool.acquire();
+        // nested acquire must not hand out the builder in use
+        final DocumentBuilder nested = pool.acquire();
+        assertNotSame(first, nested);
+        pool.release(first);
+        assertSame(first, pool.acquire());
+    }
+
+    @Test
+    void testBoundedReuse() throws Exception {
+        final DocumentBuilderPool pool = new DocumentBuilderPool(Strategy.BOUNDED, 1);
+        final DocumentBuilder a = pool.acquire();
+        final DocumentBuilder b = pool.acquire();
+        pool.release(a);
+        pool.release(b);
+        assertSame(a, pool.acquire());
+        assertNotSame(b, pool.acquire());
+    }
+
+    @Test
+    void testParseSettings() throws Exception {
+        for (final Strategy s : Strategy.values()) {
+            final DocumentBuilderPool pool = new DocumentBuilderPool(s);
+            final Document d = pool.parse(new InputSource(
+                    new StringReader("<a xmlns=\"urn:x\"><!-- comment --><b>1</b></a>")));
+            assertAll(
+                    () -> assertEquals("urn:x", d.getDocumentElement().getNamespaceURI()),
+                    () -> assertEquals(1, d.getDocumentElement().getChildNodes().getLength()));
+            assertThrows(SAXException.class, () -> pool.parse(new InputSource(new StringReader("<a>"))));
+            // the pool must still work after a failed parse
+            assertTrue(pool.parse(new InputSource(FILEBOOKS)).hasChildNodes());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new DocumentBuilderPool(null));
+        assertThrows(IllegalArgumentException.class, () -> DocumentBuilderPool.setDefault(null));
+    }
+
+    @Test
+    void testProperties() {
+        final String name = "com.edrpub.xml.test.poolProperty";
+        try {
+            assertEquals(Strategy.NONE, DocumentBuilderPool.property(name, Strategy.class, Strategy.NONE));
+            System.setProperty(name, " bounded ");
+            assertEquals(Strategy.BOUNDED, DocumentBuilderPool.property(name, Strategy.class, Strategy.NONE));
+            System.setProperty(name, "fast_no_dtd");
+            assertEquals(ParserProfile.FAST_NO_DTD,
+                    DocumentBuilderPool.property(name, ParserProfile.class, ParserProfile.DEFAULT));
+            // a typo falls back to the default instead of failing class initialization
+            System.setProperty(name, "STRICT-SECURE");
+            assertEquals(ParserProfile.DEFAULT,
+                    DocumentBuilderPool.property(name, ParserProfile.class, ParserProfile.DEFAULT));
+        } finally {
+            System.clearProperty(name);
+        }
+    }
+}
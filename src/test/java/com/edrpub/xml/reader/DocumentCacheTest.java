@@ -0,0 +1,121 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class DocumentCacheTest extends XMLTest {
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void disableCache() {
+        XMLUtil.setDocumentCache(null);
+    }
+
+    @Test
+    void testHitsAndReload() throws Exception {
+        final DocumentCache cache = new DocumentCache();
+        final Path file = write("config.xml", "<a><b>1</b></a>");
+        final String name = file.toString();
+        assertSame(cache.get(name), cache.get(name));
+        assertEquals(1, cache.getHitCount());
+        write("config.xml", "<a><b>22</b></a>");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertEquals("22", cache.get(name).getDocumentElement().getTextContent());
+        assertEquals(2, cache.getMissCount());
+        cache.invalidate(name);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testEviction() throws Exception {
+        final DocumentCache byCount = new DocumentCache(1, Long.MAX_VALUE);
+        byCount.get(write("one.xml", "<a/>").toString());
+        byCount.get(write("two.xml", "<b/>").toString());
+        assertEquals(1, byCount.size());
+
+        final Path big = write("big.xml", "<a>0123456789</a>");
+        final DocumentCache byBytes = new DocumentCache(8, Files.size(big) * DocumentCache.SIZE_FACTOR - 1);
+        byBytes.get(big.toString());
+        assertAll(
+                () -> assertEquals(0, byBytes.size()),
+                () -> assertEquals(0, byBytes.getEstimatedBytes()));
+        assertThrows(IllegalArgumentException.class, () -> new DocumentCache(0, 1));
+    }
+
+    @Test
+    void testStaticMethodsUseCache() throws XMLParserException {
+        final DocumentCache cache = new DocumentCache();
+        XMLUtil.setDocumentCache(cache);
+        assertEquals("5", XMLUtil.getParameterByXpath("//main/asyncProcessingThreads", FILENONS));
+        assertEquals("connect", XMLUtil.getParameterByTag("userName", FILENONS));
+        assertLinesMatch(Arrays.asList("Incident", "Change"), XMLUtil.getListParametersByTag("map", FILENONS));
+        assertEquals(2, cache.getHitCount());
+        // map building must not consume the cached document
+        assertEquals(XMLUtil.getMapByTag("mybook", FILEBOOKS), XMLUtil.getMapByTag("mybook", FILEBOOKS));
+        assertEquals(4, XMLUtil.getNodeListByXpath("//mybook/edition", FILEBOOKS).getLength());
+        assertThrows(XMLParserException.class, () -> XMLUtil.getParameterByTag("x", "z:/tmp/notafile.xml"));
+    }
+
+    @Test
+    void testSharedNodeLists() throws Exception {
+        final StringBuilder xml = new StringBuilder("<r><t>");
+        for (int i = 0; i < 2000; i++)
+            xml.append("<k").append(i).append(">").append(i).append("</k").append(i).append(">");
+        final String name = write("shared.xml", xml.append("</t></r>").toString()).toString();
+        XMLUtil.setDocumentCache(new DocumentCache());
+        // the lists are copies, not the child list of the cached element
+        assertFalse(XMLUtil.getNodeListByTag("t", name) instanceof Node);
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    for (int n = 0; n < 20; n++) {
+                        final NodeList byTag = XMLUtil.getNodeListByTag("t", name);
+                        final NodeList byXpath = XMLUtil.getNodeListByXpath("/r/t/*", name);
+                        for (int i = 0; i < 2000; i++) {
+                            final String v = String.valueOf(i);
+                            if (!v.equals(byTag.item(i).getTextContent())
+                                    || !v.equals(byXpath.item(i).getTextContent()))
+                                return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> f : results)
+                assertTrue(f.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Path write(final String name, final String xml) throws IOException {
+        return Files.write(dir.resolve(name), xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
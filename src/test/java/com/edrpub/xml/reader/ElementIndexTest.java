@@ -0,0 +1,90 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class ElementIndexTest extends XMLTest {
+    private static final String[][] TAGS = { { "*", "*" }, { "title", "*" }, { "book", "*" }, { "Id", "*" },
+            { "Id", "http://server.opsware.com" }, { "item", "*" }, { "*", "http://server.opsware.com" },
+            { "item", "urn:none" }, { "serviceUrl", "*" }, { "Body", "http://schemas.xmlsoap.org/soap/envelope/" } };
+
+    private static final String[] XPATHS = { "//title", "//book[@category='WEB']/title", "//book[year='2005']/price",
+            "//title/@lang", "//*", "//book[2]/title", "//item/@href", "//ns1:Id", "//multiRef[@id='id1']/name",
+            "//attachments/getContent", "//missing", "//title[@lang][1]" };
+
+    @Test
+    void testMatchesScan() throws Exception {
+        for (final String f : new String[] { FILEBOOKS, FILENONS, FILENS, FILE_JOBREF }) {
+            final XMLUtil plain = new XMLUtil(f);
+            final XMLUtil indexed = new XMLUtil(f);
+            indexed.setIndexed(true);
+            assertTrue(indexed.isIndexed());
+            for (final String[] tag : TAGS) {
+                assertEquals(plain.getparametersByTagNS(tag[0], tag[1]), indexed.getparametersByTagNS(tag[0], tag[1]));
+                assertEquals(plain.getParameterByTagNS(tag[0], tag[1]), indexed.getParameterByTagNS(tag[0], tag[1]));
+            }
+            for (final String xpath : XPATHS) {
+                assertEquals(plain.getListParametersByXpathNS(xpath, ns), indexed.getListParametersByXpathNS(xpath, ns),
+                        xpath);
+                assertEquals(plain.getParameterByXpathNS(xpath, ns), indexed.getParameterByXpathNS(xpath, ns), xpath);
+            }
+        }
+    }
+
+    @Test
+    void testIndex() throws Exception {
+        final Document d = XMLUtil.getDocument(FILEBOOKS);
+        final ElementIndex index = ElementIndex.build(d);
+        final NodeList titles = d.getElementsByTagNameNS("*", "title");
+        final List<Node> indexed = index.elements("*", "title");
+        assertEquals(titles.getLength(), indexed.size());
+        for (int i = 0; i < titles.getLength(); i++)
+            assertTrue(titles.item(i) == indexed.get(i));
+        assertEquals(indexed, index.elements(null, "title"));
+        assertEquals(indexed, index.elements("", "title"));
+        assertTrue(index.elements("urn:none", "title").isEmpty());
+        assertEquals(d.getElementsByTagNameNS("*", "*").getLength(), index.elements("*", "*").size());
+        assertFalse(index.hasLevel1Elements());
+    }
+
+    @Test
+    void testUpdates(@TempDir final Path dir) throws Exception {
+        final Path file = dir.resolve("config.xml");
+        for (final boolean threadSafe : new boolean[] { false, true }) {
+            Files.write(file, "<c><a>1</a><b><a>2</a></b></c>".getBytes(StandardCharsets.UTF_8));
+            final XMLUtil util = new XMLUtil(file.toString(), threadSafe);
+            util.setIndexed(true);
+            assertEquals(List.of("1", "2"), util.getListParametersByXpath("//a"));
+            util.updateOrAddElement("/c/b/a", "3");
+            assertEquals(List.of("1", "3"), util.getparametersByTagNS("a", "*"));
+            util.removeNode("/c/a");
+            assertEquals(List.of("3"), util.getListParametersByXpath("//a"));
+            assertEquals("3", util.getParameterByTagNS("a", "*"));
+            // elements added by name are found by xpath but not by local name, as without the index
+            util.updateOrAddElement("/c/d", "4");
+            assertEquals("4", util.getParameterByXpath("//d"));
+            assertNull(util.getParameterByTagNS("d", "*"));
+            util.edit().addElement("/c/b", "a", "5").commit();
+            assertEquals(List.of("3", "5"), util.getListParametersByXpath("//a"));
+            util.removeNode("/c/d");
+            util.removeNode("/c/b/a[2]");
+            util.updateOrAddElement("/c/b/a", "2");
+            util.updateOrAddElement("/c/a", "1");
+            util.setIndexed(false);
+            assertEquals(List.of("2", "1"), util.getListParametersByXpath("//a"));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.XMLConstants;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.NodeList;
+
+public class NamespaceBindingsTest extends XMLTest {
+
+    @Test
+    void testBindings() throws XMLParserException {
+        final NamespaceBindings b = NamespaceBindings.of(Map.of("ns1", "http://server.opsware.com"))
+                .with("soapenv", "http://schemas.xmlsoap.org/soap/envelope/");
+        assertAll(
+                () -> assertEquals("http://server.opsware.com", b.getNamespaceURI("ns1")),
+                () -> assertNull(b.getNamespaceURI("none")),
+                () -> assertEquals(XMLConstants.XML_NS_URI, b.getNamespaceURI("xml")),
+                () -> assertEquals("ns1", b.getPrefix("http://server.opsware.com")),
+                () -> assertNull(b.getPrefix("urn:none")),
+                () -> assertEquals(b, NamespaceBindings.EMPTY.with("soapenv", "http://schemas.xmlsoap.org/soap/envelope/")
+                        .with("ns1", "http://server.opsware.com")),
+                () -> assertEquals(b.hashCode(), NamespaceBindings.of(b.asMap()).hashCode()),
+                () -> assertThrows(UnsupportedOperationException.class, () -> b.asMap().clear()),
+                () -> assertThrows(IllegalArgumentException.class, () -> b.getNamespaceURI(null)));
+        assertThrows(XMLParserException.class, () -> b.with("", "urn:x"));
+        assertThrows(XMLParserException.class, () -> b.with("x", null));
+        assertThrows(XMLParserException.class, () -> b.with("xml", "urn:x"));
+        assertThrows(XMLParserException.class, () -> NamespaceBindings.of(null));
+    }
+
+    @Test
+    void testFromDocument() throws XMLParserException {
+        final XMLUtil util = new XMLUtil(FILE_JOBREF);
+        final NamespaceBindings b = util.getNamespaceBindings(null);
+        assertEquals("http://schemas.xmlsoap.org/soap/envelope/", b.getNamespaceURI("soapenv"));
+        assertEquals("http://www.w3.org/2001/XMLSchema-instance", b.getNamespaceURI("xsi"));
+        // only the root declarations are discovered
+        assertNull(b.getNamespaceURI("ns1"));
+        assertEquals(util.getNodeListByXpathNS("/soapenv:Envelope/soapenv:Body/multiRef", ns).getLength(),
+                util.getNodeList(b.compile("/soapenv:Envelope/soapenv:Body/multiRef")).getLength());
+
+        final XMLUtil dflt = new XMLUtil("<r xmlns=\"urn:d\"><v>1</v></r>".getBytes());
+        assertEquals("1", dflt.getParameter(dflt.getNamespaceBindings("d").compile("/d:r/d:v")));
+        assertTrue(dflt.getNamespaceBindings(null).asMap().isEmpty());
+    }
+
+    @Test
+    void testPreparedQuery() throws Exception {
+        final NamespaceBindings b = NamespaceBindings.of(Map.of(
+                "ns1", "http://server.opsware.com",
+                "soapenv", "http://schemas.xmlsoap.org/soap/envelope/"));
+        final XPathQuery change = b.compile("//ns1:ChangeID");
+        final XPathQuery ids = new XPathQuery("//soapenv:Body/multiRef/@id", b);
+        // not a simple path, so always left to JAXP
+        final XPathQuery count = b.compile("//soapenv:Body/multiRef[position() > 1]/@id");
+        final XMLUtil util = new XMLUtil(FILENS);
+        assertAll(
+                () -> assertEquals(util.getParameterByXpathNS("//ns1:ChangeID", ns), util.getParameter(change)),
+                () -> assertEquals(util.getListParametersByXpathNS("//soapenv:Body/multiRef/@id", ns),
+                        util.getListParameters(ids)),
+                () -> assertEquals(util.getListParameters(ids).size() - 1, util.getListParameters(count).size()),
+                () -> assertEquals("//ns1:ChangeID", change.getXpath()),
+                () -> assertEquals(b, change.getBindings()));
+
+        final NodeList multi = util.getNodeListByXpathNS("//soapenv:Body/multiRef", ns);
+        assertEquals(1, util.getNodeListFromNode(b.compile("@id"), multi.item(0)).getLength());
+
+        // one query shared by several threads
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                results.add(pool.submit(() -> new XMLUtil(FILENS).getListParameters(count)));
+            for (final Future<List<String>> f : results)
+                assertEquals(util.getListParameters(count), f.get());
+        } finally {
+            pool.shutdown();
+        }
+
+        final CompactDocument compact = CompactDocument.parse(FILENS);
+        assertEquals(util.getParameter(change), new XMLUtil(compact).getParameter(change));
+
+        assertThrows(XMLParserException.class, () -> b.compile("//unbound:x"));
+        assertThrows(XMLParserException.class, () -> b.compile("//ns1:["));
+        assertThrows(XMLParserException.class, () -> util.getParameter(null));
+        assertThrows(XMLParserException.class, () -> util.getNodeListFromNode(change, null));
+    }
+}
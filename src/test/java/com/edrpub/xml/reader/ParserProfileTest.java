@@ -0,0 +1,116 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import com.edrpub.xml.reader.DocumentBuilderPool.Strategy;
+
+public class ParserProfileTest extends XMLTest {
+
+    // a host that never resolves, so a fetch would fail the parse
+    private static final String REMOTE = "http://unresolvable.invalid/";
+
+    @TempDir
+    Path dir;
+
+    private static Document parse(final ParserProfile profile, final String xml) throws Exception {
+        final DocumentBuilderPool pool = new DocumentBuilderPool(Strategy.THREAD_LOCAL, 1, profile);
+        assertEquals(profile, pool.getProfile());
+        final Document d = pool.parse(new InputSource(new StringReader(xml)));
+        // a reused builder must keep the profile
+        assertEquals(d.getDocumentElement().getTextContent(),
+                pool.parse(new InputSource(new StringReader(xml))).getDocumentElement().getTextContent());
+        return d;
+    }
+
+    private String external() throws Exception {
+        final Path ent = Files.write(dir.resolve("ent.txt"), "file".getBytes(StandardCharsets.UTF_8));
+        return "<!DOCTYPE r [<!ENTITY i \"inline\"><!ENTITY e SYSTEM \"" + ent.toUri() + "\">]><r>&i;&e;</r>";
+    }
+
+    @Test
+    void testExternalEntities() throws Exception {
+        final String xml = external();
+        assertEquals("inlinefile", parse(ParserProfile.DEFAULT, xml).getDocumentElement().getTextContent());
+        assertEquals("inline", parse(ParserProfile.FAST_NO_DTD, xml).getDocumentElement().getTextContent());
+        assertThrows(SAXException.class, () -> parse(ParserProfile.STRICT_SECURE, xml));
+        assertThrows(SAXException.class, () -> parse(ParserProfile.STRICT_SECURE, "<!DOCTYPE r><r/>"));
+        assertEquals("a", parse(ParserProfile.STRICT_SECURE, "<r>a</r>").getDocumentElement().getTextContent());
+
+        // nothing is fetched from the network
+        final String remote = "<!DOCTYPE r SYSTEM \"" + REMOTE + "r.dtd\" [<!ENTITY e SYSTEM \"" + REMOTE
+                + "e.txt\">]><r>a&e;</r>";
+        assertEquals("a", parse(ParserProfile.FAST_NO_DTD, remote).getDocumentElement().getTextContent());
+
+        final StringBuilder laughs = new StringBuilder("<!DOCTYPE r [<!ENTITY l0 \"lol\">");
+        for (int i = 1; i < 10; i++)
+            laughs.append("<!ENTITY l").append(i).append(" \"").append(("&l" + (i - 1) + ";").repeat(10))
+                    .append("\">");
+        laughs.append("]><r>&l9;</r>");
+        assertThrows(SAXException.class, () -> parse(ParserProfile.FAST_NO_DTD, laughs.toString()));
+        assertThrows(IllegalArgumentException.class, () -> new DocumentBuilderPool(Strategy.NONE, 1, null));
+    }
+
+    @Test
+    void testValidating() throws Exception {
+        final Path dtd = Files.write(dir.resolve("r.dtd"),
+                "<!ELEMENT r (a+)><!ELEMENT a (#PCDATA)>".getBytes(StandardCharsets.UTF_8));
+        final String head = "<!DOCTYPE r SYSTEM \"" + dtd.toUri() + "\">";
+        assertEquals("12", parse(ParserProfile.VALIDATING, head + "<r><a>1</a><a>2</a></r>")
+                .getDocumentElement().getTextContent());
+        assertThrows(SAXException.class, () -> parse(ParserProfile.VALIDATING, head + "<r><b/></r>"));
+        // the same document is accepted when not validating
+        assertEquals(1, parse(ParserProfile.DEFAULT, head + "<r><b/></r>").getDocumentElement()
+                .getChildNodes().getLength());
+    }
+
+    @Test
+    void testStax() throws Exception {
+        final String xml = external();
+        final DocumentBuilderPool original = DocumentBuilderPool.getDefault();
+        try {
+            DocumentBuilderPool.setDefault(new DocumentBuilderPool(Strategy.THREAD_LOCAL, 1, ParserProfile.DEFAULT));
+            assertEquals("inlinefile", staxText(xml));
+            DocumentBuilderPool.setDefault(
+                    new DocumentBuilderPool(Strategy.THREAD_LOCAL, 1, ParserProfile.FAST_NO_DTD));
+            assertEquals("inline", staxText(xml));
+            assertEquals("a", staxText("<!DOCTYPE r SYSTEM \"" + REMOTE + "r.dtd\"><r>a</r>"));
+            DocumentBuilderPool.setDefault(
+                    new DocumentBuilderPool(Strategy.THREAD_LOCAL, 1, ParserProfile.STRICT_SECURE));
+            assertThrows(XMLStreamException.class, () -> staxText(xml));
+            // the DOM parser follows the default pool too
+            assertThrows(XMLParserException.class, () -> new XMLUtil(xml.getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            DocumentBuilderPool.setDefault(original);
+        }
+    }
+
+    private static String staxText(final String xml) throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        try (StaxInput in = StaxInput.open(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))) {
+            final XMLStreamReader r = in.reader;
+            while (r.hasNext()) {
+                final int e = r.next();
+                if (e == XMLStreamConstants.CHARACTERS)
+                    sb.append(r.getText());
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.edr.test.TestNamespace;
+
+public class SimplePathTest extends XMLTest {
+    private static final String NESTED = "<r xmlns:a=\"urn:a\" xmlns=\"urn:d\"><s xmlns=\"\"><x id=\"1\"><x id=\"2\">"
+            + "<y>one</y><x id=\"3\"><y>two</y></x><y>three</y></x><y k=\"v\">four</y></x>"
+            + "<a:x id=\"4\"><y>five</y></a:x><x><z>six</z><y>seven</y></x></s></r>";
+
+    private static final String[] XPATHS = {
+            "/bookstore/book/title", "//book[@category='WEB']/author", "//book[3]/author[2]", "bookstore/book",
+            "/bookstore/book[@category=\"CHILDREN\"]/title/@lang", "//book[year='2005']/price", "//title[@lang]",
+            "//mybook/edition/version", "//*[2]", "/bookstore/*/title", "//editableBook/version", "//missing",
+            "/main/serviceUrl", "//attachments/getContent", "//retryIntervalExtended", "/main/*", "//*",
+            "//soapenv:Body/ns1:findServerRefsResponse/findServerRefsReturn/item/@href", "//ns1:Id",
+            "//multiRef[@id='id1']/name", "//multiRef/id/@xsi:type", "//findJobRefsReturn/item/@href",
+            "//multiRef[id='120420001']/@id", "//item[2]/@href", "//x", "//x//y", "//x/y", "//x[2]", "//x/x",
+            "//x[@id]//y[1]", "//*/y[@k='v']", "//@id", "/r/s/x//@id", "//y/@k", "//x[y='two']", "//a:x/y",
+            "//x[1][@id='2']", "//x[@id][2]", "//*[y][1]", "/*", "//x[0]", "//@xmlns", "/r/s/x[last()]", "//missing:x" };
+
+    @Test
+    void testMatchesJaxp() throws Exception {
+        final TestNamespace context = new TestNamespace();
+        context.addNamespaceDef("a", "urn:a");
+        int simple = compare(parse(NESTED, true), context);
+        // prefixed nodes created without namespace support are left to JAXP
+        compare(parse(NESTED, false), context);
+        for (final String f : new String[] { FILEBOOKS, FILENONS, FILENS, FILE_JOBREF })
+            simple += compare(XMLUtil.getDocument(f), ns);
+        assertTrue(simple > 150, "simple paths evaluated " + simple);
+    }
+
+    private static Document parse(final String xml, final boolean namespaceAware) throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(namespaceAware);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static int compare(final Document d, final NamespaceContext context) throws Exception {
+        final XPath xpath = XPathFactory.newInstance().newXPath();
+        xpath.setNamespaceContext(context);
+        int simple = 0;
+        for (final String qual : XPATHS) {
+            final SimplePath path = SimplePath.parse(qual);
+            final List<Node> fast = path == null ? null : path.select(d, context, false);
+            if (fast == null)
+                continue;
+            simple++;
+            final List<Node> expected = new ArrayList<Node>();
+            final NodeList nl = (NodeList) xpath.evaluate(qual, d, XPathConstants.NODESET);
+            for (int i = 0; i < nl.getLength(); i++)
+                expected.add(nl.item(i));
+            assertEquals(expected, fast, qual);
+            assertEquals(xpath.evaluate(qual, d, XPathConstants.NODE), first(path.select(d, context, true)), qual);
+            // relative to the document element
+            if (!qual.startsWith("/")) {
+                final Node root = d.getDocumentElement();
+                assertEquals(xpath.evaluate(qual, root, XPathConstants.NODE), first(path.select(root, context, true)),
+                        qual);
+            }
+        }
+        return simple;
+    }
+
+    private static Node first(final List<Node> nodes) {
+        return nodes.isEmpty() ? null : nodes.get(0);
+    }
+
+    @Test
+    void testXMLUtil() throws Exception {
+        final XMLUtil util = new XMLUtil(NESTED.getBytes(StandardCharsets.UTF_8));
+        final List<String> fast = util.getListParametersByXpath("//x//y");
+        final Node node = util.getNodeListByXpath("//x[@id='3']").item(0);
+        assertEquals("two", XMLUtil.getNodeListFromNodeByXpath("y", node).item(0).getTextContent());
+        XMLUtil.setSimplePathEvaluation(false);
+        try {
+            assertFalse(XMLUtil.isSimplePathEvaluation());
+            assertEquals(util.getListParametersByXpath("//x//y"), fast);
+            assertEquals(node, util.getNodeListByXpath("//x[@id='3']").item(0));
+        } finally {
+            XMLUtil.setSimplePathEvaluation(true);
+        }
+        assertEquals(List.of("one", "two", "three", "four", "seven"), fast);
+        assertEquals(3, XMLUtil.getNodeListFromNodeByXpath("*", util.getNodeListByXpath("/*/s").item(0)).getLength());
+        assertNull(util.getNodeListByXpath("//x").item(-1));
+        assertThrows(XMLParserException.class, () -> util.getListParametersByXpathNS("//b:x", ns));
+        assertThrows(XMLParserException.class, () -> util.getListParametersByXpath("//x[@id=']"));
+    }
+
+    @Test
+    void testCompile() {
+        assertNotNull(SimplePath.compile("/a/b[2]/@c"));
+        assertTrue(SimplePath.compile("/a/b[2]/@c") == SimplePath.compile("/a/b[2]/@c"));
+        assertTrue(SimplePath.compile("//a").absolute);
+        assertFalse(SimplePath.compile("a/b").absolute);
+        assertNull(SimplePath.compile("count(//a)"));
+        assertNull(SimplePath.compile("count(//a)"));
+        assertNull(SimplePath.compile(null));
+    }
+}
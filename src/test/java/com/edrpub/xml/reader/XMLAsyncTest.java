@@ -0,0 +1,73 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class XMLAsyncTest extends XMLTest {
+
+    @Test
+    void testQueries() throws Exception {
+        final XMLAsync async = XMLAsync.getDefault();
+        assertEquals(Runtime.version().feature() >= 21, async.isVirtualThreads());
+        final List<CompletableFuture<String>> lookups = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            lookups.add(async.getParameterByXpath("/main/maxRetries", FILENONS));
+        CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        for (final CompletableFuture<String> f : lookups)
+            assertEquals(XMLUtil.getParameterByXpath("/main/maxRetries", FILENONS), f.join());
+
+        assertEquals(XMLUtil.getListParametersByXpath("/main/attachments/*", FILENONS),
+                async.getListParametersByXpath("/main/attachments/*", FILENONS).get());
+        assertEquals(Map.of("retries", "5"),
+                async.getParametersByXpath(Map.of("retries", "/main/maxRetries"), FILENONS).get());
+        final XPathQuery change = NamespaceBindings.of(Map.of("ns1", "http://server.opsware.com"))
+                .compile("//ns1:ChangeID");
+        assertEquals(new XMLUtil(FILENS).getParameter(change), async.getParameter(change, FILENS).get());
+        assertEquals(new XMLUtil(FILENS).getListParameters(change), async.getListParameters(change, FILENS).get());
+        assertEquals(Integer.valueOf(21), async.query(FILE_JOBREF,
+                util -> util.getNodeListByXpath("//findJobRefsReturn/item").getLength()).get());
+    }
+
+    @Test
+    void testExecutors() throws Exception {
+        final ExecutorService io = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-io"));
+        final ExecutorService cpu = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-cpu"));
+        try {
+            final XMLAsync async = new XMLAsync(io, cpu);
+            final String thread = async.query(FILENONS, util -> Thread.currentThread().getName()).get();
+            assertEquals("test-cpu", thread);
+            assertFalse(async.isVirtualThreads());
+            assertEquals("5", new XMLAsync(cpu).parse(FILENONS).get().getParameterByXpath("/main/maxRetries"));
+        } finally {
+            io.shutdown();
+            cpu.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new XMLAsync(null));
+    }
+
+    @Test
+    void testFailures() {
+        final XMLAsync async = XMLAsync.getDefault();
+        for (final CompletableFuture<?> f : List.of(
+                async.parse("src/test/resources/data/none.xml"),
+                async.parse((String) null),
+                async.getParameterByXpath("/main/[", FILENONS),
+                async.query(FILENONS, null))) {
+            final ExecutionException e = assertThrows(ExecutionException.class, f::get);
+            assertInstanceOf(XMLParserException.class, e.getCause());
+        }
+    }
+}
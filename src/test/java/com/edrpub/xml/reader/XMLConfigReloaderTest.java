@@ -0,0 +1,91 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class XMLConfigReloaderTest extends XMLTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(final Path p, final String xml) throws Exception {
+        final Path tmp = Files.createTempFile(dir, "next", ".tmp");
+        Files.write(tmp, xml.getBytes(StandardCharsets.UTF_8));
+        return Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    void testSnapshotReload() throws Exception {
+        final Path file = write(dir.resolve("app.xml"), "<c><retries>1</retries><name>a</name></c>");
+        final ConfigSnapshot.Spec spec = new ConfigSnapshot.Spec();
+        final ConfigSnapshot.IntKey retries = spec.requiredInt("retries", "/c/retries");
+        spec.requiredString("name", "/c/name");
+        try (XMLConfigReloader reloader = new XMLConfigReloader(file, spec, Duration.ofMillis(50))) {
+            final BlockingQueue<XMLConfigReloader.Change> changes = new LinkedBlockingQueue<>();
+            reloader.addListener(changes::add);
+            assertEquals(1, reloader.getSnapshot().get(retries));
+
+            write(file, "<c><retries>2</retries><name>a</name></c>");
+            final XMLConfigReloader.Change change = changes.poll(20, TimeUnit.SECONDS);
+            assertEquals(Set.of("retries"), change.getChanged());
+            assertEquals(1, change.getPreviousSnapshot().get(retries));
+            assertEquals(2, reloader.getSnapshot().get(retries));
+            assertEquals("2", reloader.getReader().getStringParameter("/c/retries"));
+
+            // an invalid file is logged and the last good configuration kept
+            write(file, "<c><retries>x</retries><name>a</name></c>");
+            assertThrows(XMLParserException.class, reloader::reload);
+            assertEquals(2, reloader.getSnapshot().get(retries));
+            assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+
+            write(file, "<c><retries>2</retries><name>b</name></c>");
+            assertEquals(Set.of("name"), changes.poll(20, TimeUnit.SECONDS).getChanged());
+        }
+    }
+
+    @Test
+    void testReloadOutsideSpec() throws Exception {
+        final Path file = write(dir.resolve("outside.xml"), "<c><retries>1</retries><other>a</other></c>");
+        final ConfigSnapshot.Spec spec = new ConfigSnapshot.Spec();
+        final ConfigSnapshot.IntKey retries = spec.requiredInt("retries", "/c/retries");
+        try (XMLConfigReloader reloader = new XMLConfigReloader(file, spec, Duration.ofMinutes(5))) {
+            final BlockingQueue<XMLConfigReloader.Change> changes = new LinkedBlockingQueue<>();
+            reloader.addListener(changes::add);
+            write(file, "<c><retries>1</retries><other>b</other></c>");
+            assertTrue(reloader.reload().isEmpty());
+            assertEquals("b", reloader.getReader().getStringParameter("/c/other"));
+            assertEquals(1, reloader.getSnapshot().get(retries));
+            assertNull(changes.poll());
+        }
+    }
+
+    @Test
+    void testLeafReload() throws Exception {
+        final Path file = write(dir.resolve("plain.xml"), "<c><a>1</a><a>2</a><b k=\"x\"/></c>");
+        // a long debounce leaves reloading to the test
+        try (XMLConfigReloader reloader = new XMLConfigReloader(file, null, Duration.ofMinutes(5))) {
+            assertNull(reloader.getSnapshot());
+            write(file, "<c><a>1</a><a>3</a><b k=\"y\"/><d>new</d></c>");
+            assertEquals(Set.of("/c[1]/a[2]", "/c[1]/b[1]/@k", "/c[1]/d[1]"), reloader.reload());
+            assertTrue(reloader.reload().isEmpty());
+            assertEquals("3", reloader.getReader().getStringParameter("/c/a[2]"));
+        }
+        assertThrows(XMLParserException.class, () -> new XMLConfigReloader(dir.resolve("none.xml"), null));
+    }
+}
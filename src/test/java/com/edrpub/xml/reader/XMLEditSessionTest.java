@@ -0,0 +1,99 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class XMLEditSessionTest extends XMLTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(final String xml) throws Exception {
+        final Path p = dir.resolve("config.xml");
+        Files.write(p, xml.getBytes(StandardCharsets.UTF_8));
+        return p;
+    }
+
+    @Test
+    void testCommit() throws Exception {
+        final Path file = write("<config><version>1</version><legacy>x</legacy></config>");
+        final XMLUtil util = new XMLUtil(file.toString());
+        final XMLEditSession edits = util.edit();
+        for (int i = 0; i < 500; i++)
+            edits.updateOrAddElement("/config/item" + (i % 5), String.valueOf(i));
+        edits.updateOrAddElement("/config/version", "2")
+                .removeNode("/config/legacy")
+                .removeNode("/config/missing")
+                .addElement("/config", "owner", "ops");
+        assertEquals(504, edits.size());
+        assertEquals("1", new XMLUtil(file.toString()).getParameterByXpath("/config/version"));
+
+        edits.commit();
+        final XMLUtil reread = new XMLUtil(file.toString());
+        assertAll(
+                () -> assertEquals(0, edits.size()),
+                () -> assertEquals("2", reread.getParameterByXpath("/config/version")),
+                () -> assertEquals("499", reread.getParameterByXpath("/config/item4")),
+                () -> assertNull(reread.getParameterByXpath("/config/legacy")),
+                () -> assertEquals("ops", reread.getParameterByXpath("/config/owner")),
+                () -> assertEquals("2", util.getParameterByXpath("/config/version")));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testColonInFileName() throws Exception {
+        final Path file = dir.resolve("a:b.xml");
+        Files.write(file, "<c><v>1</v></c>".getBytes(StandardCharsets.UTF_8));
+        final XMLUtil util = new XMLUtil(file.toString());
+        util.edit().updateOrAddElement("/c/v", "2").commit();
+        assertEquals("2", new XMLUtil(file.toString()).getParameterByXpath("/c/v"));
+        assertEquals(file.toAbsolutePath(), XMLUtil.toWritablePath(file.toString()));
+        assertEquals(file.toAbsolutePath(), XMLUtil.toWritablePath(file.toUri().toString()));
+        assertNull(XMLUtil.toWritablePath("http://localhost/a.xml"));
+        // written through a temp file in the directory, which is renamed into place
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void testFailedCommit() throws Exception {
+        final Path file = write("<config><version>1</version></config>");
+        final byte[] before = Files.readAllBytes(file);
+        final XMLUtil util = new XMLUtil(file.toString(), true);
+        final XMLEditSession edits = util.edit();
+        edits.updateOrAddElement("/config/version", "2").removeNode("!d4");
+        assertThrows(XMLParserException.class, edits::commit);
+        assertAll(
+                () -> assertEquals(0, edits.size()),
+                () -> assertEquals("1", util.getParameterByXpath("/config/version")),
+                () -> assertArrayEquals(before, Files.readAllBytes(file)));
+        edits.updateOrAddElement("/config/version", "3").discard();
+        edits.commit();
+        assertArrayEquals(before, Files.readAllBytes(file));
+        assertThrows(XMLParserException.class, () -> edits.addElement("/config", "", "x"));
+
+        // without thread-safe mode a failed session must not leave its edits behind either
+        final XMLUtil plain = new XMLUtil(file.toString());
+        final XMLEditSession failing = plain.edit().updateOrAddElement("/config/version", "4").removeNode("!d4");
+        assertThrows(XMLParserException.class, failing::commit);
+        assertEquals("1", plain.getParameterByXpath("/config/version"));
+        plain.updateOrAddElement("/config/owner", "ops");
+        assertEquals("1", new XMLUtil(file.toString()).getParameterByXpath("/config/version"));
+        assertThrows(XMLParserException.class, () -> new XMLUtil(file.toString()).edit()
+                .updateOrAddElement(null, "x"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.namespace.NamespaceContext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.edrpub.xml.reader.XMLFileQuery.FileResult;
+
+public class XMLFileQueryTest extends XMLTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testParallelQuery() throws Exception {
+        Files.createDirectories(dir.resolve("sub"));
+        for (int i = 0; i < 40; i++) {
+            final Path p = dir.resolve(i % 2 == 0 ? "f" + i + ".xml" : "sub/f" + i + ".xml");
+            Files.write(p, ("<a><id>" + i + "</id><id>x</id></a>").getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(dir.resolve("broken.xml"), "<a>".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("notes.txt"), "skip".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(21, XMLFileQuery.listFiles(dir, "*.xml").size());
+        final List<Path> files = XMLFileQuery.listFiles(dir, "**.xml");
+        assertEquals(41, files.size());
+
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final XMLFileQuery query = new XMLFileQuery(Collections.singletonMap("ids", "/a/id"), null, pool);
+            final List<FileResult> failed = new ArrayList<>();
+            final int[] ok = new int[1];
+            query.forEach(files, r -> {
+                if (r.isSuccess()) {
+                    assertEquals(2, r.getValues().get("ids").size());
+                    ok[0]++;
+                } else {
+                    failed.add(r);
+                }
+            });
+            assertAll(
+                    () -> assertEquals(40, ok[0]),
+                    () -> assertEquals(1, failed.size()),
+                    () -> assertEquals("broken.xml", failed.get(0).getFile().getFileName().toString()),
+                    () -> assertNotNull(failed.get(0).getError()),
+                    () -> assertTrue(failed.get(0).getValues().isEmpty()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testNamespaceQuery() throws XMLParserException {
+        final XMLFileQuery query = new XMLFileQuery(Collections.singletonMap("hrefs", "//findJobRefsReturn/item/@href"),
+                ns, Runnable::run);
+        final List<FileResult> results = query.run(List.of(Path.of(FILE_JOBREF), Path.of(FILENS)));
+        final Map<String, List<String>> jobs = results.get(0).getValues();
+        assertAll(
+                () -> assertEquals(2, results.size()),
+                () -> assertEquals(21, jobs.get("hrefs").size()),
+                () -> assertTrue(results.get(1).getValues().get("hrefs").isEmpty()));
+        assertThrows(XMLParserException.class, () -> new XMLFileQuery(Collections.emptyMap()));
+        assertThrows(XMLParserException.class, () -> new XMLFileQuery(Collections.singletonMap("x", "")));
+        assertFalse(new XMLFileQuery(Collections.singletonMap("x", "!d4")).run(List.of(Path.of(FILENONS)))
+                .get(0).isSuccess());
+    }
+
+    @Test
+    void testRuntimeErrorsPerFile() throws XMLParserException {
+        // a context failing with an unchecked exception fails each file, not the batch
+        final NamespaceContext failing = new NamespaceContext() {
+            @Override
+            public String getNamespaceURI(final String prefix) {
+                throw new IllegalStateException("no bindings");
+            }
+
+            @Override
+            public String getPrefix(final String namespaceURI) {
+                return null;
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(final String namespaceURI) {
+                return Collections.emptyIterator();
+            }
+        };
+        final XMLFileQuery query = new XMLFileQuery(Collections.singletonMap("x", "/p:a/p:b"), failing,
+                Runnable::run);
+        final List<FileResult> results = query.run(List.of(Path.of(FILENONS), Path.of(FILEBOOKS)));
+        assertEquals(2, results.size());
+        for (final FileResult r : results) {
+            assertFalse(r.isSuccess());
+            assertTrue(r.getValues().isEmpty());
+        }
+    }
+}
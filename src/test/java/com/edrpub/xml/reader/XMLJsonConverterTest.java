@@ -0,0 +1,123 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class XMLJsonConverterTest extends XMLTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode convert(final XMLJsonConverter c, final String xml) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.convert(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), out);
+        return mapper.readTree(out.toByteArray());
+    }
+
+    @Test
+    void testDocument() throws Exception {
+        final XMLJsonConverter c = XMLJsonConverter.builder().arrays("item").build();
+        final JsonNode json = convert(c, "<r a=\"1\"><s>text</s><e/><item>x</item><item k=\"v\">y</item>"
+                + "<m>one<b/>two</m><c><![CDATA[<raw>]]></c><n><item>z</item></n></r>");
+        assertEquals(mapper.readTree("{\"r\":{\"@a\":\"1\",\"s\":\"text\",\"e\":null,"
+                + "\"item\":[\"x\",{\"@k\":\"v\",\"#text\":\"y\"}],\"m\":{\"b\":null,\"#text\":\"onetwo\"},"
+                + "\"c\":\"<raw>\",\"n\":{\"item\":[\"z\"]}}}"), json);
+
+        final XMLParserException e = assertThrows(XMLParserException.class,
+                () -> convert(c, "<r><s>1</s><t/><s>2</s></r>"));
+        assertTrue(e.getMessage().contains("[s]"));
+        assertThrows(XMLParserException.class, () -> convert(c, "<r><s>1</r>"));
+    }
+
+    @Test
+    void testPrettyPrinted() throws Exception {
+        final XMLJsonConverter c = XMLJsonConverter.builder().arrays("item").build();
+        assertEquals(mapper.readTree("{\"r\":{\"@a\":\"1\",\"s\":\"v\",\"m\":{\"b\":null,\"#text\":\"one two\"}}}"),
+                convert(c, "<r a=\"1\">\n  <s>v</s>\n  <m>one <b/>two</m>\n</r>\n"));
+
+        // a large indented document is converted without holding its indentation
+        final int count = 200_000;
+        final String indent = "\n" + " ".repeat(1000);
+        final InputStream in = new InputStream() {
+            private int item = -1;
+            private byte[] chunk = "<r>".getBytes(StandardCharsets.UTF_8);
+            private int pos;
+
+            @Override
+            public int read() {
+                final byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0];
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) {
+                if (pos == chunk.length) {
+                    if (++item > count)
+                        return -1;
+                    chunk = (item == count ? indent + "</r>" : indent + "<item>" + item + "</item>")
+                            .getBytes(StandardCharsets.UTF_8);
+                    pos = 0;
+                }
+                final int n = Math.min(len, chunk.length - pos);
+                System.arraycopy(chunk, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+        };
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.convert(in, out);
+        final JsonNode items = mapper.readTree(out.toByteArray()).get("r").get("item");
+        assertEquals(count, items.size());
+        assertEquals(String.valueOf(count - 1), items.get(count - 1).asText());
+    }
+
+    @Test
+    void testNamespaces() throws Exception {
+        final String xml = "<p:r xmlns:p=\"urn:p\" p:a=\"1\"><p:s>v</p:s></p:r>";
+        assertEquals(mapper.readTree("{\"p:r\":{\"@p:a\":\"1\",\"p:s\":\"v\"}}"),
+                convert(XMLJsonConverter.builder().build(), xml));
+        assertEquals(mapper.readTree("{\"r\":{\"_xmlns:p\":\"urn:p\",\"_a\":\"1\",\"s\":\"v\"}}"),
+                convert(XMLJsonConverter.builder().localNames(true).namespaceDeclarations(true)
+                        .attributePrefix("_").build(), xml));
+        assertEquals(mapper.readTree("{\"r\":{\"s\":\"v\"}}"),
+                convert(XMLJsonConverter.builder().localNames(true).attributes(false).build(), xml));
+    }
+
+    @Test
+    void testRecords() throws Exception {
+        final NamespaceBindings soap = NamespaceBindings.of(
+                Map.of("soapenv", "http://schemas.xmlsoap.org/soap/envelope/"));
+        final XMLJsonConverter c = XMLJsonConverter.builder().attributes(false)
+                .records("/soapenv:Envelope/soapenv:Body/multiRef", soap).build();
+        final JsonNode records = mapper.readTree(c.toJson(FILE_JOBREF));
+        final XMLUtil util = new XMLUtil(FILE_JOBREF);
+        assertAll(
+                () -> assertEquals(21, records.size()),
+                () -> assertEquals(util.getListParametersByXpath("//multiRef/id"),
+                        records.findValuesAsText("id")),
+                () -> assertEquals(4, records.get(0).size()));
+
+        final JsonNode items = mapper.readTree(XMLJsonConverter.builder().records("//item", null).build()
+                .toJson(FILE_JOBREF));
+        assertEquals(21, items.size());
+        assertEquals("#id0", items.get(0).get("@href").asText());
+        assertEquals(mapper.readTree("[\"1\",{\"a\":\"2\"}]"), convert(XMLJsonConverter.builder()
+                .records("/r/*", null).build(), "<r><a>1</a><b><a>2</a></b></r>"));
+
+        assertThrows(XMLParserException.class, () -> XMLJsonConverter.builder().records("//item[1]", null));
+        assertThrows(XMLParserException.class, () -> XMLJsonConverter.builder().records("//item/@href", null));
+        assertThrows(XMLParserException.class, () -> XMLJsonConverter.builder().records("//x:item", null).build());
+        assertThrows(XMLParserException.class, () -> c.toJson("src/test/resources/data/none.xml"));
+    }
+}
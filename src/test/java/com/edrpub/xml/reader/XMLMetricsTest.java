@@ -0,0 +1,119 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class XMLMetricsTest extends XMLTest {
+    private static final String XML = "<r a=\"1\"><x>one</x><x>two</x></r>";
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void disable() {
+        XMLMetrics.setListener(null);
+    }
+
+    @Test
+    void testCollector() throws Exception {
+        final XMLMetricsCollector metrics = new XMLMetricsCollector();
+        XMLMetrics.setListener(metrics);
+        assertTrue(XMLMetrics.isEnabled());
+
+        final byte[] bytes = XML.getBytes(StandardCharsets.UTF_8);
+        final XMLUtil util = new XMLUtil(bytes);
+        assertEquals(1, metrics.getParseCount());
+        assertEquals(bytes.length, metrics.getParsedBytesMax());
+        // document, r, @a, two x elements and their text
+        assertEquals(7, metrics.getNodeCountMax());
+        assertEquals("byte array", metrics.getLargestDocument());
+
+        for (int i = 0; i < 3; i++)
+            util.getListParametersByXpath("//x");
+        util.getParameterByXpath("/r/@a");
+        assertEquals(4, metrics.getXpathCount());
+        assertEquals(3, metrics.getXpathTimes("//x").getCount());
+        assertEquals(1, metrics.getXpathTimes("/r/@a").getCount());
+        assertEquals(2, metrics.getSlowestExpressions().length);
+
+        final Path file = dir.resolve("w.xml");
+        Files.write(file, bytes);
+        final XMLUtil writable = new XMLUtil(file);
+        writable.updateOrAddElement("/r/y", "three");
+        assertEquals(1, metrics.getWriteCount());
+        assertEquals(Files.size(file), metrics.getWrittenBytesTotal());
+        assertEquals(2, metrics.getParseCount());
+        assertEquals(2 * bytes.length, metrics.getParsedBytesTotal());
+
+        new XMLUtil(FILENONS);
+        CompactDocument.parse(FILENONS);
+        assertEquals(4, metrics.getParseCount());
+        assertEquals(FILENONS, metrics.getLargestDocument());
+        assertTrue(metrics.getParseTimeMaxMillis() >= metrics.getParseTimeP50Millis());
+
+        metrics.reset();
+        assertEquals(0, metrics.getParseCount());
+        assertNull(metrics.getXpathTimes("//x"));
+
+        XMLMetrics.setListener(null);
+        util.getListParametersByXpath("//x");
+        assertEquals(0, metrics.getXpathCount());
+    }
+
+    @Test
+    void testMBean() throws Exception {
+        final XMLMetricsCollector metrics = new XMLMetricsCollector(1);
+        final String name = "com.edrpub.xml:type=XMLMetrics,name=test";
+        metrics.register(name);
+        try {
+            XMLMetrics.setListener(metrics);
+            final XMLUtil util = new XMLUtil(FILEBOOKS);
+            util.getListParametersByXpath("//title");
+            util.getListParametersByXpath("//author");
+            assertEquals(1, metrics.getXpathTimes(XMLMetricsCollector.OTHER_EXPRESSIONS).getCount());
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(2L, server.getAttribute(new ObjectName(name), "XpathCount"));
+            assertEquals(1L, server.getAttribute(new ObjectName(name), "ParseCount"));
+            final double rate = (Double) server.getAttribute(new ObjectName(name), "XPathCacheHitRate");
+            assertTrue(rate >= 0 && rate <= 1);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(name)));
+    }
+
+    @Test
+    void testHistogram() {
+        final XMLMetricsCollector.Histogram h = new XMLMetricsCollector().getXpathTimes();
+        assertEquals(0, h.getPercentile(99));
+        for (long v = 1; v <= 1000; v++)
+            h.record(v);
+        assertEquals(1000, h.getCount());
+        assertEquals(1000, h.getMax());
+        assertEquals(500.5, h.getMean());
+        final long p50 = h.getPercentile(50);
+        assertTrue(p50 >= 500 && p50 <= 625, "p50 " + p50);
+        assertTrue(h.getPercentile(99) >= 990 && h.getPercentile(99) <= 1000);
+        for (long v = 0; v < 1 << 20; v = v * 3 + 1) {
+            final int b = XMLMetricsCollector.Histogram.bucket(v);
+            assertTrue(XMLMetricsCollector.Histogram.upperBound(b) >= v);
+            assertTrue(b == 0 || XMLMetricsCollector.Histogram.upperBound(b - 1) < v);
+        }
+        assertEquals(Long.MAX_VALUE,
+                XMLMetricsCollector.Histogram.upperBound(XMLMetricsCollector.Histogram.bucket(Long.MAX_VALUE)));
+    }
+}
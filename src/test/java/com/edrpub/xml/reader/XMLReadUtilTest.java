@@ -1,9 +1,11 @@
 package com.edrpub.xml.reader;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertLinesMatch;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -12,9 +14,13 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -101,6 +107,33 @@ public class XMLReadUtilTest extends XMLTest {
         });
     }
 
+    @Test
+    void testGetBatchParameters() throws XMLParserException {
+        final XMLReadUtil reader = new XMLReadUtil(FILENONS);
+        final Map<String, String> xpaths = new LinkedHashMap<>();
+        xpaths.put("threads", "//asyncProcessingThreads");
+        xpaths.put("retries", "//maxRetries");
+        final Map<String, Integer> ints = reader.getRequiredInts(xpaths);
+        assertAll(
+                () -> assertEquals(Arrays.asList("threads", "retries"), new ArrayList<>(ints.keySet())),
+                () -> assertEquals(5, ints.get("threads")),
+                () -> assertEquals("connect", reader.getRequiredStrings(
+                        Collections.singletonMap("user", "//userName")).get("user")));
+
+        xpaths.put("missing1", "//noresults/bob");
+        xpaths.put("url", "//serviceUrl");
+        xpaths.put("missing2", "//noresults/alice");
+        assertNull(reader.getStringParameters(xpaths).get("missing1"));
+        final XMLParserException e = assertThrows(XMLParserException.class, () -> {
+            reader.getRequiredInts(xpaths);
+        });
+        assertTrue(e.getMessage().contains("[missing1, missing2]"));
+        assertTrue(e.getMessage().contains("[url]"));
+        assertThrows(XMLParserException.class, () -> {
+            reader.getRequiredStrings(Collections.singletonMap("bad", "!232d"));
+        });
+    }
+
     @Test
     void testIsEmpty() throws XMLParserException {
         final XMLReadUtil reader = new XMLReadUtil(FILENONS);
@@ -0,0 +1,77 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Node;
+
+public class XMLRecordReaderTest extends XMLTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testStreamRecords() throws XMLParserException {
+        final List<String> titles;
+        try (Stream<Node> books = XMLUtil.streamRecords("book", FILEBOOKS)) {
+            titles = books.map(b -> {
+                try {
+                    return XMLUtil.getNodeListFromNodeByXpath("title", b).item(0).getTextContent();
+                } catch (final XMLParserException e) {
+                    throw new UncheckedXMLParserException(e);
+                }
+            }).collect(Collectors.toList());
+        }
+        assertEquals(new XMLUtil(FILEBOOKS).getListParametersByXpath("//book/title"), titles);
+    }
+
+    @Test
+    void testNamespaceRecords() throws XMLParserException {
+        try (XMLRecordReader reader = XMLRecordReader.openNS("multiRef", "*", FILE_JOBREF)) {
+            int count = 0;
+            while (reader.hasNext()) {
+                final Node record = reader.next();
+                // each record is its own document and keeps the inherited declarations
+                final XMLUtil util = new XMLUtil(record.getOwnerDocument());
+                assertAll(
+                        () -> assertNull(record.getParentNode().getParentNode()),
+                        () -> assertEquals("http://schemas.xmlsoap.org/soap/envelope/",
+                                record.lookupNamespaceURI("soapenv")),
+                        () -> assertFalse(util.getParameterByXpathNS("/multiRef/name", ns).isEmpty()));
+                count++;
+            }
+            assertEquals(21, count);
+            assertThrows(NoSuchElementException.class, reader::next);
+        }
+        try (XMLRecordReader reader = XMLRecordReader.openNS("Id", "http://server.opsware.com", FILENS)) {
+            assertEquals(3, reader.stream().count());
+        }
+    }
+
+    @Test
+    void testErrors() throws Exception {
+        final Path bad = Files.write(dir.resolve("bad.xml"), "<a><r>1</r><r>".getBytes(StandardCharsets.UTF_8));
+        try (XMLRecordReader reader = XMLRecordReader.open("r", bad.toString())) {
+            assertTrue(reader.hasNext());
+            reader.next();
+            final UncheckedXMLParserException e = assertThrows(UncheckedXMLParserException.class, reader::hasNext);
+            assertTrue(e.getCause() instanceof XMLParserException);
+        }
+        assertThrows(XMLParserException.class, () -> XMLRecordReader.open(null, FILEBOOKS));
+        assertThrows(XMLParserException.class, () -> XMLRecordReader.open("book", "z:/tmp/notafile.xml"));
+    }
+}
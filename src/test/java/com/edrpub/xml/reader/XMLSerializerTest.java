@@ -0,0 +1,103 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+public class XMLSerializerTest extends XMLTest {
+
+    @TempDir
+    Path dir;
+
+    // the output of a new identity Transformer, as updates were written before
+    private static byte[] reference(final Document d) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(d), new StreamResult(out));
+        return out.toByteArray();
+    }
+
+    @Test
+    void testDefaults() throws Exception {
+        final Document d = XMLUtil.getDocument(FILENS);
+        assertArrayEquals(reference(d), XMLSerializer.toBytes(d, null));
+        assertArrayEquals(reference(d), XMLSerializer.toBytes(d, OutputOptions.DEFAULT));
+        assertArrayEquals(reference(d), new XMLUtil(FILENS).toBytes());
+        assertEquals(new String(reference(d), StandardCharsets.UTF_8), XMLSerializer.toString(d, null));
+
+        // one transformer per thread, reused across writes
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+                results.add(pool.submit(() -> XMLSerializer.toBytes(XMLUtil.getDocument(FILENONS), null)));
+            final byte[] expected = reference(XMLUtil.getDocument(FILENONS));
+            for (final Future<byte[]> f : results)
+                assertArrayEquals(expected, f.get());
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(XMLParserException.class, () -> XMLSerializer.toBytes(null, null));
+        assertThrows(XMLParserException.class, () -> XMLSerializer.serialize(d, (OutputStream) null, null));
+    }
+
+    @Test
+    void testOptions() throws Exception {
+        final XMLUtil util = new XMLUtil("<r><a>\u00e9</a></r>".getBytes(StandardCharsets.UTF_8));
+        util.setOutputOptions(OutputOptions.DEFAULT.withXmlDeclaration(false));
+        assertEquals("<r><a>\u00e9</a></r>", new String(util.toBytes(), StandardCharsets.UTF_8));
+
+        final OutputOptions latin = OutputOptions.DEFAULT.withEncoding("ISO-8859-1");
+        final String declared = new String(XMLSerializer.toBytes(util.getNodeListByXpath("/").item(0), latin),
+                StandardCharsets.ISO_8859_1);
+        assertTrue(declared.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\""));
+        assertTrue(declared.endsWith("<r><a>\u00e9</a></r>"));
+
+        util.setOutputOptions(OutputOptions.DEFAULT.withIndent(2).withXmlDeclaration(false));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        util.writeTo(out);
+        assertEquals("<r>\n  <a>\u00e9</a>\n</r>", out.toString(StandardCharsets.UTF_8).trim().replace("\r\n", "\n"));
+        // the defaults again after indenting on this thread
+        assertEquals("<r><a>\u00e9</a></r>", XMLSerializer.toString(util.getNodeListByXpath("/r").item(0),
+                OutputOptions.DEFAULT.withXmlDeclaration(false)));
+
+        assertEquals(OutputOptions.DEFAULT, OutputOptions.DEFAULT.withIndent(2).withIndent(-1));
+        assertFalse(OutputOptions.DEFAULT.withIndent(0).equals(OutputOptions.DEFAULT));
+        assertThrows(IllegalArgumentException.class, () -> OutputOptions.DEFAULT.withEncoding("none"));
+        assertThrows(IllegalArgumentException.class, () -> OutputOptions.DEFAULT.withIndent(-2));
+    }
+
+    @Test
+    void testUpdate() throws Exception {
+        final Path file = Files.write(dir.resolve("conf.xml"), "<c><a>1</a></c>".getBytes(StandardCharsets.UTF_8));
+        final XMLUtil util = new XMLUtil(file.toString());
+        util.updateOrAddElement("/c/a", "2");
+        assertArrayEquals(util.toBytes(), Files.readAllBytes(file));
+        assertArrayEquals(reference(XMLUtil.getDocument(file.toString())), Files.readAllBytes(file));
+
+        util.setOutputOptions(OutputOptions.DEFAULT.withXmlDeclaration(false));
+        util.updateOrAddElement("/c/b", "3");
+        assertEquals("<c><a>2</a><b>3</b></c>", Files.readString(file));
+        assertEquals(1, Files.list(dir).count());
+    }
+}
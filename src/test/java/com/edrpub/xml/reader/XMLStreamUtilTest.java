@@ -0,0 +1,82 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.NodeList;
+
+public class XMLStreamUtilTest extends XMLTest {
+    private static final String MIXED = "<r xmlns:p=\"urn:p\"><a z=\"1\" b=\"2\" xmlns:c=\"urn:c\">t1<!--c-->t2<![CDATA[cd]]>t3</a>"
+            + "<a><![CDATA[first]]>after</a><a><b/>text</a><a/><p:a p:x=\"y\"/><a><?pi data?></a></r>";
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void disableStreaming() {
+        XMLUtil.setStreamingThreshold(-1);
+    }
+
+    @Test
+    void testMatchesDom() throws Exception {
+        final String mixed = write(MIXED);
+        for (final String file : new String[] { FILENONS, FILEBOOKS, FILENS, FILE_JOBREF, mixed }) {
+            for (final String tag : new String[] { "userName", "map", "book", "title", "ns1:Id", "item",
+                    "multiRef", "a", "p:a", "nothere", "*" }) {
+                assertAll(file + " " + tag,
+                        () -> assertEquals(XMLUtil.getParameterByTag(tag, file),
+                                XMLStreamUtil.getParameterByTag(tag, file)),
+                        () -> assertEquals(XMLUtil.getListParametersByTag(tag, file),
+                                XMLStreamUtil.getListParametersByTag(tag, file)),
+                        () -> assertEquals(text(XMLUtil.getNodeListByTag(tag, file)),
+                                text(XMLStreamUtil.getNodeListByTag(tag, file))));
+            }
+        }
+    }
+
+    @Test
+    void testThreshold() throws XMLParserException {
+        XMLUtil.setStreamingThreshold(0);
+        assertAll(
+                () -> assertEquals("connect", XMLUtil.getParameterByTag("userName", FILENONS)),
+                () -> assertNull(XMLUtil.getParameterByTag("invalidTag", FILENONS)),
+                () -> assertEquals("[Incident, Change]", XMLUtil.getListParametersByTag("map", FILENONS).toString()),
+                () -> assertEquals("[1, 2, 3, 4]", XMLUtil.getMapByTag("mybook", FILEBOOKS).get("version").toString()));
+        assertThrows(XMLParserException.class, () -> XMLStreamUtil.getParameterByTag("x", "z:/tmp/notafile.xml"));
+        assertThrows(XMLParserException.class, () -> XMLStreamUtil.getParameterByTag(null, FILENONS));
+        assertThrows(XMLParserException.class, () -> XMLStreamUtil.getListParametersByTag("x", null));
+    }
+
+    @Test
+    void testMalformed() throws IOException {
+        final String bad = write("<a><b>1</b>");
+        assertThrows(XMLParserException.class, () -> XMLStreamUtil.getListParametersByTag("b", bad));
+        assertThrows(XMLParserException.class, () -> XMLStreamUtil.getNodeListByTag("a", bad));
+    }
+
+    // describe a node list by type and value so lists from different documents compare
+    private static String text(final NodeList nl) {
+        if (nl == null)
+            return null;
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < nl.getLength(); i++)
+            sb.append(nl.item(i).getNodeType()).append(':').append(nl.item(i).getNodeName()).append('=')
+                    .append(nl.item(i).getTextContent()).append('|');
+        return sb.toString();
+    }
+
+    private String write(final String xml) throws IOException {
+        return Files.write(dir.resolve("test" + System.nanoTime() + ".xml"), xml.getBytes(StandardCharsets.UTF_8))
+                .toString();
+    }
+}
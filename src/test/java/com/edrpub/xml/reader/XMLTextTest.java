@@ -0,0 +1,72 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class XMLTextTest extends XMLTest {
+
+    @Test
+    void testText() throws XMLParserException {
+        final XMLUtil util = new XMLUtil(("<r a=\"v\"><m>one<b>two<!-- c --></b><![CDATA[<three>]]><?p d?></m>"
+                + "<e/></r>").getBytes(StandardCharsets.UTF_8));
+        final NodeList all = util.getNodeListByXpath("//node() | //@*");
+        for (int i = 0; i < all.getLength(); i++) {
+            final Node n = all.item(i);
+            final StringBuilder sb = new StringBuilder();
+            XMLText.appendText(n, sb);
+            final CharBuffer buf = CharBuffer.allocate(64);
+            XMLText.copyText(n, buf);
+            assertAll(n.getNodeName(),
+                    () -> assertEquals(n.getTextContent(), sb.toString()),
+                    () -> assertEquals(n.getTextContent(), buf.flip().toString()),
+                    () -> assertEquals(n.getTextContent().length(), XMLText.textLength(n)));
+        }
+        final StringWriter w = new StringWriter();
+        assertTrue(util.appendParameterByXpath("/r/m", w));
+        assertEquals("onetwo<three>", w.toString());
+        assertFalse(util.appendParameterByXpath("/r/none", w));
+        assertEquals(0, XMLText.appendText(null, w));
+        assertEquals("onetwo<three>", w.toString());
+
+        final Node m = util.getNodeListByXpath("/r/m").item(0);
+        final CharBuffer small = CharBuffer.allocate(4);
+        assertThrows(XMLParserException.class, () -> XMLText.copyText(m, small));
+        assertEquals(0, small.position());
+        assertThrows(XMLParserException.class, () -> XMLText.appendText(m, null));
+    }
+
+    @Test
+    void testBase64() throws XMLParserException {
+        final byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+        final String encoded = Base64.getMimeEncoder().encodeToString(data);
+        final XMLUtil util = new XMLUtil(("<e:Envelope xmlns:e=\"urn:e\"><e:Body><a>" + encoded.substring(0, 1000)
+                + "<![CDATA[" + encoded.substring(1000, 5000) + "]]>" + encoded.substring(5000)
+                + "</a><bad>@@@=x</bad></e:Body></e:Envelope>").getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(util.decodeBase64ByXpath("//a", out));
+        assertArrayEquals(data, out.toByteArray());
+
+        ns.addNamespaceDef("e", "urn:e");
+        out.reset();
+        assertTrue(util.decodeBase64ByXpathNS("/e:Envelope/e:Body/a", ns, out));
+        assertArrayEquals(data, out.toByteArray());
+        assertFalse(util.decodeBase64ByXpath("//none", out));
+        assertThrows(XMLParserException.class, () -> util.decodeBase64ByXpath("//bad", new ByteArrayOutputStream()));
+    }
+}
@@ -0,0 +1,123 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class XMLUtilConcurrencyTest extends XMLTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSharedReaders() throws Exception {
+        final XMLUtil util = new XMLUtil(FILEBOOKS, true);
+        final String author = new XMLUtil(FILEBOOKS).getParameterByXpath("/bookstore/book[3]/author[2]");
+        final int books = new XMLUtil(FILEBOOKS).getListParametersByXpath("//book").size();
+        assertTrue(util.isThreadSafe());
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (!author.equals(util.getParameterByXpath("/bookstore/book[3]/author[2]"))
+                                || books != util.getListParametersByXpath("//book").size())
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> f : results)
+                assertTrue(f.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testSharedMaps() throws Exception {
+        final StringBuilder xml = new StringBuilder("<r xmlns:x=\"urn:x\">\n  <t>\n");
+        // a key per record so a skipped or repeated child changes the map
+        for (int i = 0; i < 2000; i++)
+            xml.append("    <rec><k").append(i).append(">v").append(i).append("</k").append(i).append("></rec>\n");
+        xml.append("  </t>\n  <x:t><a>1</a><a>2</a></x:t>\n</r>");
+        final Path file = Files.write(dir.resolve("map.xml"), xml.toString().getBytes(StandardCharsets.UTF_8));
+        final XMLUtil single = new XMLUtil(file.toString());
+        final Map<String, List<String>> byTag = single.getMapByTag("t");
+        final Map<String, List<String>> byXpath = single.getMapByXpath("/r/t/rec");
+        ns.addNamespaceDef("x", "urn:x");
+        final Map<String, List<String>> byXpathNS = single.getMapByXpathNS("/r/x:t/..", ns);
+        assertEquals(2000, byTag.size());
+
+        final XMLUtil util = new XMLUtil(file.toString(), true);
+        final ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        if (!byTag.equals(util.getMapByTag("t")) || !byXpath.equals(util.getMapByXpath("/r/t/rec"))
+                                || !byXpathNS.equals(util.getMapByXpathNS("/r/x:t/..", ns)))
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> f : results)
+                assertTrue(f.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testReadersDuringWrites() throws Exception {
+        final Path file = dir.resolve("counter.xml");
+        Files.write(file, "<c><n>0</n></c>".getBytes(StandardCharsets.UTF_8));
+        final XMLUtil util = new XMLUtil(file.toString(), true);
+        final AtomicBoolean backwards = new AtomicBoolean();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final ExecutorService pool = Executors.newFixedThreadPool(5);
+        try {
+            final List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(pool.submit(() -> {
+                    int last = 0;
+                    while (!stop.get()) {
+                        // each reader must see the updates in order
+                        final int n = Integer.parseInt(util.getParameterByXpath("/c/n"));
+                        if (n < last)
+                            backwards.set(true);
+                        last = n;
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 1; i <= 50; i++)
+                util.updateOrAddElement("/c/n", String.valueOf(i));
+            stop.set(true);
+            for (final Future<?> f : readers)
+                f.get();
+        } finally {
+            pool.shutdown();
+        }
+        assertFalse(backwards.get());
+        assertEquals("50", util.getParameterByXpath("/c/n"));
+        assertEquals("50", new XMLUtil(file.toString()).getParameterByXpath("/c/n"));
+    }
+}
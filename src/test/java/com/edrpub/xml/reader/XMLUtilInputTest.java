@@ -0,0 +1,90 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import com.edr.test.TestFileUtil;
+
+public class XMLUtilInputTest extends XMLTest {
+    private static final String XPATH = "/bookstore/book[3]/author";
+
+    @Test
+    void testInputs() throws Exception {
+        final Path file = Path.of(FILEBOOKS);
+        final byte[] bytes = Files.readAllBytes(file);
+        final List<String> expected = new XMLUtil(FILEBOOKS).getListParametersByXpath(XPATH);
+        final String xml = new String(bytes, "ISO-8859-1");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            assertAll(
+                    () -> assertEquals(expected, new XMLUtil(file).getListParametersByXpath(XPATH)),
+                    () -> assertEquals(expected, new XMLUtil(bytes).getListParametersByXpath(XPATH)),
+                    () -> assertEquals(expected, new XMLUtil(mapped).getListParametersByXpath(XPATH)),
+                    () -> assertEquals(0, mapped.position()),
+                    () -> assertEquals(expected, new XMLUtil(new ByteArrayInputStream(bytes))
+                            .getListParametersByXpath(XPATH)),
+                    () -> assertEquals(expected, new XMLUtil(new StreamSource(new StringReader(xml)))
+                            .getListParametersByXpath(XPATH)),
+                    () -> assertEquals(expected, new XMLUtil(new StAXSource(XMLInputFactory.newInstance()
+                            .createXMLStreamReader(new ByteArrayInputStream(bytes))))
+                            .getListParametersByXpath(XPATH)),
+                    () -> assertEquals(expected, XMLUtil.getListParametersByXpath(XPATH, file)),
+                    () -> assertEquals(expected, XMLUtil.getListParametersByXpath(XPATH, bytes)),
+                    () -> assertEquals(expected, XMLUtil.getListParametersByXpath(XPATH, ByteBuffer.wrap(bytes))),
+                    () -> assertEquals(expected.get(0), XMLUtil.getParameterByXpath(XPATH, file)),
+                    () -> assertEquals(expected.get(0), XMLUtil.getParameterByXpath(XPATH, bytes)),
+                    () -> assertEquals(expected.get(0),
+                            XMLUtil.getParameterByXpath(XPATH, new StreamSource(file.toFile()))));
+        }
+    }
+
+    @Test
+    void testSoapMessage() throws Exception {
+        final byte[] msg = TestFileUtil.getMessage("findJobRefsResponse.xml").getBytes("UTF-8");
+        assertEquals(21, XMLUtil.getListParametersByXpath("//findJobRefsReturn/item/@href",
+                new ByteArrayInputStream(msg)).size());
+    }
+
+    @Test
+    void testInputErrors() throws Exception {
+        final Document d = XMLUtil.getDocument(FILENONS);
+        final boolean[] closed = new boolean[1];
+        final InputStream in = new ByteArrayInputStream("<a>1</a>".getBytes("UTF-8")) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        assertAll(
+                () -> assertSame(d, XMLUtil.getDocument(new DOMSource(d))),
+                () -> assertEquals("1", XMLUtil.getParameterByXpath("/a", in)),
+                () -> assertEquals(false, closed[0]),
+                () -> assertThrows(XMLParserException.class, () -> new XMLUtil((byte[]) null)),
+                () -> assertThrows(XMLParserException.class, () -> new XMLUtil((Path) null)),
+                () -> assertThrows(XMLParserException.class, () -> new XMLUtil("<a>".getBytes("UTF-8"))),
+                () -> assertThrows(XMLParserException.class, () -> new XMLUtil(Path.of("missing.xml"))),
+                () -> assertThrows(XMLParserException.class,
+                        () -> XMLUtil.getParameterByXpath("", new byte[] { '<', 'a', '/', '>' })));
+    }
+}
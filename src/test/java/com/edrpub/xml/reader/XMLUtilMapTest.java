@@ -0,0 +1,136 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+public class XMLUtilMapTest extends XMLTest {
+
+    private static final String XML = "<r xmlns:p=\"urn:p\"><m>\n"
+            + "  <x><a>1</a><a>2</a><b/><b>x<![CDATA[y]]>z<?pi data?><e/><!-- c -->w &amp; v</b></x>\n"
+            + "  <p:y><a>3</a><n><k>v</k><k/></n><p:a>4</p:a></p:y>\n"
+            + "  <z/>text\n"
+            + "</m><m><a>ignored</a></m></r>";
+    private static final String EMPTY_FIRST = "<m><x><e/><f>1</f><e/></x></m>";
+
+    @TempDir
+    Path dir;
+
+    private String write(final String name, final String xml) throws Exception {
+        return Files.write(dir.resolve(name), xml.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    // the original implementation, which consumed the nodes as it went
+    private static Map<String, List<String>> destructive(final NodeList nl) {
+        final Map<String, List<String>> map = new HashMap<String, List<String>>();
+        String node2 = null;
+        List<String> temp = null;
+        for (int i = 0; nl != null && i < nl.getLength(); i++) {
+            while (nl.item(i).hasChildNodes()) {
+                if (nl.item(i).getFirstChild().getNodeType() == 1) {
+                    while (nl.item(i).getFirstChild().hasChildNodes()) {
+                        if (!nl.item(i).getFirstChild().getNodeName().equals(node2)) {
+                            node2 = nl.item(i).getFirstChild().getNodeName();
+                            temp = new ArrayList<String>();
+                        }
+                        temp.add(nl.item(i).getFirstChild().getFirstChild().getNodeValue());
+                        nl.item(i).getFirstChild().removeChild(nl.item(i).getFirstChild().getFirstChild());
+                    }
+                    map.put(node2, temp);
+                }
+                nl.item(i).removeChild(nl.item(i).getFirstChild());
+            }
+        }
+        return map;
+    }
+
+    private static Map<String, List<String>> byTag(final String tag, final String file) throws Exception {
+        final NodeList nl = XMLUtil.getDocument(file).getElementsByTagName(tag);
+        return destructive(nl.getLength() > 0 && nl.item(0).hasChildNodes() ? nl.item(0).getChildNodes() : null);
+    }
+
+    private static Map<String, List<String>> byXpath(final String qual, final String file) throws Exception {
+        return destructive((NodeList) XPathFactory.newInstance().newXPath().evaluate(qual,
+                XMLUtil.getDocument(file), XPathConstants.NODESET));
+    }
+
+    @Test
+    void testMapByTag() throws Exception {
+        final String file = write("map.xml", XML);
+        final String empty = write("empty.xml", EMPTY_FIRST);
+        for (final String[] c : new String[][] { { "m", file }, { "x", file }, { "m", empty }, { "none", file } }) {
+            final Map<String, List<String>> expected = byTag(c[0], c[1]);
+            assertEquals(expected, XMLUtil.getMapByTag(c[0], c[1]), c[0]);
+            assertEquals(expected, new XMLUtil(c[1]).getMapByTag(c[0]), c[0]);
+            XMLUtil.setStreamingThreshold(0);
+            try {
+                assertEquals(expected, XMLUtil.getMapByTag(c[0], c[1]), c[0]);
+                assertEquals(expected, XMLStreamUtil.getMapByTag(c[0], c[1]), c[0]);
+            } finally {
+                XMLUtil.setStreamingThreshold(-1);
+            }
+        }
+        final Map<String, List<String>> map = XMLUtil.getMapByTag("m", file);
+        // a later run of a name replaces the earlier list
+        assertEquals(List.of("3"), map.get("a"));
+        assertEquals(Arrays.asList("x", "y", "z", "data", null, "w & v"), map.get("b"));
+        assertTrue(XMLUtil.getMapByTag("none", file).isEmpty());
+        assertThrows(XMLParserException.class, () -> XMLUtil.getMapByTag(null, file));
+    }
+
+    @Test
+    void testMapByXpath() throws Exception {
+        final String file = write("map.xml", XML);
+        // selections that nest, so the original loop consumed some of them
+        for (final String qual : new String[] { "/r/m/*", "/r/m | /r/m/*", "//*", "/r/m/x/node()",
+                "/r/m/*[3]/*" }) {
+            final Map<String, List<String>> expected = byXpath(qual, file);
+            assertEquals(expected, XMLUtil.getMapByXpath(qual, file), qual);
+            assertEquals(expected, new XMLUtil(file).getMapByXpath(qual), qual);
+        }
+        ns.addNamespaceDef("p", "urn:p");
+        final Map<String, List<String>> map = new XMLUtil(file).getMapByXpathNS("/r/m/p:y", ns);
+        assertEquals(List.of("4"), map.get("p:a"));
+        assertEquals(Arrays.asList(null, null), map.get("n"));
+        assertThrows(XMLParserException.class, () -> XMLUtil.getMapByXpath("/r/[", file));
+    }
+
+    @Test
+    void testDocumentUnchanged() throws Exception {
+        final String file = write("map.xml", XML);
+        final XMLUtil util = new XMLUtil(file);
+        final String before = util.getParameterByXpath("/r");
+        util.getMapByTag("m");
+        util.getMapByXpath("//*");
+        assertEquals(before, util.getParameterByXpath("/r"));
+
+        XMLUtil.setDocumentCache(new DocumentCache());
+        try {
+            final Map<String, List<String>> first = XMLUtil.getMapByXpath("//*", file);
+            assertEquals(first, XMLUtil.getMapByXpath("//*", file));
+            assertEquals(XMLUtil.getMapByTag("m", file), XMLUtil.getMapByTag("m", file));
+            final Document d = XMLUtil.getDocument(file);
+            assertEquals(d.getDocumentElement().getTextContent(),
+                    XMLUtil.getParameterByXpath("/r", file));
+        } finally {
+            XMLUtil.setDocumentCache(null);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class XMLUtilStreamTest extends XMLTest {
+
+    @Test
+    void testXpath() throws XMLParserException {
+        for (final XMLUtil util : new XMLUtil[] { new XMLUtil(FILENONS),
+                new XMLUtil(CompactDocument.parse(FILENONS)) }) {
+            for (final String qual : new String[] { "/main/attachments/*", "//*", "/", "/main/none",
+                    "/main/attachments/*[position() > 1]" }) {
+                final List<String> expected = util.getListParametersByXpath(qual);
+                final List<String> each = new ArrayList<>();
+                util.forEachParameterByXpath(qual, each::add);
+                assertAll(qual,
+                        () -> assertEquals(expected, util.streamParametersByXpath(qual).collect(Collectors.toList())),
+                        () -> assertEquals(expected, each),
+                        () -> assertEquals(expected.size(), util.countByXpath(qual)),
+                        () -> assertEquals(!expected.isEmpty(), util.existsByXpath(qual)));
+            }
+            assertEquals(util.getListParametersByXpath("//*").subList(0, 2),
+                    util.streamParametersByXpath("//*").limit(2).collect(Collectors.toList()));
+            assertThrows(XMLParserException.class, () -> util.forEachParameterByXpath("//*", null));
+            assertThrows(XMLParserException.class, () -> util.countByXpath("/main/["));
+        }
+    }
+
+    @Test
+    void testNamespaces() throws XMLParserException {
+        final XMLUtil util = new XMLUtil(FILENS);
+        final String qual = "//soapenv:Body/multiRef/@id";
+        final List<String> expected = util.getListParametersByXpathNS(qual, ns);
+        final List<String> each = new ArrayList<>();
+        util.forEachParameterByXpathNS(qual, ns, each::add);
+        assertAll(
+                () -> assertEquals(expected, util.streamParametersByXpathNS(qual, ns).collect(Collectors.toList())),
+                () -> assertEquals(expected, each),
+                () -> assertEquals(expected.size(), util.countByXpathNS(qual, ns)),
+                () -> assertTrue(util.existsByXpathNS(qual, ns)),
+                () -> assertFalse(util.existsByXpathNS("//soapenv:None", ns)));
+        assertThrows(XMLParserException.class, () -> util.streamParametersByXpathNS(qual, null));
+
+        final String server = "http://server.opsware.com";
+        final List<String> ids = util.getparametersByTagNS("Id", server);
+        final List<String> eachId = new ArrayList<>();
+        util.forEachParameterByTagNS("Id", server, eachId::add);
+        assertEquals(ids, util.streamParametersByTagNS("Id", server).collect(Collectors.toList()));
+        assertEquals(ids, eachId);
+        assertEquals(ids.get(0), util.streamParametersByTagNS("Id", server).findFirst().get());
+        util.setIndexed(true);
+        assertEquals(ids, util.streamParametersByTagNS("Id", server).collect(Collectors.toList()));
+        assertEquals(0, util.streamParametersByTagNS("none", server).count());
+    }
+
+    @Test
+    void testTagFile() throws XMLParserException {
+        final List<String> expected = XMLUtil.getListParametersByTag("item", FILE_JOBREF);
+        try (Stream<String> s = XMLUtil.streamParametersByTag("item", FILE_JOBREF)) {
+            assertEquals(expected, s.collect(Collectors.toList()));
+        }
+        try (Stream<String> s = XMLStreamUtil.streamParametersByTag("item", FILE_JOBREF)) {
+            assertEquals(expected.subList(0, 3), s.limit(3).collect(Collectors.toList()));
+        }
+        assertThrows(XMLParserException.class, () -> XMLUtil.streamParametersByTag(null, FILE_JOBREF));
+        assertThrows(XMLParserException.class,
+                () -> XMLUtil.streamParametersByTag("item", "src/test/resources/data/none.xml"));
+    }
+}
@@ -10,7 +10,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -258,6 +260,34 @@ public class XMLUtilTest extends XMLTest{
         });
     }
 
+    @Test
+    void testGetParametersByXpathBatch() throws XMLParserException {
+        final Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("threads", "//main/asyncProcessingThreads");
+        queries.put("user", "//main/userName");
+        queries.put("none", "//main/notThere");
+        final Map<String, String> value = new XMLUtil(FILENONS).getParametersByXpath(queries);
+        final Map<String, String> fromFile = XMLUtil.getParametersByXpath(queries, FILENONS);
+        final Map<String, String> withNS = new XMLUtil(FILENS).getParametersByXpathNS(
+                Collections.singletonMap("change", "//ns1:ChangeID"), ns);
+        assertAll(
+                () -> assertEquals("5", value.get("threads")),
+                () -> assertEquals("connect", value.get("user")),
+                () -> assertTrue(value.containsKey("none")),
+                () -> assertNull(value.get("none")),
+                () -> assertEquals(value, fromFile),
+                () -> assertEquals("CHG000001", withNS.get("change")));
+        assertThrows(XMLParserException.class, () -> {
+            new XMLUtil(FILENONS).getParametersByXpath(null);
+        });
+        assertThrows(XMLParserException.class, () -> {
+            XMLUtil.getParametersByXpath(Collections.singletonMap("bad", "!948"), FILENONS);
+        });
+        assertThrows(XMLParserException.class, () -> {
+            new XMLUtil(FILENS).getParametersByXpathNS(queries, null);
+        });
+    }
+
     @Test
     void testGetNodeListByTagStatic() throws XMLParserException {
         final NodeList value = XMLUtil.getNodeListByTag("maps", FILENONS);
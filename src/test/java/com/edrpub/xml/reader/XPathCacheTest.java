@@ -0,0 +1,90 @@
+package com.edrpub.xml.reader;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.junit.jupiter.api.Test;
+
+import com.edr.test.TestNamespace;
+
+public class XPathCacheTest extends XMLTest {
+
+    @Test
+    void testHitAndMiss() throws XPathExpressionException {
+        final XPathCache cache = new XPathCache(8);
+        final XPathExpression first = cache.compile("//main/userName", null);
+        final XPathExpression second = cache.compile("//main/userName", null);
+        final XPathExpression namespaced = cache.compile("//main/userName", ns);
+        assertAll(
+                () -> assertSame(first, second),
+                () -> assertNotSame(first, namespaced),
+                () -> assertEquals(1, cache.getHitCount()),
+                () -> assertEquals(2, cache.getMissCount()),
+                () -> assertEquals(2, cache.size()));
+    }
+
+    @Test
+    void testEviction() throws XPathExpressionException {
+        final XPathCache cache = new XPathCache(2);
+        final XPathExpression a = cache.compile("//a", null);
+        cache.compile("//b", null);
+        // touch a so b becomes the eldest entry
+        cache.compile("//a", null);
+        cache.compile("//c", null);
+        assertEquals(2, cache.size());
+        assertSame(a, cache.compile("//a", null));
+        cache.resetStatistics();
+        cache.compile("//b", null);
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testClearAndDisable() throws XPathExpressionException {
+        final XPathCache cache = new XPathCache(4);
+        final XPathExpression a = cache.compile("//a", null);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNotSame(a, cache.compile("//a", null));
+        cache.setMaxSize(0);
+        cache.compile("//b", null);
+        assertEquals(1, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> cache.setMaxSize(-1));
+        assertThrows(XPathExpressionException.class, () -> cache.compile("!948", null));
+    }
+
+    @Test
+    void testConcurrentUse() throws Exception {
+        final TestNamespace context = new TestNamespace();
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                tasks.add(() -> {
+                    // documents are not thread-safe, expressions are shared through the cache
+                    final XMLUtil util = new XMLUtil(FILE_JOBREF);
+                    int found = 0;
+                    for (int j = 0; j < 50; j++)
+                        found += util.getNodeListByXpathNS("//findJobRefsReturn/item/@href", context).getLength();
+                    return found;
+                });
+            }
+            for (final Future<Integer> f : pool.invokeAll(tasks))
+                assertEquals(21 * 50, f.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}